@@ -1,10 +1,19 @@
 package moeba;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.fitnessfunction.BiclusterFitnessFunction;
+import moeba.fitnessfunction.EvaluationContext;
 import moeba.fitnessfunction.FitnessFunction;
+import moeba.fitnessfunction.CellStatisticsEvaluator;
 import moeba.problem.AbstractMixedIntegerBinaryProblem;
 import moeba.representationwrapper.RepresentationWrapper;
+import moeba.utils.dataset.DataMatrix;
 import moeba.utils.storage.CacheStorage;
 import org.uma.jmetal.solution.binarysolution.BinarySolution;
 import org.uma.jmetal.solution.binarysolution.impl.DefaultBinarySolution;
@@ -18,25 +27,75 @@ import org.uma.jmetal.solution.integersolution.impl.DefaultIntegerSolution;
  */
 public class Problem extends AbstractMixedIntegerBinaryProblem {
 
-    protected double[][] data;
+    protected DataMatrix data;
     private Class<?>[] types;
     private FitnessFunction[] fitnessFunctions;
-    protected CacheStorage<String, Double[]> externalCache;
-    protected CacheStorage<String, Double>[] internalCaches;
+    private CellStatisticsEvaluator statisticsEvaluator;
+    protected CacheStorage<BiclusterFingerprint, Double[]> externalCache;
+    protected CacheStorage<BiclusterFingerprint, Double>[] internalCaches;
     protected RepresentationWrapper representationWrapper;
     private EvaluateFunction evaluateFunction;
+    private boolean exactCacheKeys;
 
     public interface EvaluateFunction {
-        public CompositeSolution evaluate(CompositeSolution solution, ArrayList<ArrayList<Integer>[]> biclusters);
+        public CompositeSolution evaluate(CompositeSolution solution, List<Bicluster> biclusters);
     }
 
     public Problem(
-        double[][] data, 
+        DataMatrix data, 
         Class<?> [] types, 
         String[] strFitnessFunctions, 
-        CacheStorage<String, Double[]> externalCache, 
-        CacheStorage<String, Double>[] internalCaches,
+        CacheStorage<BiclusterFingerprint, Double[]> externalCache, 
+        CacheStorage<BiclusterFingerprint, Double>[] internalCaches,
         RepresentationWrapper representationWrapper
+    ) {
+        this(data, types, strFitnessFunctions, externalCache, internalCaches, representationWrapper, false);
+    }
+
+    /**
+     * Constructs the problem choosing how cache keys are compared.
+     *
+     * @param data The numeric dataset
+     * @param types The type of each column
+     * @param strFitnessFunctions The fitness functions, one per objective
+     * @param externalCache Cache of the objectives of whole solutions, or null
+     * @param internalCaches Cache of the bicluster scores of each fitness function, or null
+     * @param representationWrapper The representation of the solutions
+     * @param exactCacheKeys Whether cache keys keep their biclusters to compare them when fingerprints match
+     */
+    public Problem(
+        DataMatrix data, 
+        Class<?> [] types, 
+        String[] strFitnessFunctions, 
+        CacheStorage<BiclusterFingerprint, Double[]> externalCache, 
+        CacheStorage<BiclusterFingerprint, Double>[] internalCaches,
+        RepresentationWrapper representationWrapper,
+        boolean exactCacheKeys
+    ) {
+        this(data, types, strFitnessFunctions, externalCache, internalCaches, representationWrapper, exactCacheKeys, EvaluationContext.getDefault());
+    }
+
+    /**
+     * Constructs the problem of a run.
+     *
+     * @param data The numeric dataset
+     * @param types The type of each column
+     * @param strFitnessFunctions The fitness functions, one per objective
+     * @param externalCache Cache of the objectives of whole solutions, or null
+     * @param internalCaches Cache of the bicluster scores of each fitness function, or null
+     * @param representationWrapper The representation of the solutions
+     * @param exactCacheKeys Whether cache keys keep their biclusters to compare them when fingerprints match
+     * @param context The resources and settings of the run, shared by its fitness functions
+     */
+    public Problem(
+        DataMatrix data, 
+        Class<?> [] types, 
+        String[] strFitnessFunctions, 
+        CacheStorage<BiclusterFingerprint, Double[]> externalCache, 
+        CacheStorage<BiclusterFingerprint, Double>[] internalCaches,
+        RepresentationWrapper representationWrapper,
+        boolean exactCacheKeys,
+        EvaluationContext context
     ) {
         super(
             representationWrapper.getNumIntVariables(), 
@@ -50,14 +109,22 @@ public class Problem extends AbstractMixedIntegerBinaryProblem {
         this.externalCache = externalCache;
         this.internalCaches = internalCaches;
         this.representationWrapper = representationWrapper;
+        this.exactCacheKeys = exactCacheKeys;
         this.evaluateFunction = externalCache == null ? this::evaluateWithoutCache : this::evaluateWithCache;
         
         // Initialize fitness functions based on provided string identifiers
         this.fitnessFunctions = new FitnessFunction[strFitnessFunctions.length];
         for (int i = 0; i < strFitnessFunctions.length; i++) {
-            this.fitnessFunctions[i] = StaticUtils.getFitnessFunctionFromString(strFitnessFunctions[i], this.data, this.types, internalCaches == null ? null : internalCaches[i], representationWrapper.getSummariseMethod());
+            this.fitnessFunctions[i] = StaticUtils.getFitnessFunctionFromString(strFitnessFunctions[i], this.data, this.types, internalCaches == null ? null : internalCaches[i], representationWrapper.getSummariseMethod(), context);
+            if (this.fitnessFunctions[i] instanceof BiclusterFitnessFunction) {
+                ((BiclusterFitnessFunction) this.fitnessFunctions[i]).setExactCacheKeys(exactCacheKeys);
+            }
         }
 
+        // Objectives computed from cell statistics share a single pass over each bicluster, and reuse
+        // the statistics of the parents of the solutions
+        this.statisticsEvaluator = CellStatisticsEvaluator.create(this.data, this.fitnessFunctions, context.getPrefixSumsMemoryBudget());
+
         // Configure the problem's parameters
         setNumberOfVariables(2);
         setNumberOfObjectives(this.fitnessFunctions.length);
@@ -73,7 +140,7 @@ public class Problem extends AbstractMixedIntegerBinaryProblem {
      */
     @Override
     public CompositeSolution evaluate(CompositeSolution solution) {
-        ArrayList<ArrayList<Integer>[]> biclusters = representationWrapper.getBiclustersFromRepresentation(solution);
+        List<Bicluster> biclusters = representationWrapper.getBiclusters(solution);
         return evaluateFunction.evaluate(solution, biclusters);
     }
 
@@ -84,10 +151,15 @@ public class Problem extends AbstractMixedIntegerBinaryProblem {
      * @param biclusters The biclusters obtained from the solution representation.
      * @return CompositeSolution The evaluated solution with updated objective values.
      */
-    public CompositeSolution evaluateWithoutCache(CompositeSolution solution, ArrayList<ArrayList<Integer>[]> biclusters){
+    public CompositeSolution evaluateWithoutCache(CompositeSolution solution, List<Bicluster> biclusters){
         // Apply each fitness function to the biclusters and update the solution objectives
         for (int i = 0; i < fitnessFunctions.length; i++){
-            solution.objectives()[i] = fitnessFunctions[i].run(biclusters);
+            if (statisticsEvaluator == null || !statisticsEvaluator.handles(i)) {
+                solution.objectives()[i] = fitnessFunctions[i].run(biclusters);
+            }
+        }
+        if (statisticsEvaluator != null) {
+            statisticsEvaluator.evaluate(solution, biclusters);
         }
         return solution;
     }
@@ -99,24 +171,96 @@ public class Problem extends AbstractMixedIntegerBinaryProblem {
      * @param biclusters The biclusters derived from the solution.
      * @return The evaluated solution with updated objectives, potentially leveraging cached values.
      */
-    public CompositeSolution evaluateWithCache(CompositeSolution solution, ArrayList<ArrayList<Integer>[]> biclusters){
-        String key = StaticUtils.biclustersToString(biclusters);
-        if (externalCache.containsKey(key)){
-            for (int i = 0; i < fitnessFunctions.length; i++){
-                solution.objectives()[i] = externalCache.get(key)[i];
-            }
-        } else {
-            solution = evaluateWithoutCache(solution, biclusters);
-            Double[] scores = new Double[fitnessFunctions.length];
+    public CompositeSolution evaluateWithCache(CompositeSolution solution, List<Bicluster> biclusters){
+        BiclusterFingerprint key = exactCacheKeys ? BiclusterFingerprint.exactOf(biclusters) : BiclusterFingerprint.of(biclusters);
+        // Workers evaluating the same solution at once wait for the first one instead of repeating it
+        Double[] scores = externalCache.computeIfAbsent(key, k -> {
+            evaluateWithoutCache(solution, biclusters);
+            Double[] res = new Double[fitnessFunctions.length];
             for (int i = 0; i < fitnessFunctions.length; i++){
-                scores[i] = solution.objectives()[i];
+                res[i] = solution.objectives()[i];
             }
-            externalCache.put(key, scores);
+            return res;
+        });
+        for (int i = 0; i < fitnessFunctions.length; i++){
+            solution.objectives()[i] = scores[i];
         }
 
         return solution;
     }
 
+    /**
+     * Evaluates several solutions at once, with the same objectives as evaluating them one by
+     * one. Solutions found in the external cache, or equal to another solution of the batch,
+     * are not evaluated again, and each fitness function evaluates the rest together through
+     * {@link FitnessFunction#runBatch(List)}, which lets it share work between solutions.
+     *
+     * @param solutions The solutions to evaluate.
+     * @return The same list, with the objectives of the solutions updated.
+     */
+    public List<CompositeSolution> runBatch(List<CompositeSolution> solutions) {
+        List<CompositeSolution> pending = new ArrayList<>(solutions.size());
+        List<List<Bicluster>> pendingBiclusters = new ArrayList<>(solutions.size());
+        List<BiclusterFingerprint> pendingKeys = new ArrayList<>(solutions.size());
+        Map<BiclusterFingerprint, CompositeSolution> firstByKey = new HashMap<>();
+        List<CompositeSolution> repeated = new ArrayList<>();
+        List<CompositeSolution> repeatedFirsts = new ArrayList<>();
+
+        for (CompositeSolution solution : solutions) {
+            List<Bicluster> biclusters = representationWrapper.getBiclusters(solution);
+            if (externalCache != null) {
+                BiclusterFingerprint key = exactCacheKeys ? BiclusterFingerprint.exactOf(biclusters) : BiclusterFingerprint.of(biclusters);
+                Double[] scores = externalCache.get(key);
+                if (scores != null) {
+                    for (int i = 0; i < fitnessFunctions.length; i++) {
+                        solution.objectives()[i] = scores[i];
+                    }
+                    continue;
+                }
+                CompositeSolution first = firstByKey.putIfAbsent(key, solution);
+                if (first != null) {
+                    repeated.add(solution);
+                    repeatedFirsts.add(first);
+                    continue;
+                }
+                pendingKeys.add(key);
+            }
+            pending.add(solution);
+            pendingBiclusters.add(biclusters);
+        }
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < fitnessFunctions.length; i++) {
+            if (statisticsEvaluator == null || !statisticsEvaluator.handles(i)) {
+                double[] scores = fitnessFunctions[i].runBatch(pendingBiclusters);
+                for (int s = 0; s < scores.length; s++) {
+                    pending.get(s).objectives()[i] = scores[s];
+                }
+            }
+        }
+        if (statisticsEvaluator != null) {
+            statisticsEvaluator.evaluate(pending, pendingBiclusters);
+        }
+
+        if (externalCache != null) {
+            // The misses were evaluated together, so each one is recorded as a load of an equal share of the time
+            long loadTime = pending.isEmpty() ? 0 : (System.nanoTime() - startTime) / pending.size();
+            for (int s = 0; s < pending.size(); s++) {
+                Double[] scores = new Double[fitnessFunctions.length];
+                for (int i = 0; i < fitnessFunctions.length; i++) {
+                    scores[i] = pending.get(s).objectives()[i];
+                }
+                externalCache.putLoaded(pendingKeys.get(s), scores, loadTime);
+            }
+            for (int s = 0; s < repeated.size(); s++) {
+                for (int i = 0; i < fitnessFunctions.length; i++) {
+                    repeated.get(s).objectives()[i] = repeatedFirsts.get(s).objectives()[i];
+                }
+            }
+        }
+        return solutions;
+    }
+
     /**
      * Creates a new solution with the appropriate number of objectives and constraints, as well as the
      * correct integer and binary representation.
@@ -1,12 +1,13 @@
 package moeba;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
@@ -22,19 +23,35 @@ import org.uma.jmetal.util.AbstractAlgorithmRunner;
 import org.uma.jmetal.util.comparator.RankingAndCrowdingDistanceComparator;
 import org.uma.jmetal.util.fileoutput.impl.DefaultFileOutputContext;
 import moeba.StaticUtils.AlgorithmResult;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.fitnessfunction.EvaluationContext;
+import moeba.fitnessfunction.ParallelScoring;
 import moeba.representationwrapper.RepresentationWrapper;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.Dataset;
+import moeba.utils.dataset.DatasetRegistry;
+import moeba.utils.dataset.RowPrefixSums;
 import moeba.utils.observer.ProblemObserver;
 import moeba.utils.observer.ProblemObserver.ObserverInterface;
 import moeba.utils.output.SolutionListTranslatedVAR;
 import moeba.utils.output.SolutionListVARWithHeader;
 import moeba.utils.storage.CacheStorage;
+import moeba.utils.storage.EvaluationStore;
 import moeba.utils.storage.impl.HybridCache;
+import moeba.utils.storage.impl.LocalCache;
+import moeba.utils.storage.impl.OffHeapCache;
+import moeba.utils.storage.impl.PersistentCache;
+import moeba.utils.storage.serializer.BiclusterFingerprintSerializer;
+import moeba.utils.storage.serializer.DoubleArraySerializer;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 @Command(name = "RunnerMOEBA", description = "Multi-Objective Evolutionary Biclustering Algorithm (MOEBA) for Heterogeneous Clinical Data (HeCliDa) with progressive representation for self-determination on the number of clusters", mixinStandardHelpOptions = true, showDefaultValues = true, sortOptions = false)
 public class Runner extends AbstractAlgorithmRunner implements Runnable {
+    // Estimated bytes of a local cache entry besides its value: the fingerprint key, its two longs and the entry itself
+    private static final long CACHE_ENTRY_BYTES = LocalCache.ENTRY_OVERHEAD + 32;
+
 
     @Option(names = {"--input-dataset"}, description = "Path to the input CSV dataset on which you want to perform biclustering", required = true)
     private File inputDataset;
@@ -58,7 +75,7 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
             description = "Objectives to optimize separated by semicolon. Possible values: \n" + //
                 "\t- General purpose objectives (Any representation): BiclusterSizeNormComp, BiclusterVarianceNorm, RowVarianceNormComp, MeanSquaredResidueNorm \n" + //
                 "\t- General purpose objectives (GENERIC or SPECIFIC representation): BiclusterSizeNumBicsNormComp, DistanceBetweenBiclustersNormComp \n" + //
-                "\t- Co-Expression objectives (GENERIC or SPECIFIC representation): RegulatoryCoherenceNormComp \n" + //
+                "\t- Co-Expression objectives (GENERIC or SPECIFIC representation): RegulatoryCoherenceNormComp(inference=GENIE3 or Correlation, maxRegulators=10, only for Correlation) \n" + //
                 "In case any objective requires additional parameters, they shall be specified in brackets in the following way ObjectiveName(parameter1=value, parameter2=value, ...)", 
             defaultValue = "BiclusterSizeNormComp;MeanSquaredResidueNorm")
     private String strFitnessFormulas;
@@ -115,12 +132,66 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
     @Option(names = {"--have-internal-cache"}, description = "Whether the internal cache is used")
     private boolean haveInternalCache;
 
+    @Option(names = {"--external-cache-heap-entries"}, description = "Maximum number of solutions in the heap tier of the external cache", defaultValue = "100000")
+    private long externalCacheHeapEntries;
+
+    @Option(names = {"--external-cache-offheap-mb"}, description = "Size in MB of the off-heap tier of the external cache. 0 disables it", defaultValue = "0")
+    private long externalCacheOffheapMb;
+
+    @Option(names = {"--external-cache-disk-mb"}, description = "Size in MB of the disk tier of the external cache, larger than its off-heap tier. 0 disables it", defaultValue = "0")
+    private long externalCacheDiskMb;
+
+    @Option(names = {"--internal-cache-heap-entries"}, description = "Maximum number of biclusters in the heap tier of each internal cache", defaultValue = "100000")
+    private long internalCacheHeapEntries;
+
+    @Option(names = {"--internal-cache-offheap-mb"}, description = "Size in MB of the off-heap tier of each internal cache. 0 disables it", defaultValue = "0")
+    private long internalCacheOffheapMb;
+
+    @Option(names = {"--internal-cache-disk-mb"}, description = "Size in MB of the disk tier of each internal cache, larger than its off-heap tier. 0 disables it", defaultValue = "0")
+    private long internalCacheDiskMb;
+
+    @Option(names = {"--local-caches"}, description = "Whether the caches are bounded heap caches that admit entries by their access frequency, instead of Ehcache caches. They are sized by the heap entries or by the maximum MB of each cache")
+    private boolean localCaches;
+
+    @Option(names = {"--external-cache-max-mb"}, description = "Estimated maximum size in MB of the external cache, when it is local. 0 bounds it by its heap entries instead", defaultValue = "0")
+    private long externalCacheMaxMb;
+
+    @Option(names = {"--internal-cache-max-mb"}, description = "Estimated maximum size in MB of each internal cache, when they are local. 0 bounds them by their heap entries instead", defaultValue = "0")
+    private long internalCacheMaxMb;
+
+    @Option(names = {"--external-cache-table-mb"}, description = "Size in MB of an off-heap table holding the external cache as primitive objective vectors, instead of an Ehcache or local cache. 0 disables it", defaultValue = "0")
+    private long externalCacheTableMb;
+
+    @Option(names = {"--cache-directory"}, description = "Directory of the disk tiers of the caches. Default: a temporary directory removed after the run")
+    private File cacheDirectory;
+
+    @Option(names = {"--evaluation-store"}, description = "File of the persistent store of evaluations below the enabled caches, shared by runs on the same dataset. Default: none")
+    private File evaluationStoreFile;
+
+    @Option(names = {"--evaluation-store-max-mb"}, description = "Size in MB from which the evaluation store is compacted, evicting its oldest evaluations", defaultValue = "1024")
+    private long evaluationStoreMaxMb;
+
+    @Option(names = {"--exact-cache-keys"}, description = "Whether cache keys keep their biclusters to compare them when fingerprints match, ruling out collisions at the cost of memory")
+    private boolean exactCacheKeys;
+
     @Option(names = {"--observers"}, description = "List of observers separated by semicolon. Possible values: BiclusterCountObserver, FitnessEvolutionMinObserver, FitnessEvolutionAvgObserver, FitnessEvolutionMaxObserver, NumEvaluationsObserver, ExternalCacheObserver, InternalCacheObserver", defaultValue = "BiclusterCountObserver;FitnessEvolutionMinObserver;NumEvaluationsObserver;ExternalCacheObserver;InternalCacheObserver")
     private String strObservers;
 
     @Option(names = {"--num-threads"}, description = "Number of threads. Default: All")
     private int numThreads = Runtime.getRuntime().availableProcessors();
 
+    @Option(names = {"--parallel-scoring-min-biclusters"}, description = "Minimum number of biclusters of a solution to score them in parallel, when there are idle threads", defaultValue = "" + ParallelScoring.DEFAULT_THRESHOLD)
+    private int parallelScoringMinBiclusters;
+
+    @Option(names = {"--prefix-sums-max-memory"}, description = "Maximum memory, in MB, of the row prefix sums that speed up variance objectives on biclusters of consecutive columns. 0 disables them", defaultValue = "" + (RowPrefixSums.DEFAULT_MEMORY_BUDGET >> 20))
+    private long prefixSumsMaxMemory;
+
+    @Option(names = {"--data-layout"}, description = "Memory layout of the numeric matrix. Possible values: ROW_MAJOR, COLUMN_MAJOR", defaultValue = "COLUMN_MAJOR")
+    private DataMatrix.Layout dataLayout;
+
+    @Option(names = {"--float-storage"}, description = "Whether to store the numeric matrix as floats instead of doubles, halving its memory")
+    private boolean floatStorage;
+
     @Option(names = {"--output-folder"}, description = "Output folder")
     private String outputFolder;
 
@@ -130,7 +201,6 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
     // Store observers
     private ObserverInterface[] observers;
 
-    @SuppressWarnings("unchecked")
     @Override
     public void run() {
         // Config sort. NOTE: https://github.com/jMetal/jMetal/issues/446
@@ -151,41 +221,62 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
             throw new IllegalArgumentException("No se puede fijar la suma de objetivos individuales para la representación " + this.representation);
         }
 
-        // Read input dataset
-        String[][] data = null;
-        try {
-            data = StaticUtils.csvToStringMatrix(inputDataset);
+        // Borrow the input dataset, already converted to a numeric matrix in base of column types, from the registry
+        long computingTime;
+        try (DatasetRegistry.Lease datasetLease = DatasetRegistry.getInstance().acquire(inputDataset, inputColumnTypes, numThreads, dataLayout, floatStorage)) {
+            // Values stored as floats change the objectives, so their evaluations are kept apart
+            String datasetHash = Long.toHexString(datasetLease.getContentHash()) + (datasetLease.getDataset().getMatrix().isFloatStorage() ? "|float" : "");
+            computingTime = run(datasetLease.getDataset(), datasetHash);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new RuntimeException(e);
         }
 
-        // Read column names from input CSV file
-        String[] columnNames = null;
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(inputDataset));
-            columnNames = br.readLine().split(",");
-            br.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        // Read column types
-        Class<?>[] types = null;
-        try {
-            types = StaticUtils.jsonToClassArray(inputColumnTypes, columnNames);
-        } catch (IOException e) {
-            e.printStackTrace();
+        System.out.println("Threads used: " + numThreads);
+        System.out.println("Total execution time: " + computingTime + "ms");
+            
+        if (numThreads > 1) {
+            System.exit(0);
         }
+    }
 
-        // Convert data to numeric matrix in base of types
-        double[][] numericData = StaticUtils.dataToNumericMatrix(data, types, numThreads);
-        data = null;
+    /**
+     * Runs the algorithm on a dataset and writes the output files.
+     *
+     * @param dataset The input dataset
+     * @param datasetHash Identifier of the content of the dataset, shared by the runs on the same values
+     * @return The execution time of the algorithm in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    private long run(Dataset dataset, String datasetHash) {
+        Class<?>[] types = dataset.getTypes();
+        DataMatrix numericData = dataset.getMatrix();
+        EvaluationContext context = new EvaluationContext(new ParallelScoring(numThreads, parallelScoringMinBiclusters), prefixSumsMaxMemory << 20);
 
         // Create Hybrid Caches Manager
         BasicConfigurator.configure();
         Logger rootLogger = Logger.getRootLogger();
         rootLogger.setLevel(Level.OFF);
-        CacheManager hybridCacheManager = CacheManagerBuilder.newCacheManagerBuilder().build();
+        // Tiers of the caches kept by Ehcache, null for those kept by another backend or not used
+        HybridCache.Tiers externalTiers = haveExternalCache && !localCaches && externalCacheTableMb == 0
+                ? new HybridCache.Tiers(externalCacheHeapEntries, externalCacheOffheapMb, externalCacheDiskMb)
+                : null;
+        HybridCache.Tiers internalTiers = haveInternalCache && !localCaches
+                ? new HybridCache.Tiers(internalCacheHeapEntries, internalCacheOffheapMb, internalCacheDiskMb)
+                : null;
+        if (localCaches && (externalCacheOffheapMb > 0 || externalCacheDiskMb > 0 || internalCacheOffheapMb > 0 || internalCacheDiskMb > 0)) {
+            throw new IllegalArgumentException("Local caches have no off-heap or disk tiers");
+        }
+        Path diskDirectory = null;
+        if ((externalTiers != null && externalTiers.hasDisk()) || (internalTiers != null && internalTiers.hasDisk())) {
+            try {
+                diskDirectory = cacheDirectory != null ? cacheDirectory.toPath() : Files.createTempDirectory("moeba-cache");
+            } catch (IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+        }
+        CacheManager hybridCacheManager = diskDirectory == null
+                ? CacheManagerBuilder.newCacheManagerBuilder().build()
+                : CacheManagerBuilder.newCacheManagerBuilder().with(CacheManagerBuilder.persistence(diskDirectory.toFile())).build();
         hybridCacheManager.init();
 
         // Evolución central con representación genérica
@@ -193,14 +284,46 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
         String[] fitnessFunctions = strFitnessFormulas.split(";");
 
         // 2. Caché externa
-        CacheStorage<String, Double[]> externalCache = haveExternalCache ? new HybridCache<>(hybridCacheManager, "ExternalCache", String.class, Double[].class, 1000) : null;
+        CacheStorage<BiclusterFingerprint, Double[]> externalCache = null;
+        OffHeapCache offHeapCache = null;
+        if (haveExternalCache) {
+            if (externalCacheTableMb > 0) {
+                offHeapCache = new OffHeapCache(fitnessFunctions.length, externalCacheTableMb << 20, numThreads);
+                externalCache = offHeapCache;
+            } else if (localCaches) {
+                externalCache = createLocalCache(externalCacheHeapEntries, externalCacheMaxMb, (key, value) -> CACHE_ENTRY_BYTES + 20L * value.length);
+            } else {
+                externalCache = new HybridCache<>(hybridCacheManager, "ExternalCache", BiclusterFingerprint.class, Double[].class, externalTiers, new BiclusterFingerprintSerializer(), new DoubleArraySerializer());
+            }
+        }
 
         // 3. Cachés internas
-        CacheStorage<String, Double>[] internalCaches = null;
+        CacheStorage<BiclusterFingerprint, Double>[] internalCaches = null;
         if (haveInternalCache) {
             internalCaches = new CacheStorage[fitnessFunctions.length];
             for (int i = 0; i < internalCaches.length; i++) {
-                internalCaches[i] = new HybridCache<>(hybridCacheManager, fitnessFunctions[i] + "Cache", String.class, Double.class, 1000);
+                internalCaches[i] = localCaches
+                        ? createLocalCache(internalCacheHeapEntries, internalCacheMaxMb, (key, value) -> CACHE_ENTRY_BYTES + 16)
+                        : new HybridCache<>(hybridCacheManager, fitnessFunctions[i] + "Cache", BiclusterFingerprint.class, Double.class, internalTiers, new BiclusterFingerprintSerializer(), null);
+            }
+        }
+
+        // Persistent store below the caches, shared with other runs on the same dataset. Solutions are
+        // also keyed by the summarising method, which changes their objectives but not the bicluster scores
+        EvaluationStore evaluationStore = null;
+        if (evaluationStoreFile != null && (externalCache != null || internalCaches != null)) {
+            evaluationStore = EvaluationStore.open(evaluationStoreFile.toPath(), evaluationStoreMaxMb << 20);
+            if (externalCache != null) {
+                String objectives = EvaluationStore.canonicalObjective(strFitnessFormulas) + "|" + summariseIndividualObjectives.toLowerCase();
+                externalCache = PersistentCache.ofObjectives(externalCache, evaluationStore, EvaluationStore.namespace(datasetHash, objectives));
+            }
+            if (internalCaches != null) {
+                for (int i = 0; i < internalCaches.length; i++) {
+                    // Scores keyed by a bicluster but depending on the rest of its solution must not outlive the run
+                    if (StaticUtils.hasSolutionDependentScores(fitnessFunctions[i])) continue;
+                    String objective = EvaluationStore.canonicalObjective(fitnessFunctions[i]);
+                    internalCaches[i] = PersistentCache.ofScores(internalCaches[i], evaluationStore, EvaluationStore.namespace(datasetHash, objective));
+                }
             }
         }
 
@@ -212,10 +335,10 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
         }
 
         // Problem
-        float genericInitialMinPercBics = genericInitialMinNumBics != -1 ? (float) genericInitialMinNumBics / numericData.length : 0.05f;
-        float genericInitialMaxPercBics = genericInitialMaxNumBics != -1 ? (float) genericInitialMaxNumBics / numericData.length : 0.25f;
-        RepresentationWrapper representationWrapper = StaticUtils.getRepresentationWrapperFromRepresentation(representation, numericData.length, numericData[0].length, specificNumBiclusters, genericInitialMinPercBics, genericInitialMaxPercBics, summariseIndividualObjectives);
-        Problem problem = new ProblemObserver(numericData, types, fitnessFunctions, externalCache, internalCaches, representationWrapper, this.observers);
+        float genericInitialMinPercBics = genericInitialMinNumBics != -1 ? (float) genericInitialMinNumBics / numericData.getNumRows() : 0.05f;
+        float genericInitialMaxPercBics = genericInitialMaxNumBics != -1 ? (float) genericInitialMaxNumBics / numericData.getNumRows() : 0.25f;
+        RepresentationWrapper representationWrapper = StaticUtils.getRepresentationWrapperFromRepresentation(representation, numericData.getNumRows(), numericData.getNumCols(), specificNumBiclusters, genericInitialMinPercBics, genericInitialMaxPercBics, summariseIndividualObjectives);
+        Problem problem = new ProblemObserver(numericData, types, fitnessFunctions, externalCache, internalCaches, representationWrapper, exactCacheKeys, context, this.observers);
 
         // Operators
         // 1. Crossover
@@ -228,16 +351,26 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
         NaryTournamentSelection<CompositeSolution> selection = new BinaryTournamentSelection<>(new RankingAndCrowdingDistanceComparator<>());
 
         // Algorithm
-        AlgorithmResult<CompositeSolution> result = StaticUtils.executeEvolutionaryAlgorithm(
-                problem,
-                populationSize,
-                maxEvaluations,
-                strAlgorithm,
-                selection,
-                crossover,
-                mutation,
-                numThreads
-        );
+        AlgorithmResult<CompositeSolution> result;
+        try {
+            result = StaticUtils.executeEvolutionaryAlgorithm(
+                    problem,
+                    populationSize,
+                    maxEvaluations,
+                    strAlgorithm,
+                    selection,
+                    crossover,
+                    mutation,
+                    numThreads
+            );
+        } finally {
+            // Frees the off-heap memory of the caches and removes their disk tiers
+            hybridCacheManager.close();
+            if (offHeapCache != null) offHeapCache.close();
+            if (diskDirectory != null && cacheDirectory == null) deleteDirectory(diskDirectory);
+            if (evaluationStore != null) evaluationStore.close();
+            context.close();
+        }
 
         // Store population
         this.solutions = result.population;
@@ -267,12 +400,26 @@ public class Runner extends AbstractAlgorithmRunner implements Runnable {
                 .printTranslatedVAR(outputFolder + "/VAR-translated.csv", result.population);
         }
 
+        return result.computingTime;
+    }
 
-        System.out.println("Threads used: " + numThreads);
-        System.out.println("Total execution time: " + result.computingTime + "ms");
-            
-        if (numThreads > 1) {
-            System.exit(0);
+    /**
+     * Creates a local cache bounded in entries or, if a size is given, in estimated bytes.
+     *
+     * @param maxEntries Maximum number of entries
+     * @param maxMb Maximum size in MB, or 0 to bound the cache in entries
+     * @param weigher Estimated size in bytes of each entry
+     * @return The cache
+     */
+    private static <V> CacheStorage<BiclusterFingerprint, V> createLocalCache(long maxEntries, long maxMb, LocalCache.Weigher<BiclusterFingerprint, V> weigher) {
+        return maxMb > 0 ? new LocalCache<>(maxMb << 20, weigher) : new LocalCache<>(maxEntries);
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ioe) {
+            System.out.println("Warning: could not remove cache directory " + directory + ": " + ioe.getMessage());
         }
     }
 
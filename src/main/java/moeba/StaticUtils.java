@@ -15,11 +15,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -31,6 +31,12 @@ import java.util.Enumeration;
 import moeba.algorithm.AsyncMultiThreadGAParents;
 import moeba.algorithm.AsyncMultiThreadNSGAIIParents;
 import moeba.algorithm.AsyncMultiThreadNSGAIIParentsExternalFile;
+import moeba.algorithm.BatchIBEA;
+import moeba.algorithm.BatchSolutionListEvaluator;
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.fitnessfunction.BiclusterFitnessFunction;
+import moeba.fitnessfunction.EvaluationContext;
 import moeba.fitnessfunction.FitnessFunction;
 import moeba.fitnessfunction.impl.BiclusterSizeNormComp;
 import moeba.fitnessfunction.impl.BiclusterSizeNumBicsNormComp;
@@ -44,6 +50,10 @@ import moeba.representationwrapper.RepresentationWrapper;
 import moeba.representationwrapper.impl.GenericRepresentationWrapper;
 import moeba.representationwrapper.impl.IndividualRepresentationWrapper;
 import moeba.representationwrapper.impl.SpecificRepresentationWrapper;
+import moeba.utils.coexpression.CorrelationInference;
+import moeba.utils.coexpression.DockerGenie3Inference;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.DatasetLoader;
 import moeba.utils.observer.ProblemObserver.ObserverInterface;
 import moeba.utils.observer.impl.BiclusterCountObserver;
 import moeba.utils.observer.impl.ExternalCacheObserver;
@@ -56,7 +66,6 @@ import moeba.utils.observer.impl.ParameterizationFunVarCleanerObserver;
 import moeba.utils.storage.CacheStorage;
 import org.apache.commons.math3.util.CombinatoricsUtils;
 import org.uma.jmetal.algorithm.Algorithm;
-import org.uma.jmetal.algorithm.multiobjective.ibea.IBEA;
 import org.uma.jmetal.algorithm.multiobjective.mocell.MOCell;
 import org.uma.jmetal.algorithm.multiobjective.mosa.MOSA;
 import org.uma.jmetal.algorithm.multiobjective.mosa.cooling.impl.Exponential;
@@ -87,7 +96,6 @@ import org.uma.jmetal.util.archive.impl.SpatialSpreadDeviationArchive;
 import org.uma.jmetal.util.comparator.DominanceComparator;
 import org.uma.jmetal.util.comparator.ObjectiveComparator;
 import org.uma.jmetal.util.densityestimator.impl.CrowdingDistanceDensityEstimator;
-import org.uma.jmetal.util.evaluator.impl.SequentialSolutionListEvaluator;
 import org.uma.jmetal.util.legacy.qualityindicator.impl.hypervolume.impl.PISAHypervolume;
 import org.uma.jmetal.util.neighborhood.Neighborhood;
 import org.uma.jmetal.util.neighborhood.impl.C25;
@@ -103,20 +111,24 @@ import org.uma.jmetal.problem.Problem;
 public final class StaticUtils {
 
     private static class ObjectivesParams {
-        public double[][] data;
+        public DataMatrix data;
         public Class<?>[] types;
-        public CacheStorage<String, Double> cache;
+        public CacheStorage<BiclusterFingerprint, Double> cache;
         public String summariseIndividualObjectives;
+        public EvaluationContext context;
 
-        public ObjectivesParams(double[][] data, Class<?>[] types, CacheStorage<String, Double> cache, String summariseIndividualObjectives) {
+        public ObjectivesParams(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> cache, String summariseIndividualObjectives, EvaluationContext context) {
             this.data = data;
             this.types = types;
             this.cache = cache;
             this.summariseIndividualObjectives = summariseIndividualObjectives;
+            this.context = context;
         }
     }
 
     static final Map<String, BiFunction<String, ObjectivesParams, FitnessFunction>> OBJETIVES_MAP = new HashMap<>();
+    // Objectives whose bicluster scores also depend on the other biclusters of the solution
+    static final Set<String> SOLUTION_DEPENDENT_OBJECTIVES = Set.of("distancebetweenbiclustersnormcomp", "biclustersizenumbicsnormcomp");
     static {
         OBJETIVES_MAP.put("biclustersizenormcomp", (str, op) -> {
             Map<String, String> subParams = getSubParams("biclustersizenormcomp", str);
@@ -128,13 +140,13 @@ public final class StaticUtils {
         OBJETIVES_MAP.put("biclustervariancenorm", (str, op) -> {
             Map<String, String> subParams = getSubParams("biclustervariancenorm", str);
             String sumIndObjs = StaticUtils.getOne("biclustervariancenorm", subParams, "summariseindividualobjectives", op.summariseIndividualObjectives);
-            return new BiclusterVarianceNorm(op.data, op.types, op.cache, sumIndObjs);
+            return new BiclusterVarianceNorm(op.data, op.types, op.cache, sumIndObjs, op.context.getPrefixSumsMemoryBudget());
         });
 
         OBJETIVES_MAP.put("rowvariancenormcomp", (str, op) -> {
             Map<String, String> subParams = getSubParams("rowvariancenormcomp", str);
             String sumIndObjs = StaticUtils.getOne("rowvariancenormcomp", subParams, "summariseindividualobjectives", op.summariseIndividualObjectives);
-            return new RowVarianceNormComp(op.data, op.types, op.cache, sumIndObjs);
+            return new RowVarianceNormComp(op.data, op.types, op.cache, sumIndObjs, op.context.getPrefixSumsMemoryBudget());
         });
 
         OBJETIVES_MAP.put("meansquaredresiduenorm", (str, op) -> {
@@ -150,7 +162,17 @@ public final class StaticUtils {
         });
 
         OBJETIVES_MAP.put("regulatorycoherencenormcomp", (str, op) -> {
-            return new RegulatoryCoherenceNormComp(op.data, op.types);
+            Map<String, String> subParams = getSubParams("regulatorycoherencenormcomp", str);
+            String inference = StaticUtils.getOne("regulatorycoherencenormcomp", subParams, "inference", "genie3");
+            switch (inference) {
+                case "genie3":
+                    return new RegulatoryCoherenceNormComp(op.data, op.types, new DockerGenie3Inference());
+                case "correlation":
+                    int maxRegulators = Integer.parseInt(StaticUtils.getOne("regulatorycoherencenormcomp", subParams, "maxregulators", "10"));
+                    return new RegulatoryCoherenceNormComp(op.data, op.types, new CorrelationInference(maxRegulators, op.context.getNumThreads()));
+                default:
+                    throw new IllegalArgumentException("Network inference not supported: " + inference);
+            }
         });
 
         OBJETIVES_MAP.put("biclustersizenumbicsnormcomp", (str, op) -> {
@@ -166,16 +188,47 @@ public final class StaticUtils {
      * Returns a FitnessFunction object based on a given identifier string.
      *
      * @param str the identifier string for the fitness function
-     * @param data the 2D array of data
+     * @param data the data matrix
+     * @param types the array of data types
+     * @param cache the internal cache of the fitness function
+     * @param summariseIndividualObjectives the way to summarise the overall quality of the solutions from the individual quality of their biclusters
+     * @return a FitnessFunction object
+     * @throws RuntimeException if the fitness function is not implemented
+     */
+    public static FitnessFunction getFitnessFunctionFromString(String str, DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> cache, String summariseIndividualObjectives) {
+        return getFitnessFunctionFromString(str, data, types, cache, summariseIndividualObjectives, EvaluationContext.getDefault());
+    }
+
+    /**
+     * Returns whether the score that a fitness function gives to a bicluster also depends on the
+     * other biclusters of its solution, in which case it is not determined by the bicluster alone.
+     *
+     * @param str the identifier string for the fitness function
+     * @return true if the bicluster scores depend on the whole solution
+     */
+    public static boolean hasSolutionDependentScores(String str) {
+        String name = str.toLowerCase();
+        for (String objective : SOLUTION_DEPENDENT_OBJECTIVES) {
+            if (name.startsWith(objective)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a FitnessFunction object based on a given identifier string, for a run.
+     *
+     * @param str the identifier string for the fitness function
+     * @param data the data matrix
      * @param types the array of data types
      * @param cache the internal cache of the fitness function
      * @param summariseIndividualObjectives the way to summarise the overall quality of the solutions from the individual quality of their biclusters
+     * @param context the resources and settings of the run
      * @return a FitnessFunction object
      * @throws RuntimeException if the fitness function is not implemented
      */
-    public static FitnessFunction getFitnessFunctionFromString(String str, double[][] data, Class<?>[] types, CacheStorage<String, Double> cache, String summariseIndividualObjectives) {
+    public static FitnessFunction getFitnessFunctionFromString(String str, DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> cache, String summariseIndividualObjectives, EvaluationContext context) {
         // Create an ObjectivesParams object with the given data, types and cache
-        ObjectivesParams op = new ObjectivesParams(data, types, cache, summariseIndividualObjectives);
+        ObjectivesParams op = new ObjectivesParams(data, types, cache, summariseIndividualObjectives, context);
 
         // Iterate over the entries in the OBJETIVES_MAP
         FitnessFunction res = null;
@@ -190,6 +243,9 @@ public final class StaticUtils {
         if (res == null) {
             throw new RuntimeException("Fitness function not implemented: " + str);
         }
+        if (res instanceof BiclusterFitnessFunction) {
+            ((BiclusterFitnessFunction) res).setParallelScoring(context.getParallelScoring());
+        }
 
         // Return the found fitness function
         return res;
@@ -208,7 +264,7 @@ public final class StaticUtils {
      * @return an observer
      * @throws RuntimeException if the observer is not implemented
      */
-    public static ObserverInterface getObserverFromString(String str, int populationSize, String[] fitnessFunctions, int numGenerations, CacheStorage<String, Double[]> externalCache, CacheStorage<String, Double>[] internalCaches, ParameterizationExercise exercise) {
+    public static ObserverInterface getObserverFromString(String str, int populationSize, String[] fitnessFunctions, int numGenerations, CacheStorage<BiclusterFingerprint, Double[]> externalCache, CacheStorage<BiclusterFingerprint, Double>[] internalCaches, ParameterizationExercise exercise) {
         ObserverInterface res;
         switch (str.toLowerCase()) {
             case "biclustercountobserver":
@@ -343,7 +399,10 @@ public final class StaticUtils {
      * Converts a data matrix with string values to a matrix with numeric values.
      * Supported types: string, float, double, int, boolean.
      * Strings are converted to categorical values, with each unique string value
-     * being assigned a unique numeric value.
+     * being assigned a unique numeric value in order of first appearance.
+     * Columns are converted in parallel and the method returns once all of them
+     * have been converted. Use {@link DatasetLoader#convert} to also keep the
+     * dictionaries and the column statistics.
      *
      * @param data The data matrix with string values
      * @param types The types of each column in the data matrix
@@ -351,42 +410,9 @@ public final class StaticUtils {
      * @return A matrix with numeric values
      */
     public static double[][] dataToNumericMatrix(String[][] data, Class<?>[] types, int numThreads) {
-        double[][] numericData = new double[data.length][data[0].length];
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-
-        // Convert each column in parallel
-        for (int j = 0; j < data[0].length; j++) {
-            final int colIndex = j;
-            executor.execute(() -> {
-                // Determine how to convert the data in this column based on its type
-                if (types[colIndex] == Float.class || types[colIndex] == Double.class
-                        || types[colIndex] == Integer.class) {
-                    // Column is numeric, directly parse the values as doubles
-                    for (int i = 0; i < data.length; i++) {
-                        numericData[i][colIndex] = Double.parseDouble(data[i][colIndex]);
-                    }
-                } else if (types[colIndex] == Boolean.class) {
-                    // Column is boolean, map "Yes" to 1.0 and other values to 0.0
-                    for (int i = 0; i < data.length; i++) {
-                        numericData[i][colIndex] = data[i][colIndex].equalsIgnoreCase("Yes") ? 1.0 : 0.0;
-                    }
-                } else if (types[colIndex] == String.class) {
-                    // Column is string, convert to categorical values
-                    Map<String, Double> categoryToNumber = new HashMap<>();
-                    double categoryIndex = 0.0;
-                    for (int i = 0; i < data.length; i++) {
-                        String category = data[i][colIndex];
-                        if (!categoryToNumber.containsKey(category)) {
-                            categoryToNumber.put(category, categoryIndex);
-                            categoryIndex++;
-                        }
-                        numericData[i][colIndex] = categoryToNumber.get(category);
-                    }
-                }
-            });
-        }
-        executor.shutdown();
-        return numericData;
+        String[] columnNames = new String[types.length];
+        Arrays.fill(columnNames, "");
+        return DatasetLoader.convert(columnNames, data, types, numThreads, DataMatrix.Layout.ROW_MAJOR, false).getData();
     }
 
     /**
@@ -490,6 +516,7 @@ public final class StaticUtils {
                 Algorithm<List<CompositeSolution>> algorithm = new NSGAIIBuilder<>(problem, crossover, mutation, populationSize)
                         .setSelectionOperator(selection)
                         .setMaxEvaluations(maxEvaluations)
+                        .setSolutionListEvaluator(new BatchSolutionListEvaluator())
                         .build();
 
                 AlgorithmRunner algorithmRunner = new AlgorithmRunner.Executor(algorithm).execute();
@@ -668,7 +695,7 @@ public final class StaticUtils {
                     crossover,
                     mutation,
                     selection,
-                    new SequentialSolutionListEvaluator<>()
+                    new BatchSolutionListEvaluator()
                 );
 
                 algorithm.run();
@@ -690,7 +717,7 @@ public final class StaticUtils {
                    crossover,
                    mutation,
                    selection,
-                   new SequentialSolutionListEvaluator<>(),
+                   new BatchSolutionListEvaluator(),
                    Integer.parseInt(StaticUtils.getOne("SPEA2-SingleThread", subParams, "k", "1"))
                 );
 
@@ -703,14 +730,15 @@ public final class StaticUtils {
                 // Instantiates and executes a single-threaded IBEA algorithm
                 long initTime = System.currentTimeMillis();
 
-                IBEA<CompositeSolution> algorithm = new IBEA<CompositeSolution>(
+                BatchIBEA<CompositeSolution> algorithm = new BatchIBEA<CompositeSolution>(
                     problem,
                     populationSize,
                     populationSize,
                     maxEvaluations,
                     selection,
                     crossover,
-                    mutation
+                    mutation,
+                    new BatchSolutionListEvaluator()
                 );
 
                 algorithm.run();
@@ -835,6 +863,22 @@ public final class StaticUtils {
         return res.substring(0, res.length() - 2); // Remove last comma and space
     }
 
+    /**
+     * Converts a list of biclusters to a string representation, with the same format as
+     * {@link #biclustersToString(ArrayList)}.
+     *
+     * @param biclusters The list of biclusters to convert to a string
+     * @return The string representation of the list of biclusters
+     */
+    public static String biclustersToString(List<Bicluster> biclusters) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < biclusters.size(); i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(biclusters.get(i));
+        }
+        return builder.toString();
+    }
+
     /**
      * Converts a string representation of biclusters into a list of biclusters.
      * Each bicluster is represented as an ArrayList of two ArrayLists of Integers,
@@ -0,0 +1,95 @@
+package moeba.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.uma.jmetal.algorithm.multiobjective.ibea.IBEA;
+import org.uma.jmetal.operator.crossover.CrossoverOperator;
+import org.uma.jmetal.operator.mutation.MutationOperator;
+import org.uma.jmetal.operator.selection.SelectionOperator;
+import org.uma.jmetal.problem.Problem;
+import org.uma.jmetal.solution.Solution;
+import org.uma.jmetal.util.evaluator.SolutionListEvaluator;
+
+/**
+ * IBEA that evaluates the initial population and the offspring of each generation through a
+ * {@link SolutionListEvaluator}, instead of one solution at a time as it is created. Offspring
+ * are only selected from the archive, which is not changed while they are created, so the search
+ * is the same as the one of {@link IBEA}.
+ *
+ * @param <S> Solution type that extends the Solution interface.
+ */
+public class BatchIBEA<S extends Solution<?>> extends IBEA<S> {
+  private final SolutionListEvaluator<S> evaluator;
+
+  /**
+   * Constructs the algorithm with the parameters of {@link IBEA} and the evaluator of its populations.
+   *
+   * @param problem           The problem to be solved.
+   * @param populationSize    The size of the population.
+   * @param archiveSize       The size of the archive.
+   * @param maxEvaluations    The maximum number of evaluations.
+   * @param selection         The selection operator used to choose parents from the archive.
+   * @param crossover         The crossover operator.
+   * @param mutation          The mutation operator.
+   * @param evaluator         The evaluator of the initial population and of each generation of offspring.
+   */
+  public BatchIBEA(
+      Problem<S> problem,
+      int populationSize,
+      int archiveSize,
+      int maxEvaluations,
+      SelectionOperator<List<S>, S> selection,
+      CrossoverOperator<S> crossover,
+      MutationOperator<S> mutation,
+      SolutionListEvaluator<S> evaluator) {
+    super(problem, populationSize, archiveSize, maxEvaluations, selection, crossover, mutation);
+    this.evaluator = evaluator;
+  }
+
+  @Override
+  public void run() {
+    List<S> solutionSet = new ArrayList<>(populationSize);
+    archive = new ArrayList<>(archiveSize);
+    for (int i = 0; i < populationSize; i++) {
+      solutionSet.add(problem.createSolution());
+    }
+    evaluator.evaluate(solutionSet, problem);
+    int evaluations = populationSize;
+
+    while (evaluations < maxEvaluations) {
+      List<S> union = new ArrayList<>(solutionSet);
+      union.addAll(archive);
+      calculateFitness(union);
+      archive = union;
+      while (archive.size() > populationSize) {
+        removeWorst(archive);
+      }
+
+      // Offspring are created first and then evaluated together
+      List<S> offspringSet = new ArrayList<>(populationSize);
+      while (offspringSet.size() < populationSize) {
+        S parent1 = select();
+        S parent2 = select();
+        List<S> parents = new ArrayList<>(2);
+        parents.add(parent1);
+        parents.add(parent2);
+        List<S> offspring = crossoverOperator.execute(parents);
+        mutationOperator.execute(offspring.get(0));
+        offspringSet.add(offspring.get(0));
+        evaluations++;
+      }
+      evaluator.evaluate(offspringSet, problem);
+      solutionSet = offspringSet;
+    }
+  }
+
+  // Keeps the last of several tournaments, as IBEA does
+  private S select() {
+    S res = null;
+    for (int j = 0; j < TOURNAMENTS_ROUNDS; j++) {
+      res = selectionOperator.execute(archive);
+    }
+    return res;
+  }
+}
@@ -0,0 +1,36 @@
+package moeba.algorithm;
+
+import java.util.List;
+
+import org.uma.jmetal.problem.Problem;
+import org.uma.jmetal.solution.compositesolution.CompositeSolution;
+import org.uma.jmetal.util.evaluator.SolutionListEvaluator;
+
+/**
+ * Evaluates the population of generational algorithms as a whole, so that the fitness functions
+ * can share work between its solutions, such as scoring once the biclusters repeated across the
+ * population. Problems other than {@link moeba.Problem} have their solutions evaluated one by one.
+ */
+public class BatchSolutionListEvaluator implements SolutionListEvaluator<CompositeSolution> {
+
+  /**
+   * Evaluates a list of solutions with the batch evaluation of the problem, when available.
+   *
+   * @param solutionList The solutions to be evaluated.
+   * @param problem The problem that evaluates them.
+   * @return The same list, with its solutions evaluated.
+   */
+  @Override
+  public List<CompositeSolution> evaluate(List<CompositeSolution> solutionList, Problem<CompositeSolution> problem) {
+    if (problem instanceof moeba.Problem) {
+      return ((moeba.Problem) problem).runBatch(solutionList);
+    }
+    solutionList.forEach(problem::evaluate);
+    return solutionList;
+  }
+
+  @Override
+  public void shutdown() {
+    // Nothing to release
+  }
+}
@@ -0,0 +1,351 @@
+package moeba.bicluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Immutable bicluster made of sorted, duplicate-free row and column indices stored as
+ * primitive arrays. Bitset views of the rows and columns and the runs of consecutive columns
+ * are built on first use, and the hash code and the fingerprint are computed once.
+ */
+public final class Bicluster {
+    private final int[] rows;
+    private final int[] cols;
+    private int hash;
+    private volatile BitSet rowSet;
+    private volatile BitSet colSet;
+    private volatile int[] colRuns;
+    private volatile BiclusterFingerprint fingerprint;
+
+    private Bicluster(int[] rows, int[] cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Creates a bicluster from arrays of indices in any order. The arrays are copied, sorted
+     * and cleaned of duplicates.
+     *
+     * @param rows Row indices
+     * @param cols Column indices
+     * @return The bicluster
+     */
+    public static Bicluster of(int[] rows, int[] cols) {
+        return new Bicluster(sortedCopy(rows), sortedCopy(cols));
+    }
+
+    /**
+     * Creates a bicluster that takes ownership of already sorted and duplicate-free arrays,
+     * without copying them. The arrays must not be modified afterwards.
+     *
+     * @param rows Sorted row indices
+     * @param cols Sorted column indices
+     * @return The bicluster
+     */
+    public static Bicluster wrap(int[] rows, int[] cols) {
+        return new Bicluster(rows, cols);
+    }
+
+    /**
+     * Creates a bicluster from its legacy representation, where position 0 holds the rows
+     * and position 1 the columns.
+     *
+     * @param bicluster The legacy bicluster
+     * @return The bicluster
+     */
+    public static Bicluster fromLists(ArrayList<Integer>[] bicluster) {
+        return of(toArray(bicluster[0]), toArray(bicluster[1]));
+    }
+
+    /**
+     * Converts a list of legacy biclusters.
+     *
+     * @param biclusters The legacy biclusters
+     * @return The biclusters in the same order
+     */
+    public static List<Bicluster> fromLists(List<ArrayList<Integer>[]> biclusters) {
+        List<Bicluster> res = new ArrayList<>(biclusters.size());
+        for (ArrayList<Integer>[] bicluster : biclusters) {
+            res.add(fromLists(bicluster));
+        }
+        return res;
+    }
+
+    /**
+     * Converts a list of biclusters to their legacy representation.
+     *
+     * @param biclusters The biclusters
+     * @return The legacy biclusters in the same order
+     */
+    public static ArrayList<ArrayList<Integer>[]> toLists(List<Bicluster> biclusters) {
+        ArrayList<ArrayList<Integer>[]> res = new ArrayList<>(biclusters.size());
+        for (Bicluster bicluster : biclusters) {
+            res.add(bicluster.toLists());
+        }
+        return res;
+    }
+
+    /**
+     * Returns the legacy representation of the bicluster, where position 0 holds the rows
+     * and position 1 the columns.
+     *
+     * @return A new legacy bicluster
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ArrayList<Integer>[] toLists() {
+        ArrayList<Integer>[] res = new ArrayList[2];
+        res[0] = toList(rows);
+        res[1] = toList(cols);
+        return res;
+    }
+
+    /**
+     * Returns the sorted row indices. The array is shared and must not be modified.
+     *
+     * @return The row indices
+     */
+    public int[] getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the sorted column indices. The array is shared and must not be modified.
+     *
+     * @return The column indices
+     */
+    public int[] getCols() {
+        return cols;
+    }
+
+    public int getNumRows() {
+        return rows.length;
+    }
+
+    public int getNumCols() {
+        return cols.length;
+    }
+
+    public int getRow(int k) {
+        return rows[k];
+    }
+
+    public int getCol(int k) {
+        return cols[k];
+    }
+
+    /**
+     * Returns the number of cells of the bicluster.
+     *
+     * @return Rows times columns
+     */
+    public long getSize() {
+        return (long) rows.length * cols.length;
+    }
+
+    public boolean containsRow(int row) {
+        return Arrays.binarySearch(rows, row) >= 0;
+    }
+
+    public boolean containsCol(int col) {
+        return Arrays.binarySearch(cols, col) >= 0;
+    }
+
+    /**
+     * Returns a bitset view of the rows, built on first use. It must not be modified.
+     *
+     * @return The rows as a bitset
+     */
+    public BitSet getRowSet() {
+        BitSet res = rowSet;
+        if (res == null) {
+            res = toBitSet(rows);
+            rowSet = res;
+        }
+        return res;
+    }
+
+    /**
+     * Returns a bitset view of the columns, built on first use. It must not be modified.
+     *
+     * @return The columns as a bitset
+     */
+    public BitSet getColSet() {
+        BitSet res = colSet;
+        if (res == null) {
+            res = toBitSet(cols);
+            colSet = res;
+        }
+        return res;
+    }
+
+    /**
+     * Returns the columns run-length encoded as ranges of consecutive indices, built on first
+     * use. Position 2k holds the first column of the k-th range and position 2k + 1 the column
+     * after its last one. The array is shared and must not be modified.
+     *
+     * @return The column ranges
+     */
+    public int[] getColRuns() {
+        int[] res = colRuns;
+        if (res == null) {
+            res = toRuns(cols);
+            colRuns = res;
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of ranges of consecutive columns.
+     *
+     * @return The number of column runs
+     */
+    public int getNumColRuns() {
+        return getColRuns().length / 2;
+    }
+
+    /**
+     * Returns the fingerprint of the bicluster, computed on first use.
+     *
+     * @return The fingerprint
+     */
+    BiclusterFingerprint getFingerprint() {
+        BiclusterFingerprint res = fingerprint;
+        if (res == null) {
+            res = BiclusterFingerprint.compute(rows, cols);
+            fingerprint = res;
+        }
+        return res;
+    }
+
+    /**
+     * Counts the columns shared with another bicluster by merging both sorted arrays.
+     *
+     * @param other The other bicluster
+     * @return The number of shared columns
+     */
+    public int countSharedCols(Bicluster other) {
+        return countShared(cols, other.cols);
+    }
+
+    /**
+     * Counts the rows shared with another bicluster by merging both sorted arrays.
+     *
+     * @param other The other bicluster
+     * @return The number of shared rows
+     */
+    public int countSharedRows(Bicluster other) {
+        return countShared(rows, other.rows);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Bicluster)) return false;
+        Bicluster other = (Bicluster) obj;
+        return hashCode() == other.hashCode() && Arrays.equals(rows, other.rows) && Arrays.equals(cols, other.cols);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * Arrays.hashCode(rows) + Arrays.hashCode(cols);
+            if (h == 0) h = 1;
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the same text as {@code StaticUtils.biclusterToString}, which is also the format
+     * of the translated output files.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(16 + 6 * (rows.length + cols.length));
+        builder.append("(rows: [");
+        appendIndices(builder, rows);
+        builder.append("] cols: [");
+        appendIndices(builder, cols);
+        builder.append("])");
+        return builder.toString();
+    }
+
+    private static void appendIndices(StringBuilder builder, int[] indices) {
+        for (int i = 0; i < indices.length; i++) {
+            if (i > 0) builder.append(' ');
+            builder.append(indices[i]);
+        }
+    }
+
+    private static int countShared(int[] a, int[] b) {
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    private static BitSet toBitSet(int[] indices) {
+        BitSet res = new BitSet(indices.length == 0 ? 0 : indices[indices.length - 1] + 1);
+        for (int index : indices) {
+            res.set(index);
+        }
+        return res;
+    }
+
+    private static int[] toRuns(int[] indices) {
+        int numRuns = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (i == 0 || indices[i] != indices[i - 1] + 1) numRuns++;
+        }
+        int[] res = new int[2 * numRuns];
+        int k = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (i == 0 || indices[i] != indices[i - 1] + 1) {
+                if (k > 0) res[k++] = indices[i - 1] + 1;
+                res[k++] = indices[i];
+            }
+        }
+        if (k > 0) res[k] = indices[indices.length - 1] + 1;
+        return res;
+    }
+
+    private static int[] sortedCopy(int[] indices) {
+        int[] res = indices.clone();
+        Arrays.sort(res);
+        int size = 0;
+        for (int i = 0; i < res.length; i++) {
+            if (i == 0 || res[i] != res[i - 1]) res[size++] = res[i];
+        }
+        return size == res.length ? res : Arrays.copyOf(res, size);
+    }
+
+    private static int[] toArray(List<Integer> indices) {
+        int[] res = new int[indices.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = indices.get(i);
+        }
+        return res;
+    }
+
+    private static ArrayList<Integer> toList(int[] indices) {
+        ArrayList<Integer> res = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            res.add(index);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,168 @@
+package moeba.bicluster;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 128-bit fingerprint of a bicluster or of an ordered list of biclusters, used as cache key
+ * instead of their text. It is computed from the sorted row and column indices with two
+ * independently seeded 64-bit mixing hashes, so two different keys only compare equal when both
+ * halves collide.
+ * <p>
+ * Exact fingerprints also keep a reference to the biclusters they were computed from, which are
+ * compared whenever the hashes match. They rule out collisions at the cost of keeping the
+ * biclusters alive while the key is cached.
+ */
+public final class BiclusterFingerprint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long SEED_HIGH = 0x27D4EB2F165667C5L;
+    private static final long SEED_LOW = 0x85EBCA77C2B2AE63L;
+
+    private final long high;
+    private final long low;
+    // Bicluster or list of biclusters compared on hash matches, only for exact fingerprints
+    private final transient Object source;
+
+    private BiclusterFingerprint(long high, long low, Object source) {
+        this.high = high;
+        this.low = low;
+        this.source = source;
+    }
+
+    /**
+     * Returns the fingerprint of a bicluster. It is computed once per bicluster.
+     *
+     * @param bicluster The bicluster
+     * @return The fingerprint
+     */
+    public static BiclusterFingerprint of(Bicluster bicluster) {
+        return bicluster.getFingerprint();
+    }
+
+    /**
+     * Returns the fingerprint of a list of biclusters, which depends on their order.
+     *
+     * @param biclusters The biclusters
+     * @return The fingerprint
+     */
+    public static BiclusterFingerprint of(List<Bicluster> biclusters) {
+        return combine(biclusters, null);
+    }
+
+    /**
+     * Returns the fingerprint of a bicluster that also compares the indices on hash matches.
+     *
+     * @param bicluster The bicluster
+     * @return The exact fingerprint
+     */
+    public static BiclusterFingerprint exactOf(Bicluster bicluster) {
+        BiclusterFingerprint fingerprint = bicluster.getFingerprint();
+        return new BiclusterFingerprint(fingerprint.high, fingerprint.low, bicluster);
+    }
+
+    /**
+     * Returns the fingerprint of a list of biclusters that also compares the biclusters on hash
+     * matches. The list must not be modified while the fingerprint is in use.
+     *
+     * @param biclusters The biclusters
+     * @return The exact fingerprint
+     */
+    public static BiclusterFingerprint exactOf(List<Bicluster> biclusters) {
+        return combine(biclusters, biclusters);
+    }
+
+    /**
+     * Rebuilds a fingerprint from its two halves, as read back from a serialized cache. It is
+     * never exact, since the biclusters are not stored.
+     *
+     * @param high The high half
+     * @param low The low half
+     * @return The fingerprint
+     */
+    public static BiclusterFingerprint fromBits(long high, long low) {
+        return new BiclusterFingerprint(high, low, null);
+    }
+
+    /**
+     * Computes the fingerprint of the indices of a bicluster.
+     *
+     * @param rows Sorted row indices
+     * @param cols Sorted column indices
+     * @return The fingerprint
+     */
+    static BiclusterFingerprint compute(int[] rows, int[] cols) {
+        long high = hash(cols, hash(rows, SEED_HIGH));
+        long low = hash(cols, hash(rows, SEED_LOW));
+        return new BiclusterFingerprint(mix(high), mix(low), null);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public boolean isExact() {
+        return source != null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof BiclusterFingerprint)) return false;
+        BiclusterFingerprint other = (BiclusterFingerprint) obj;
+        if (high != other.high || low != other.low) return false;
+        // Only verified when both sides know their biclusters
+        return source == null || other.source == null || source.equals(other.source);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    private static BiclusterFingerprint combine(List<Bicluster> biclusters, Object source) {
+        long high = SEED_HIGH + biclusters.size();
+        long low = SEED_LOW + biclusters.size();
+        for (Bicluster bicluster : biclusters) {
+            BiclusterFingerprint fingerprint = bicluster.getFingerprint();
+            high = Long.rotateLeft(high ^ fingerprint.high * PRIME_2, 27) * PRIME_1 + PRIME_3;
+            low = Long.rotateLeft(low ^ fingerprint.low * PRIME_2, 27) * PRIME_1 + PRIME_3;
+        }
+        return new BiclusterFingerprint(mix(high), mix(low), source);
+    }
+
+    // Two indices are folded into each 64-bit lane. The length separates rows from columns
+    private static long hash(int[] indices, long h) {
+        int i = 0;
+        for (; i + 1 < indices.length; i += 2) {
+            long lane = ((long) indices[i] << 32) | (indices[i + 1] & 0xFFFFFFFFL);
+            h = Long.rotateLeft(h ^ Long.rotateLeft(lane * PRIME_2, 31) * PRIME_1, 27) * PRIME_1 + PRIME_3;
+        }
+        if (i < indices.length) {
+            h = Long.rotateLeft(h ^ (indices[i] & 0xFFFFFFFFL) * PRIME_1, 23) * PRIME_2 + PRIME_3;
+        }
+        return h ^ (indices.length * PRIME_3);
+    }
+
+    // Final avalanche, so that every input bit affects every output bit
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,199 @@
+package moeba.bicluster;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Row-major bit matrix used to compute how many rows of a segment of a generic solution have
+ * each column set. The columns, which the solution stores as one bitset per column, are
+ * transposed 64x64 bits at a time, so that every row becomes a few 64-bit words. The rows of a
+ * segment are then added with bit-sliced counters, one bit plane per binary digit, which
+ * counts 64 columns with each word operation. Majority votes are decided on the planes as well.
+ * <p>
+ * Instances hold mutable buffers and are meant to be reused by a single thread.
+ */
+public final class BitMatrix {
+    private final int numRows;
+    private final int numCols;
+    private final int numRowWords;
+    private final int numColWords;
+    private final int numPlanes;
+    // Row i occupies words [i * numColWords, (i + 1) * numColWords), bit j being column j
+    private final long[] rows;
+    // Plane b of column word w is at w * numPlanes + b
+    private final long[] planes;
+    private final long[] block;
+    private final long[][] columnWords;
+    private int segmentSize;
+
+    /**
+     * Allocates the buffers of a matrix.
+     *
+     * @param numRows Number of rows
+     * @param numCols Number of columns
+     */
+    public BitMatrix(int numRows, int numCols) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.numRowWords = (numRows + 63) >>> 6;
+        this.numColWords = (numCols + 63) >>> 6;
+        this.numPlanes = 32 - Integer.numberOfLeadingZeros(numRows);
+        this.rows = new long[numRows * numColWords];
+        this.planes = new long[numColWords * numPlanes];
+        this.block = new long[64];
+        this.columnWords = new long[64][numRowWords];
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    /**
+     * Loads the columns, transposing them into rows. Bits past the last row are ignored.
+     *
+     * @param columns List holding the columns, one bitset per column
+     * @param firstColumn Index in the list of the first column
+     */
+    public void load(List<? extends BitSet> columns, int firstColumn) {
+        for (int cw = 0; cw < numColWords; cw++) {
+            // The words of each column are gathered into the buffers, since toLongArray copies them
+            int numBlockCols = Math.min(64, numCols - (cw << 6));
+            for (int c = 0; c < numBlockCols; c++) {
+                long[] words = columnWords[c];
+                Arrays.fill(words, 0L);
+                BitSet column = columns.get(firstColumn + (cw << 6) + c);
+                for (int i = column.nextSetBit(0); i >= 0 && i < numRows; i = column.nextSetBit(i + 1)) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+            for (int rw = 0; rw < numRowWords; rw++) {
+                for (int c = 0; c < 64; c++) {
+                    block[c] = c < numBlockCols ? columnWords[c][rw] : 0L;
+                }
+                transpose(block);
+                int numBlockRows = Math.min(64, numRows - (rw << 6));
+                for (int r = 0; r < numBlockRows; r++) {
+                    rows[((rw << 6) + r) * numColWords + cw] = block[r];
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts, for every column, the rows of a segment of the permutation that have it set.
+     * The counts are kept until the next call.
+     *
+     * @param permutation Row at each position
+     * @param start First position of the segment
+     * @param end Last position of the segment, inclusive
+     */
+    public void countSegment(int[] permutation, int start, int end) {
+        Arrays.fill(planes, 0L);
+        for (int k = start; k <= end; k++) {
+            int offset = permutation[k] * numColWords;
+            for (int w = 0; w < numColWords; w++) {
+                // Ripple-carry addition of one bit to 64 counters at once
+                int plane = w * numPlanes;
+                long carry = rows[offset + w];
+                while (carry != 0) {
+                    long next = planes[plane] & carry;
+                    planes[plane++] ^= carry;
+                    carry = next;
+                }
+            }
+        }
+        segmentSize = end - start + 1;
+    }
+
+    /**
+     * Returns the count of a column in the last segment.
+     *
+     * @param col Column
+     * @return Number of rows of the segment that have the column set
+     */
+    public int getCount(int col) {
+        int plane = (col >>> 6) * numPlanes;
+        int res = 0;
+        for (int b = 0; b < numPlanes; b++) {
+            res |= (int) ((planes[plane + b] >>> col) & 1L) << b;
+        }
+        return res;
+    }
+
+    /**
+     * Finds the columns set for more than half of the rows of the last segment.
+     *
+     * @param out Buffer of at least the number of columns, where they are stored in ascending order
+     * @return Number of columns found
+     */
+    public int getMajorityColumns(int[] out) {
+        // Bit-sliced comparison of every counter against half the segment size, from the top plane
+        int threshold = segmentSize >>> 1;
+        int res = 0;
+        for (int w = 0; w < numColWords; w++) {
+            int plane = w * numPlanes;
+            long greater = 0L;
+            long equal = -1L;
+            for (int b = numPlanes - 1; b >= 0; b--) {
+                long bits = planes[plane + b];
+                if (((threshold >>> b) & 1) != 0) {
+                    equal &= bits;
+                } else {
+                    greater |= equal & bits;
+                    equal &= ~bits;
+                }
+            }
+            while (greater != 0) {
+                out[res++] = (w << 6) + Long.numberOfTrailingZeros(greater);
+                greater &= greater - 1;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the last position of the segment that starts at a given position. Segments end
+     * at each cut and at the last position.
+     *
+     * @param cuts Cut points
+     * @param start First position of the segment
+     * @param numRows Number of positions
+     * @return Last position of the segment, inclusive
+     */
+    public static int segmentEnd(BitSet cuts, int start, int numRows) {
+        int end = cuts.nextSetBit(start);
+        return end < 0 || end >= numRows ? numRows - 1 : end;
+    }
+
+    /**
+     * Counts the segments delimited by a set of cut points, that is, the number of biclusters
+     * encoded by them.
+     *
+     * @param cuts Cut points
+     * @param numRows Number of positions
+     * @return Number of segments
+     */
+    public static int countSegments(BitSet cuts, int numRows) {
+        return cuts.cardinality() + (cuts.get(numRows - 1) ? 0 : 1);
+    }
+
+    /**
+     * Transposes a 64x64 bit block in place, so that bit j of word i moves to bit i of word j,
+     * by swapping ever smaller off-diagonal sub-blocks.
+     */
+    private static void transpose(long[] a) {
+        long mask = 0x00000000FFFFFFFFL;
+        for (int j = 32; j != 0; j >>>= 1, mask ^= mask << j) {
+            for (int k = 0; k < 64; k = ((k | j) + 1) & ~j) {
+                long t = ((a[k] >>> j) ^ a[k | j]) & mask;
+                a[k] ^= t << j;
+                a[k | j] ^= t;
+            }
+        }
+    }
+}
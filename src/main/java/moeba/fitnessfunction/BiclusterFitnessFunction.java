@@ -1,24 +1,31 @@
 package moeba.fitnessfunction;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiFunction;
-import moeba.StaticUtils;
+
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.utils.dataset.DataMatrix;
 import moeba.utils.storage.CacheStorage;
 
 public abstract class BiclusterFitnessFunction extends FitnessFunction {
 
-    protected CacheStorage<String, Double> internalCache;
+    protected CacheStorage<BiclusterFingerprint, Double> internalCache;
+    private boolean exactCacheKeys;
+    private ParallelScoring parallelScoring = ParallelScoring.getDefault();
+    private BiFunction<List<Bicluster>, BiclusterScoreFunction, Double> summariser;
 
-    public BiclusterFitnessFunction(double[][] data, Class<?>[] types, CacheStorage<String, Double> internalCache, String summariseIndividualObjectives) {
+    public BiclusterFitnessFunction(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
         super(data, types);
         this.internalCache = internalCache;
-        this.func = selectRunnableFunc(summariseIndividualObjectives);
+        this.summariser = selectSummariser(summariseIndividualObjectives);
+        this.func = biclusters -> summarise(biclusters, getScoreFunction(biclusters));
     }
 
-    private RunnableFunc selectRunnableFunc(String summariseMethod) {
+    private BiFunction<List<Bicluster>, BiclusterScoreFunction, Double> selectSummariser(String summariseMethod) {
         if (summariseMethod == null) summariseMethod = "mean";
 
-        BiFunction<ArrayList<ArrayList<Integer>[]>, BiclusterScoreFunction, Double> summariser;
+        BiFunction<List<Bicluster>, BiclusterScoreFunction, Double> summariser;
         switch (summariseMethod.toLowerCase()) {
             case "mean":
                 summariser = this::calculateMean;
@@ -32,44 +39,129 @@ public abstract class BiclusterFitnessFunction extends FitnessFunction {
             default:
                 throw new IllegalArgumentException("Summarise method not supported: " + summariseMethod);
         }
-        return internalCache == null ? biclusters -> summariser.apply(biclusters, this::getBiclusterScore)
-                                     : biclusters -> summariser.apply(biclusters, this::getCachedBiclusterScore);
+        return summariser;
     }
 
     @Override
-    public double run(ArrayList<ArrayList<Integer>[]> biclusters) {
+    public double run(List<Bicluster> biclusters) {
         return 1 - super.func.run(deleteSmallOrEmptyBiclusters(biclusters));
     }
 
-    private double calculateMean(ArrayList<ArrayList<Integer>[]> biclusters, BiclusterScoreFunction scoreFunc) {
-        return biclusters.stream()
-                         .mapToDouble(bicluster -> scoreFunc.apply(biclusters, biclusters.indexOf(bicluster)))
-                         .average()
-                         .orElse(0);
+    /**
+     * Same as {@link #run(List)}, but taking the score of each bicluster that is not in the
+     * internal cache from the given function. It lets several fitness functions share the work
+     * of scoring the same biclusters.
+     *
+     * @param biclusters The biclusters, already without small or empty ones
+     * @param scoreFunc The score of each bicluster, which must match this fitness function
+     * @return The score of the biclusters
+     */
+    public double run(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc) {
+        return 1 - summarise(biclusters, scoreFunc);
+    }
+
+    // Large solutions have their biclusters scored in parallel, see ParallelScoring
+    private double summarise(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc) {
+        return parallelScoring.summarise(biclusters,
+                internalCache == null ? scoreFunc : (b, i) -> getCachedBiclusterScore(b, i, scoreFunc), summariser);
+    }
+
+    /**
+     * Scores every bicluster of a list through the internal cache, in parallel when worthwhile.
+     *
+     * @param biclusters The biclusters, already without small or empty ones
+     * @return The score of each bicluster by position
+     */
+    double[] score(List<Bicluster> biclusters) {
+        BiclusterScoreFunction scoreFunc = getScoreFunction(biclusters);
+        return parallelScoring.score(biclusters,
+                internalCache == null ? scoreFunc : (b, i) -> getCachedBiclusterScore(b, i, scoreFunc));
     }
 
-    private double calculateHarmonicMean(ArrayList<ArrayList<Integer>[]> biclusters, BiclusterScoreFunction scoreFunc) {
-        return biclusters.size() / biclusters.stream()
-                                             .mapToDouble(bicluster -> 1.0 / scoreFunc.apply(biclusters, biclusters.indexOf(bicluster)))
-                                             .sum();
+    /**
+     * Summarises scores that are already known, the way {@link #run(List)} does.
+     *
+     * @param biclusters The biclusters, already without small or empty ones
+     * @param scoreFunc The known score of each bicluster
+     * @return The score of the biclusters
+     */
+    double summariseKnown(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc) {
+        return 1 - summariser.apply(biclusters, scoreFunc);
     }
 
-    private double calculateGeometricMean(ArrayList<ArrayList<Integer>[]> biclusters, BiclusterScoreFunction scoreFunc) {
-        return Math.pow(biclusters.stream()
-                                  .mapToDouble(bicluster -> scoreFunc.apply(biclusters, biclusters.indexOf(bicluster)))
-                                  .reduce(1, (a, b) -> a * b), 
-                        1.0 / biclusters.size());
+    // Summarisers walk the biclusters by position, so equal biclusters keep their own index
+
+    private double calculateMean(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc) {
+        int size = biclusters.size();
+        if (size == 0) return 0;
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            sum += scoreFunc.apply(biclusters, i);
+        }
+        return sum / size;
+    }
+
+    private double calculateHarmonicMean(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc) {
+        int size = biclusters.size();
+        double sumInverses = 0.0;
+        for (int i = 0; i < size; i++) {
+            sumInverses += 1.0 / scoreFunc.apply(biclusters, i);
+        }
+        return size / sumInverses;
+    }
+
+    // Averaged in log space, since the product of hundreds of scores below one underflows to zero
+    private double calculateGeometricMean(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc) {
+        int size = biclusters.size();
+        double sumLogs = 0.0;
+        for (int i = 0; i < size; i++) {
+            sumLogs += Math.log(scoreFunc.apply(biclusters, i));
+        }
+        return Math.exp(sumLogs / size);
+    }
+
+    /**
+     * Returns the function scoring the biclusters of one evaluation. Objectives that compare
+     * each bicluster with the others can override it to share work between the biclusters of
+     * the same solution, since the returned function only lives for that evaluation. It must be
+     * safe to call from several threads, since large solutions are scored in parallel.
+     *
+     * @param biclusters The biclusters being evaluated, without small or empty ones
+     * @return The score of each bicluster by position
+     */
+    protected BiclusterScoreFunction getScoreFunction(List<Bicluster> biclusters) {
+        return this::getBiclusterScore;
     }
 
     @FunctionalInterface
-    private interface BiclusterScoreFunction {
-        double apply(ArrayList<ArrayList<Integer>[]> biclusters, int i);
+    public interface BiclusterScoreFunction {
+        double apply(List<Bicluster> biclusters, int i);
+    }
+
+    /**
+     * Sets whether the keys of the internal cache keep their bicluster to compare it when
+     * fingerprints match, which rules out collisions.
+     *
+     * @param exactCacheKeys Whether cache keys are exact
+     */
+    public void setExactCacheKeys(boolean exactCacheKeys) {
+        this.exactCacheKeys = exactCacheKeys;
+    }
+
+    /**
+     * Sets the pool on which the biclusters of large solutions are scored in parallel.
+     *
+     * @param parallelScoring The pool of the run
+     */
+    public void setParallelScoring(ParallelScoring parallelScoring) {
+        this.parallelScoring = parallelScoring;
     }
 
-    private double getCachedBiclusterScore(ArrayList<ArrayList<Integer>[]> biclusters, int i) {
-        String key = StaticUtils.biclusterToString(biclusters.get(i));
-        return internalCache.computeIfAbsent(key, k -> getBiclusterScore(biclusters, i));
+    private double getCachedBiclusterScore(List<Bicluster> biclusters, int i, BiclusterScoreFunction scoreFunc) {
+        Bicluster bicluster = biclusters.get(i);
+        BiclusterFingerprint key = exactCacheKeys ? BiclusterFingerprint.exactOf(bicluster) : BiclusterFingerprint.of(bicluster);
+        return internalCache.computeIfAbsent(key, k -> scoreFunc.apply(biclusters, i));
     }
 
-    protected abstract double getBiclusterScore(ArrayList<ArrayList<Integer>[]> biclusters, int i);
+    protected abstract double getBiclusterScore(List<Bicluster> biclusters, int i);
 }
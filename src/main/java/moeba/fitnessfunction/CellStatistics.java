@@ -0,0 +1,273 @@
+package moeba.fitnessfunction;
+
+import moeba.bicluster.Bicluster;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.RowPrefixSums;
+
+/**
+ * Sufficient statistics of the cells of a bicluster, collected in a single pass: the total sum,
+ * the sum of squares and the sum of every row and column. The mean squared residue and the
+ * bicluster and row variances are all derived from them.
+ * <p>
+ * Values are shifted by the first cell before being accumulated. None of the derived measures
+ * depend on the shift, and it keeps the subtractions between sums from cancelling out.
+ * <p>
+ * Since the row and column sums are kept, the statistics of a bicluster that only differs from
+ * another in a few rows or columns can be derived from those of the other with
+ * {@link #update(DataMatrix, Bicluster, Bicluster)}, reading only the cells that change.
+ * <p>
+ * Measures that only need row sums, such as the bicluster and row variances, can instead take
+ * them from the {@link RowPrefixSums} of the matrix, two lookups per row and run of consecutive
+ * columns. Those statistics have no column sums, so they cannot give the mean squared residue.
+ */
+public final class CellStatistics {
+    // Updates in a row after which the statistics are collected again, so rounding errors stay bounded
+    static final int MAX_UPDATES = 32;
+
+    private final double shift;
+    private final double[] rowSums;
+    private final double[] colSums;
+    private final double sum;
+    private final double sumSquares;
+    private final double sumRowSquares;
+    private final double sumColSquares;
+    private final int numCols;
+    private final int numUpdates;
+
+    private CellStatistics(double shift, double[] rowSums, double[] colSums, int numCols, double sumSquares, int numUpdates) {
+        this.shift = shift;
+        this.rowSums = rowSums;
+        this.colSums = colSums;
+        this.numCols = numCols;
+        this.sumSquares = sumSquares;
+        this.numUpdates = numUpdates;
+        double sum = 0.0;
+        double sumRowSquares = 0.0;
+        for (double rowSum : rowSums) {
+            sum += rowSum;
+            sumRowSquares += rowSum * rowSum;
+        }
+        double sumColSquares = Double.NaN;
+        if (colSums != null) {
+            sumColSquares = 0.0;
+            for (double colSum : colSums) {
+                sumColSquares += colSum * colSum;
+            }
+        }
+        this.sum = sum;
+        this.sumRowSquares = sumRowSquares;
+        this.sumColSquares = sumColSquares;
+    }
+
+    /**
+     * Reads every cell of a bicluster once to collect its statistics.
+     *
+     * @param data The data matrix
+     * @param bicluster A bicluster with at least one row and one column
+     * @return The statistics of its cells
+     */
+    public static CellStatistics compute(DataMatrix data, Bicluster bicluster) {
+        int[] rows = bicluster.getRows();
+        int[] cols = bicluster.getCols();
+        double shift = data.get(rows[0], cols[0]);
+        double[] rowSums = new double[rows.length];
+        double[] colSums = new double[cols.length];
+        double sumSquares = 0.0;
+        for (int i = 0; i < rows.length; i++) {
+            double rowSum = 0.0;
+            for (int j = 0; j < cols.length; j++) {
+                double value = data.get(rows[i], cols[j]) - shift;
+                rowSum += value;
+                colSums[j] += value;
+                sumSquares += value * value;
+            }
+            rowSums[i] = rowSum;
+        }
+        return new CellStatistics(shift, rowSums, colSums, cols.length, sumSquares, 0);
+    }
+
+    /**
+     * Collects the statistics of a bicluster without column sums, taking the sums of each row
+     * over the runs of consecutive columns of the bicluster from prefix sums.
+     *
+     * @param prefixSums The prefix sums of the data matrix
+     * @param bicluster A bicluster with at least one row and one column
+     * @return The statistics of its cells, without column sums
+     */
+    public static CellStatistics compute(RowPrefixSums prefixSums, Bicluster bicluster) {
+        int[] rows = bicluster.getRows();
+        int[] runs = bicluster.getColRuns();
+        double[] rowSums = new double[rows.length];
+        double sumSquares = 0.0;
+        for (int i = 0; i < rows.length; i++) {
+            double rowSum = 0.0;
+            for (int k = 0; k < runs.length; k += 2) {
+                rowSum += prefixSums.getSum(rows[i], runs[k], runs[k + 1]);
+                sumSquares += prefixSums.getSumSquares(rows[i], runs[k], runs[k + 1]);
+            }
+            rowSums[i] = rowSum;
+        }
+        return new CellStatistics(prefixSums.getShift(), rowSums, null, bicluster.getNumCols(), sumSquares, 0);
+    }
+
+    /**
+     * Collects the statistics needed by measures that only use row sums. They are taken from
+     * the prefix sums when available and the columns of the bicluster form runs of at least two
+     * columns on average, and every cell is read otherwise.
+     *
+     * @param data The data matrix
+     * @param prefixSums The prefix sums of the data matrix, or null
+     * @param bicluster A bicluster with at least one row and one column
+     * @return The statistics of its cells, which may have no column sums
+     */
+    public static CellStatistics computeRowStatistics(DataMatrix data, RowPrefixSums prefixSums, Bicluster bicluster) {
+        return usePrefixSums(prefixSums, bicluster) ? compute(prefixSums, bicluster) : compute(data, bicluster);
+    }
+
+    // Reading a run from the prefix sums takes two lookups, against one read per column of the run
+    static boolean usePrefixSums(RowPrefixSums prefixSums, Bicluster bicluster) {
+        return prefixSums != null && 2 * bicluster.getNumColRuns() <= bicluster.getNumCols();
+    }
+
+    /**
+     * Derives the statistics of a bicluster from those of another one. Rows are added and
+     * removed first, reading their cells in the old columns, and then columns, reading their
+     * cells in the new rows. Cells shared by both biclusters are not read. Statistics without
+     * column sums are collected again instead.
+     *
+     * @param data The data matrix
+     * @param from The bicluster these statistics belong to
+     * @param to A bicluster with at least one row and one column
+     * @return The statistics of the cells of {@code to}
+     */
+    public CellStatistics update(DataMatrix data, Bicluster from, Bicluster to) {
+        if (numUpdates >= MAX_UPDATES || colSums == null) return compute(data, to);
+        int[] oldRows = from.getRows();
+        int[] oldCols = from.getCols();
+        int[] newRows = to.getRows();
+        int[] newCols = to.getCols();
+        double sumSquares = this.sumSquares;
+
+        double[] colSums = this.colSums.clone();
+        double[] rowSums = new double[newRows.length];
+        int i = 0;
+        int k = 0;
+        while (i < oldRows.length || k < newRows.length) {
+            if (k == newRows.length || (i < oldRows.length && oldRows[i] < newRows[k])) {
+                for (int j = 0; j < oldCols.length; j++) {
+                    double value = data.get(oldRows[i], oldCols[j]) - shift;
+                    colSums[j] -= value;
+                    sumSquares -= value * value;
+                }
+                i++;
+            } else if (i == oldRows.length || newRows[k] < oldRows[i]) {
+                double rowSum = 0.0;
+                for (int j = 0; j < oldCols.length; j++) {
+                    double value = data.get(newRows[k], oldCols[j]) - shift;
+                    rowSum += value;
+                    colSums[j] += value;
+                    sumSquares += value * value;
+                }
+                rowSums[k++] = rowSum;
+            } else {
+                rowSums[k++] = this.rowSums[i++];
+            }
+        }
+
+        double[] newColSums = new double[newCols.length];
+        i = 0;
+        k = 0;
+        while (i < oldCols.length || k < newCols.length) {
+            if (k == newCols.length || (i < oldCols.length && oldCols[i] < newCols[k])) {
+                for (int r = 0; r < newRows.length; r++) {
+                    double value = data.get(newRows[r], oldCols[i]) - shift;
+                    rowSums[r] -= value;
+                    sumSquares -= value * value;
+                }
+                i++;
+            } else if (i == oldCols.length || newCols[k] < oldCols[i]) {
+                double colSum = 0.0;
+                for (int r = 0; r < newRows.length; r++) {
+                    double value = data.get(newRows[r], newCols[k]) - shift;
+                    rowSums[r] += value;
+                    colSum += value;
+                    sumSquares += value * value;
+                }
+                newColSums[k++] = colSum;
+            } else {
+                newColSums[k++] = colSums[i++];
+            }
+        }
+        return new CellStatistics(shift, rowSums, newColSums, newCols.length, sumSquares, numUpdates + 1);
+    }
+
+    /**
+     * Estimates how many cells {@link #update(DataMatrix, Bicluster, Bicluster)} reads to go
+     * from one bicluster to another, given how many rows and columns they share.
+     *
+     * @param from The bicluster whose statistics are known
+     * @param to The bicluster whose statistics are wanted
+     * @param sharedRows Number of rows in both biclusters
+     * @param sharedCols Number of columns in both biclusters
+     * @return The number of cells read
+     */
+    public static long getUpdateCost(Bicluster from, Bicluster to, int sharedRows, int sharedCols) {
+        long changedRows = from.getNumRows() + to.getNumRows() - 2L * sharedRows;
+        long changedCols = from.getNumCols() + to.getNumCols() - 2L * sharedCols;
+        return changedRows * from.getNumCols() + changedCols * to.getNumRows();
+    }
+
+    public int getNumRows() {
+        return rowSums.length;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    public long getNumCells() {
+        return (long) rowSums.length * numCols;
+    }
+
+    /**
+     * Tells whether the column sums were collected, which the mean squared residue needs and
+     * {@link #update(DataMatrix, Bicluster, Bicluster)} starts from.
+     *
+     * @return True unless the statistics were taken from prefix sums
+     */
+    public boolean hasColSums() {
+        return colSums != null;
+    }
+
+    /**
+     * Returns the sum of the squared differences between the cells and the bicluster mean.
+     *
+     * @return The sum of squared deviations
+     */
+    public double getSquaredDeviation() {
+        return Math.max(0.0, sumSquares - sum * sum / getNumCells());
+    }
+
+    /**
+     * Returns the mean of the squared differences between the cells and the mean of their row.
+     *
+     * @return The mean row variance
+     */
+    public double getRowVariance() {
+        return Math.max(0.0, sumSquares - sumRowSquares / getNumCols()) / getNumCells();
+    }
+
+    /**
+     * Returns the mean squared residue, that is, the mean of the squares of each cell minus the
+     * mean of its row and the mean of its column plus the bicluster mean.
+     *
+     * @return The mean squared residue
+     * @throws IllegalStateException If the column sums were not collected
+     */
+    public double getMeanSquaredResidue() {
+        if (colSums == null) throw new IllegalStateException("The mean squared residue needs column sums");
+        long numCells = getNumCells();
+        double residue = sumSquares - sumRowSquares / getNumCols() - sumColSquares / getNumRows() + sum * sum / numCells;
+        return Math.max(0.0, residue) / numCells;
+    }
+}
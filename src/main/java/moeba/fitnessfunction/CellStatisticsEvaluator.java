@@ -0,0 +1,269 @@
+package moeba.fitnessfunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.uma.jmetal.solution.Solution;
+
+import moeba.bicluster.Bicluster;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.RowPrefixSums;
+
+/**
+ * Evaluates together the fitness functions of a problem that score biclusters from their
+ * {@link CellStatistics}, such as the mean squared residue and the bicluster and row variances.
+ * The cells of each bicluster are read once, when the first of those functions needs its score,
+ * and every function derives its own score from the shared statistics. Summarising methods and
+ * internal caches are still those of each function.
+ * <p>
+ * The statistics and scores of the biclusters of an evaluated solution are kept in a
+ * {@link Memo}, stored as an attribute of the solution. Offspring inherit the attributes of
+ * their parents, so when they are evaluated, biclusters identical to one of the parent are not
+ * scored again, and biclusters that only gained or lost a few rows or columns have their
+ * statistics updated from the closest bicluster of the parent instead of read from scratch.
+ * When none of the functions needs column sums, biclusters whose columns form long runs take
+ * their statistics from the {@link RowPrefixSums} of the matrix instead.
+ */
+public class CellStatisticsEvaluator {
+    public static final String MEMO_ATTRIBUTE = "moeba.cellStatistics";
+
+    private final DataMatrix data;
+    private final int[] indices;
+    private final boolean[] handled;
+    private final BiclusterFitnessFunction[] functions;
+    // Null if a function needs column sums or the matrix is over the memory budget of the tables
+    private final RowPrefixSums prefixSums;
+
+    private CellStatisticsEvaluator(DataMatrix data, int[] indices, FitnessFunction[] fitnessFunctions, long prefixSumsMemoryBudget) {
+        this.data = data;
+        this.indices = indices;
+        this.handled = new boolean[fitnessFunctions.length];
+        this.functions = new BiclusterFitnessFunction[indices.length];
+        boolean needsColSums = false;
+        for (int k = 0; k < indices.length; k++) {
+            this.handled[indices[k]] = true;
+            this.functions[k] = (BiclusterFitnessFunction) fitnessFunctions[indices[k]];
+            needsColSums |= ((CellStatisticsFitnessFunction) fitnessFunctions[indices[k]]).needsColSums();
+        }
+        this.prefixSums = needsColSums ? null : RowPrefixSums.get(data, prefixSumsMemoryBudget);
+    }
+
+    /**
+     * Statistics and scores of the biclusters of an evaluated solution. It is not modified once
+     * built, so it can be shared by the offspring of the solution.
+     */
+    public static final class Memo {
+        private final CellStatisticsEvaluator owner;
+        private final Map<Bicluster, Entry> entries;
+
+        private Memo(CellStatisticsEvaluator owner, Map<Bicluster, Entry> entries) {
+            this.owner = owner;
+            this.entries = entries;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry {
+        private final Bicluster bicluster;
+        private CellStatistics statistics;
+        // Score of each handled function, NaN until computed
+        private final double[] scores;
+
+        private Entry(Bicluster bicluster, CellStatistics statistics, double[] scores) {
+            this.bicluster = bicluster;
+            this.statistics = statistics;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * Builds an evaluator for the compatible functions of a problem.
+     *
+     * @param data The data matrix shared by the fitness functions
+     * @param fitnessFunctions The fitness functions of the problem, one per objective
+     * @return The evaluator, or null if no function scores biclusters from their statistics
+     */
+    public static CellStatisticsEvaluator create(DataMatrix data, FitnessFunction[] fitnessFunctions) {
+        return create(data, fitnessFunctions, RowPrefixSums.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Builds an evaluator for the compatible functions of a problem.
+     *
+     * @param data The data matrix shared by the fitness functions
+     * @param fitnessFunctions The fitness functions of the problem, one per objective
+     * @param prefixSumsMemoryBudget Maximum size in bytes of the row prefix sums of the matrix, or 0 to not use them
+     * @return The evaluator, or null if no function scores biclusters from their statistics
+     */
+    public static CellStatisticsEvaluator create(DataMatrix data, FitnessFunction[] fitnessFunctions, long prefixSumsMemoryBudget) {
+        List<Integer> compatible = new ArrayList<>();
+        for (int i = 0; i < fitnessFunctions.length; i++) {
+            if (fitnessFunctions[i] instanceof BiclusterFitnessFunction && fitnessFunctions[i] instanceof CellStatisticsFitnessFunction) {
+                compatible.add(i);
+            }
+        }
+        if (compatible.isEmpty()) return null;
+        return new CellStatisticsEvaluator(data, compatible.stream().mapToInt(Integer::intValue).toArray(), fitnessFunctions, prefixSumsMemoryBudget);
+    }
+
+    /**
+     * Tells whether an objective is computed by this evaluator.
+     *
+     * @param index Position of the fitness function in the problem
+     * @return True if the evaluator computes it
+     */
+    public boolean handles(int index) {
+        return handled[index];
+    }
+
+    /**
+     * Computes the objectives of the handled fitness functions of a solution, reusing the memo
+     * inherited from its parent, if any, and replacing it with the memo of the solution.
+     *
+     * @param solution The solution, whose other objectives are left untouched
+     * @param biclusters The biclusters of the solution
+     */
+    public void evaluate(Solution<?> solution, List<Bicluster> biclusters) {
+        Object parent = solution.attributes().get(MEMO_ATTRIBUTE);
+        Memo memo = run(biclusters, solution.objectives(), parent instanceof Memo ? (Memo) parent : null);
+        solution.attributes().put(MEMO_ATTRIBUTE, memo);
+    }
+
+    /**
+     * Computes the objectives of the handled fitness functions of several solutions, like
+     * {@link #evaluate(Solution, List)} does for each one. Besides the memo of its parent, each
+     * solution also reuses the biclusters of the solutions evaluated before it in the batch, so
+     * biclusters repeated across the batch are only scored once.
+     *
+     * @param solutions The solutions, whose other objectives are left untouched
+     * @param biclusters The biclusters of each solution
+     */
+    public void evaluate(List<? extends Solution<?>> solutions, List<List<Bicluster>> biclusters) {
+        Map<Bicluster, Entry> batch = new HashMap<>();
+        for (int s = 0; s < solutions.size(); s++) {
+            Solution<?> solution = solutions.get(s);
+            Object parent = solution.attributes().get(MEMO_ATTRIBUTE);
+            Memo memo = run(biclusters.get(s), solution.objectives(), parent instanceof Memo ? (Memo) parent : null, batch);
+            solution.attributes().put(MEMO_ATTRIBUTE, memo);
+            for (Entry entry : memo.entries.values()) {
+                batch.putIfAbsent(entry.bicluster, entry);
+            }
+        }
+    }
+
+    /**
+     * Computes the objectives of the handled fitness functions, leaving the rest untouched.
+     *
+     * @param biclusters The biclusters of the solution
+     * @param objectives The objectives of the solution, indexed like the fitness functions
+     */
+    public void run(List<Bicluster> biclusters, double[] objectives) {
+        run(biclusters, objectives, null);
+    }
+
+    /**
+     * Computes the objectives of the handled fitness functions, leaving the rest untouched.
+     *
+     * @param biclusters The biclusters of the solution
+     * @param objectives The objectives of the solution, indexed like the fitness functions
+     * @param parent Memo of a related solution, or null. It is ignored if built by another evaluator
+     * @return The memo of the biclusters of this solution
+     */
+    public Memo run(List<Bicluster> biclusters, double[] objectives, Memo parent) {
+        return run(biclusters, objectives, parent, null);
+    }
+
+    private Memo run(List<Bicluster> biclusters, double[] objectives, Memo parent, Map<Bicluster, Entry> batch) {
+        List<Bicluster> filtered = functions[0].deleteSmallOrEmptyBiclusters(biclusters);
+        Matcher matcher = new Matcher(parent != null && parent.owner == this ? parent : null, batch);
+        Entry[] entries = new Entry[filtered.size()];
+        for (int k = 0; k < functions.length; k++) {
+            CellStatisticsFitnessFunction function = (CellStatisticsFitnessFunction) functions[k];
+            int slot = k;
+            objectives[indices[k]] = functions[k].run(filtered, (b, i) -> {
+                Entry entry = entries[i];
+                if (entry == null) {
+                    entry = matcher.find(b.get(i));
+                    entries[i] = entry;
+                }
+                double score = entry.scores[slot];
+                if (Double.isNaN(score)) {
+                    if (entry.statistics == null) entry.statistics = matcher.computeStatistics(entry.bicluster);
+                    score = function.getBiclusterScore(entry.statistics);
+                    entry.scores[slot] = score;
+                }
+                return score;
+            });
+        }
+
+        Map<Bicluster, Entry> memo = new HashMap<>(entries.length * 2);
+        for (Entry entry : entries) {
+            if (entry != null) memo.put(entry.bicluster, entry);
+        }
+        return new Memo(this, memo);
+    }
+
+    /**
+     * Looks up the biclusters of a solution in the memo of its parent, and then among the
+     * biclusters of the solutions of the same batch.
+     */
+    private final class Matcher {
+        private final Memo parent;
+        private final Map<Bicluster, Entry> batch;
+
+        private Matcher(Memo parent, Map<Bicluster, Entry> batch) {
+            this.parent = parent;
+            this.batch = batch;
+        }
+
+        // New entries copy the scores they reuse, since the parent memo may be shared by other offspring
+        private Entry find(Bicluster bicluster) {
+            Entry known = parent == null ? null : parent.entries.get(bicluster);
+            if (known == null && batch != null) known = batch.get(bicluster);
+            if (known != null) {
+                return new Entry(bicluster, known.statistics, known.scores.clone());
+            }
+            double[] scores = new double[functions.length];
+            Arrays.fill(scores, Double.NaN);
+            return new Entry(bicluster, null, scores);
+        }
+
+        private CellStatistics computeStatistics(Bicluster bicluster) {
+            if (CellStatistics.usePrefixSums(prefixSums, bicluster)) return CellStatistics.compute(prefixSums, bicluster);
+            Entry closest = parent == null ? null : findClosest(bicluster);
+            if (closest == null) return CellStatistics.compute(data, bicluster);
+            return closest.statistics.update(data, closest.bicluster, bicluster);
+        }
+
+        /**
+         * Finds, among the parent biclusters with known column sums that contain the first, middle
+         * or last row of a bicluster, the cheapest to update into it, if cheaper than reading it.
+         */
+        private Entry findClosest(Bicluster bicluster) {
+            int numRows = bicluster.getNumRows();
+            int first = bicluster.getRow(0);
+            int middle = bicluster.getRow(numRows / 2);
+            int last = bicluster.getRow(numRows - 1);
+            long bestCost = bicluster.getSize() / 2;
+            Entry best = null;
+            for (Entry candidate : parent.entries.values()) {
+                Bicluster other = candidate.bicluster;
+                if (candidate.statistics == null || !candidate.statistics.hasColSums() || !(other.containsRow(first) || other.containsRow(middle) || other.containsRow(last))) {
+                    continue;
+                }
+                long cost = CellStatistics.getUpdateCost(other, bicluster, other.countSharedRows(bicluster), other.countSharedCols(bicluster));
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+    }
+}
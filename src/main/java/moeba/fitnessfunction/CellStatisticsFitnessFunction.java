@@ -0,0 +1,26 @@
+package moeba.fitnessfunction;
+
+/**
+ * Fitness function whose bicluster score only depends on the {@link CellStatistics} of the
+ * bicluster, so that it can share a single pass over the cells with other such functions.
+ */
+public interface CellStatisticsFitnessFunction {
+
+    /**
+     * Scores a bicluster from the statistics of its cells.
+     *
+     * @param statistics The statistics of the cells of the bicluster
+     * @return The score of the bicluster
+     */
+    double getBiclusterScore(CellStatistics statistics);
+
+    /**
+     * Tells whether the score needs the column sums of the statistics, which statistics taken
+     * from row prefix sums do not have.
+     *
+     * @return True if the score needs column sums
+     */
+    default boolean needsColSums() {
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package moeba.fitnessfunction;
+
+import moeba.utils.dataset.RowPrefixSums;
+
+/**
+ * Resources and settings of a run shared by all its fitness functions. Each run creates its own,
+ * so that runs sharing the JVM, such as those of a parameterization, keep their own settings.
+ */
+public final class EvaluationContext {
+    private static final EvaluationContext DEFAULT = new EvaluationContext(ParallelScoring.getDefault(), RowPrefixSums.DEFAULT_MEMORY_BUDGET);
+
+    private final ParallelScoring parallelScoring;
+    private final long prefixSumsMemoryBudget;
+
+    /**
+     * Constructs the context of a run.
+     *
+     * @param parallelScoring The pool on which the biclusters of large solutions are scored
+     * @param prefixSumsMemoryBudget Maximum size in bytes of the row prefix sums of the matrix, or 0 to not use them
+     */
+    public EvaluationContext(ParallelScoring parallelScoring, long prefixSumsMemoryBudget) {
+        if (prefixSumsMemoryBudget < 0) throw new IllegalArgumentException("The memory budget must not be negative");
+        this.parallelScoring = parallelScoring;
+        this.prefixSumsMemoryBudget = prefixSumsMemoryBudget;
+    }
+
+    /**
+     * Returns the context of fitness functions created outside a run, with the default settings.
+     *
+     * @return The default context
+     */
+    public static EvaluationContext getDefault() {
+        return DEFAULT;
+    }
+
+    public ParallelScoring getParallelScoring() {
+        return parallelScoring;
+    }
+
+    public long getPrefixSumsMemoryBudget() {
+        return prefixSumsMemoryBudget;
+    }
+
+    /**
+     * Returns the number of threads of the run.
+     *
+     * @return The number of threads
+     */
+    public int getNumThreads() {
+        return parallelScoring.getNumThreads();
+    }
+
+    /**
+     * Releases the resources of the run once it is over.
+     */
+    public void close() {
+        parallelScoring.shutdown();
+    }
+}
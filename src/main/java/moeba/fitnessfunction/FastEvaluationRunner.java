@@ -1,8 +1,6 @@
 package moeba.fitnessfunction;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -10,6 +8,10 @@ import java.util.ArrayList;
 
 import moeba.Representation;
 import moeba.StaticUtils;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.Dataset;
+import moeba.utils.dataset.DatasetLoader;
+import moeba.utils.dataset.RowPrefixSums;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -34,7 +36,7 @@ public class FastEvaluationRunner implements Runnable {
             description = "Objectives to optimize separated by semicolon. Possible values: \n" + //
                 "\t- General purpose objectives (Any representation): BiclusterSizeNormComp, BiclusterVarianceNorm, RowVarianceNormComp, MeanSquaredResidueNorm \n" + //
                 "\t- General purpose objectives (GENERIC representation): BiclusterSizeNumBicsNormComp, DistanceBetweenBiclustersNormComp \n" + //
-                "\t- Co-Expression objectives (GENERIC representation): RegulatoryCoherenceNormComp \n" + //
+                "\t- Co-Expression objectives (GENERIC representation): RegulatoryCoherenceNormComp(inference=GENIE3 or Correlation, maxRegulators=10, only for Correlation) \n" + //
                 "In case any objective requires additional parameters, they shall be specified in brackets in the following way ObjectiveName(parameter1=value, parameter2=value, ...)", 
             defaultValue = "BiclusterSizeNormComp;MeanSquaredResidueNorm")
     private String strFitnessFormulas;
@@ -45,47 +47,34 @@ public class FastEvaluationRunner implements Runnable {
     @Option(names = {"--num-threads"}, description = "Number of threads. Default: All")
     private int numThreads = Runtime.getRuntime().availableProcessors();
 
+    @Option(names = {"--parallel-scoring-min-biclusters"}, description = "Minimum number of biclusters of a solution to score them in parallel, when there are idle threads", defaultValue = "" + ParallelScoring.DEFAULT_THRESHOLD)
+    private int parallelScoringMinBiclusters;
+
+    @Option(names = {"--prefix-sums-max-memory"}, description = "Maximum memory, in MB, of the row prefix sums that speed up variance objectives on biclusters of consecutive columns. 0 disables them", defaultValue = "" + (RowPrefixSums.DEFAULT_MEMORY_BUDGET >> 20))
+    private long prefixSumsMaxMemory;
+
     @Option(names = {"--output-file"}, description = "Path to the output CSV file to save results.", defaultValue = "FastFUN.csv")
     private File outputFile;
 
     @Override
     public void run() {
 
-        // Read input dataset
-        String[][] data = null;
-        try {
-            data = StaticUtils.csvToStringMatrix(inputDataset);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        // Read column names from input CSV file
-        String[] columnNames = null;
+        // Read input dataset and convert it to a numeric matrix in base of column types
+        Dataset dataset;
         try {
-            BufferedReader br = new BufferedReader(new FileReader(inputDataset));
-            columnNames = br.readLine().split(",");
-            br.close();
+            dataset = DatasetLoader.load(inputDataset, inputColumnTypes, numThreads);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new RuntimeException(e);
         }
-
-        // Read column types
-        Class<?>[] types = null;
-        try {
-            types = StaticUtils.jsonToClassArray(inputColumnTypes, columnNames);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        // Convert data to numeric matrix in base of types
-        double[][] numericData = StaticUtils.dataToNumericMatrix(data, types, numThreads);
-        data = null;
+        Class<?>[] types = dataset.getTypes();
+        DataMatrix numericData = dataset.getMatrix();
+        EvaluationContext context = new EvaluationContext(new ParallelScoring(numThreads, parallelScoringMinBiclusters), prefixSumsMaxMemory << 20);
 
         // Get fitness functions
         String[] strFitnessFunctions = strFitnessFormulas.split(";");
         FitnessFunction[] fitnessFunctions = new FitnessFunction[strFitnessFunctions.length];
         for (int i = 0; i < strFitnessFunctions.length; i++) {
-            fitnessFunctions[i] = StaticUtils.getFitnessFunctionFromString(strFitnessFunctions[i], numericData, types, null, summariseIndividualObjectives);
+            fitnessFunctions[i] = StaticUtils.getFitnessFunctionFromString(strFitnessFunctions[i], numericData, types, null, summariseIndividualObjectives, context);
         }
 
         // Load inferred biclusters from CSV file
@@ -121,6 +110,8 @@ public class FastEvaluationRunner implements Runnable {
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            context.close();
         }
 
     }
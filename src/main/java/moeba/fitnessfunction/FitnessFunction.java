@@ -1,22 +1,72 @@
 package moeba.fitnessfunction;
 
 import java.util.ArrayList;
+import java.util.List;
+
+import moeba.bicluster.Bicluster;
+import moeba.utils.dataset.DataMatrix;
 
 public abstract class FitnessFunction {
-    protected double[][] data;
+    protected DataMatrix data;
     protected Class<?>[] types;
     protected RunnableFunc func;
 
     public interface RunnableFunc {
-        double run(ArrayList<ArrayList<Integer>[]> biclusters);
+        double run(List<Bicluster> biclusters);
     }
 
-    public FitnessFunction(double[][] data, Class<?>[] types) {
+    public FitnessFunction(DataMatrix data, Class<?>[] types) {
         this.data = data;
         this.types = types;
     }
 
-    public abstract double run(ArrayList<ArrayList<Integer>[]> biclusters);
+    public abstract double run(List<Bicluster> biclusters);
+
+    /**
+     * Evaluates biclusters in their legacy representation.
+     *
+     * @param biclusters The biclusters, where position 0 holds the rows and position 1 the columns
+     * @return The score of the biclusters
+     */
+    public double run(ArrayList<ArrayList<Integer>[]> biclusters) {
+        return run(Bicluster.fromLists(biclusters));
+    }
+
+    /**
+     * Evaluates the biclusters of several solutions at once. Subclasses can override it to share
+     * work between the solutions of a batch, such as scoring only once the biclusters they have
+     * in common, as long as each result matches the one of {@link #run(List)}.
+     *
+     * @param batch The biclusters of each solution
+     * @return The score of each solution, in the same order
+     */
+    public double[] runBatch(List<List<Bicluster>> batch) {
+        double[] res = new double[batch.size()];
+        for (int s = 0; s < res.length; s++) {
+            res[s] = run(batch.get(s));
+        }
+        return res;
+    }
+
+    /**
+     * Returns the biclusters with more than one row and more than one column, leaving the
+     * input list untouched.
+     *
+     * @param biclusters The biclusters
+     * @return The input list if no bicluster is discarded, and a new list otherwise
+     */
+    public List<Bicluster> deleteSmallOrEmptyBiclusters(List<Bicluster> biclusters) {
+        int numSmall = 0;
+        for (Bicluster b : biclusters) {
+            if (b.getNumRows() <= 1 || b.getNumCols() <= 1) numSmall++;
+        }
+        if (numSmall == 0) return biclusters;
+        List<Bicluster> res = new ArrayList<>(biclusters.size() - numSmall);
+        for (Bicluster b : biclusters) {
+            if (b.getNumRows() > 1 && b.getNumCols() > 1) res.add(b);
+        }
+        return res;
+    }
 
     public ArrayList<ArrayList<Integer>[]> deleteSmallOrEmptyBiclusters(ArrayList<ArrayList<Integer>[]> biclusters) {
         biclusters.removeIf(b -> b[0].size() <= 1 || b[1].size() <= 1);
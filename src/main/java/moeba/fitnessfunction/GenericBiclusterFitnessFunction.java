@@ -1,23 +1,31 @@
 package moeba.fitnessfunction;
 
-import java.util.ArrayList;
+import java.util.List;
 
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.utils.dataset.DataMatrix;
 import moeba.utils.storage.CacheStorage;
 
 public abstract class GenericBiclusterFitnessFunction extends BiclusterFitnessFunction {
 
-    public GenericBiclusterFitnessFunction(double[][] data, Class<?>[] types,
-            CacheStorage<String, Double> internalCache, String summariseIndividualObjectives) {
+    public GenericBiclusterFitnessFunction(DataMatrix data, Class<?>[] types,
+            CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
         super(data, types, internalCache, summariseIndividualObjectives);
     }
 
-    protected abstract double getBiclusterScore(ArrayList<Integer>[] bicluster, ArrayList<ArrayList<Integer>[]> biclusters);
+    /**
+     * Scores a bicluster against the rest of the biclusters of the solution.
+     *
+     * @param biclusters All the biclusters of the solution, at least two
+     * @param i Position of the scored bicluster, which implementations must skip among the others
+     * @return The score of the bicluster
+     */
+    protected abstract double getBiclusterScoreAgainstOthers(List<Bicluster> biclusters, int i);
 
-    protected double getBiclusterScore(ArrayList<ArrayList<Integer>[]> biclusters, int i) {
+    protected double getBiclusterScore(List<Bicluster> biclusters, int i) {
         if (biclusters.size() == 1) return 0.0;
-        ArrayList<ArrayList<Integer>[]> biclustersCopy = new ArrayList<>(biclusters);
-        biclustersCopy.remove(i);
-        return this.getBiclusterScore(biclusters.get(i), biclustersCopy);
+        return this.getBiclusterScoreAgainstOthers(biclusters, i);
     }
     
 }
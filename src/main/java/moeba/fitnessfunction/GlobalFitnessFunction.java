@@ -1,15 +1,18 @@
 package moeba.fitnessfunction;
 
-import java.util.ArrayList;
+import java.util.List;
+
+import moeba.bicluster.Bicluster;
+import moeba.utils.dataset.DataMatrix;
 
 public abstract class GlobalFitnessFunction extends FitnessFunction {
 
-    public GlobalFitnessFunction(double[][] data, Class<?>[] types) {
+    public GlobalFitnessFunction(DataMatrix data, Class<?>[] types) {
         super(data, types);
     }
 
     @Override
-    public double run(ArrayList<ArrayList<Integer>[]> biclusters) {
+    public double run(List<Bicluster> biclusters) {
         return super.func.run(deleteSmallOrEmptyBiclusters(biclusters));
     }
     
@@ -1,19 +1,64 @@
 package moeba.fitnessfunction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.utils.dataset.DataMatrix;
 import moeba.utils.storage.CacheStorage;
 
 public abstract class IndividualBiclusterFitnessFunction extends BiclusterFitnessFunction {
 
-    public IndividualBiclusterFitnessFunction(double[][] data, Class<?>[] types, CacheStorage<String, Double> internalCache,
+    public IndividualBiclusterFitnessFunction(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache,
             String summariseIndividualObjectives) {
         super(data, types, internalCache, summariseIndividualObjectives);
     }
 
-    protected double getBiclusterScore(ArrayList<ArrayList<Integer>[]> biclusters, int i) {
+    /**
+     * Evaluates several solutions scoring only once each bicluster found in any of them, since
+     * the score of a bicluster does not depend on the rest of its solution. The distinct
+     * biclusters are scored sorted by their columns, so that biclusters reading the same columns
+     * of the data matrix are scored one after the other.
+     *
+     * @param batch The biclusters of each solution
+     * @return The score of each solution, the same as {@link #run(List)}
+     */
+    @Override
+    public double[] runBatch(List<List<Bicluster>> batch) {
+        Map<Bicluster, Integer> positions = new HashMap<>();
+        List<Bicluster> distinct = new ArrayList<>();
+        List<List<Bicluster>> filtered = new ArrayList<>(batch.size());
+        for (List<Bicluster> biclusters : batch) {
+            List<Bicluster> solution = deleteSmallOrEmptyBiclusters(biclusters);
+            for (Bicluster bicluster : solution) {
+                if (positions.putIfAbsent(bicluster, 0) == null) distinct.add(bicluster);
+            }
+            filtered.add(solution);
+        }
+
+        distinct.sort((a, b) -> {
+            int res = Arrays.compare(a.getCols(), b.getCols());
+            return res != 0 ? res : Arrays.compare(a.getRows(), b.getRows());
+        });
+        for (int k = 0; k < distinct.size(); k++) {
+            positions.put(distinct.get(k), k);
+        }
+        double[] scores = score(distinct);
+
+        double[] res = new double[batch.size()];
+        for (int s = 0; s < res.length; s++) {
+            res[s] = summariseKnown(filtered.get(s), (b, i) -> scores[positions.get(b.get(i))]);
+        }
+        return res;
+    }
+
+    protected double getBiclusterScore(List<Bicluster> biclusters, int i) {
         return this.getBiclusterScore(biclusters.get(i));
     }
 
-    protected abstract double getBiclusterScore(ArrayList<Integer>[] bicluster);
+    protected abstract double getBiclusterScore(Bicluster bicluster);
 }
@@ -0,0 +1,119 @@
+package moeba.fitnessfunction;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+import moeba.bicluster.Bicluster;
+import moeba.fitnessfunction.BiclusterFitnessFunction.BiclusterScoreFunction;
+
+/**
+ * Scores the biclusters of a single solution in parallel, on a ForkJoin pool shared by the
+ * fitness functions of a run, when the solution has at least a threshold of biclusters. Scores
+ * are then summarised in order, so results do not depend on the number of threads.
+ * <p>
+ * Nested parallelism is avoided: a solution is scored serially when it is evaluated from a
+ * ForkJoin worker, or when there are already as many evaluations running as threads in the
+ * pool, as happens when the workers of the asynchronous algorithms are all busy.
+ * <p>
+ * Each run owns its instance, so runs sharing the JVM with different numbers of threads do not
+ * replace or shut down the pool of one another.
+ */
+public final class ParallelScoring {
+    public static final int DEFAULT_THRESHOLD = 64;
+
+    private static final ParallelScoring DEFAULT = new ParallelScoring(Runtime.getRuntime().availableProcessors(), DEFAULT_THRESHOLD);
+
+    // Null with a single thread, when scoring is always serial
+    private final ForkJoinPool pool;
+    private final int numThreads;
+    private final int threshold;
+    private final AtomicInteger activeEvaluations;
+
+    /**
+     * Creates the pool of a run.
+     *
+     * @param numThreads Number of threads of the pool. With one thread, scoring is always serial
+     * @param minBiclusters Minimum number of biclusters to score a solution in parallel
+     */
+    public ParallelScoring(int numThreads, int minBiclusters) {
+        if (numThreads < 1) throw new IllegalArgumentException("The number of threads must be positive");
+        this.pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+        this.numThreads = numThreads;
+        this.threshold = minBiclusters;
+        this.activeEvaluations = new AtomicInteger();
+    }
+
+    /**
+     * Returns the instance used by fitness functions created outside a run, with a thread per
+     * processor. It is never shut down.
+     *
+     * @return The default instance
+     */
+    public static ParallelScoring getDefault() {
+        return DEFAULT;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Shuts the pool down once the run is over. Does nothing on the default instance.
+     */
+    public void shutdown() {
+        if (this != DEFAULT && pool != null) pool.shutdown();
+    }
+
+    /**
+     * Summarises the scores of the biclusters of a solution, computing them in parallel when
+     * worthwhile. The score function may then be called from several threads at once.
+     *
+     * @param biclusters The biclusters
+     * @param scoreFunc The score of each bicluster
+     * @param summariser The way to summarise the scores
+     * @return The summarised score
+     */
+    double summarise(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc,
+            BiFunction<List<Bicluster>, BiclusterScoreFunction, Double> summariser) {
+        double[] scores = score(biclusters, scoreFunc, false);
+        if (scores == null) return summariser.apply(biclusters, scoreFunc);
+        return summariser.apply(biclusters, (b, i) -> scores[i]);
+    }
+
+    /**
+     * Scores every bicluster of a list, in parallel when worthwhile, like
+     * {@link #summarise(List, BiclusterScoreFunction, BiFunction)}.
+     *
+     * @param biclusters The biclusters
+     * @param scoreFunc The score of each bicluster
+     * @return The score of each bicluster by position
+     */
+    double[] score(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc) {
+        return score(biclusters, scoreFunc, true);
+    }
+
+    // Returns null when the scores must be computed serially and the caller does not need them
+    private double[] score(List<Bicluster> biclusters, BiclusterScoreFunction scoreFunc, boolean always) {
+        int active = activeEvaluations.incrementAndGet();
+        try {
+            int size = biclusters.size();
+            boolean serial = pool == null || size < threshold || size < 2 || active >= numThreads || ForkJoinTask.inForkJoinPool();
+            if (serial && !always) return null;
+            double[] scores = new double[size];
+            if (serial) {
+                for (int i = 0; i < size; i++) {
+                    scores[i] = scoreFunc.apply(biclusters, i);
+                }
+            } else {
+                pool.submit(() -> IntStream.range(0, size).parallel().forEach(i -> scores[i] = scoreFunc.apply(biclusters, i))).join();
+            }
+            return scores;
+        } finally {
+            activeEvaluations.decrementAndGet();
+        }
+    }
+}
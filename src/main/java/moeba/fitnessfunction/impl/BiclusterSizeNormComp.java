@@ -1,25 +1,30 @@
 package moeba.fitnessfunction.impl;
 
-import java.util.ArrayList;
-
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
 import moeba.fitnessfunction.IndividualBiclusterFitnessFunction;
+import moeba.utils.dataset.DataMatrix;
 import moeba.utils.storage.CacheStorage;
 
 public class BiclusterSizeNormComp extends IndividualBiclusterFitnessFunction {
     private double rowsWeight;
     private double colsWeight;
 
-    public BiclusterSizeNormComp(double[][] data, Class<?>[] types, CacheStorage<String, Double> internalCache, String summariseIndividualObjectives, double rowsWeight) {
+    public BiclusterSizeNormComp(double[][] data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives, double rowsWeight) {
+        this(DataMatrix.of(data), types, internalCache, summariseIndividualObjectives, rowsWeight);
+    }
+
+    public BiclusterSizeNormComp(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives, double rowsWeight) {
         super(data, types, internalCache, summariseIndividualObjectives);
         this.rowsWeight = rowsWeight;
         this.colsWeight = 1 - rowsWeight;
     }
 
-    public double getNormalizedSize(ArrayList<Integer>[] bicluster) {
-        return this.rowsWeight * ((double) bicluster[0].size() / data.length) + this.colsWeight * ((double) bicluster[1].size() / data[0].length);
+    public double getNormalizedSize(Bicluster bicluster) {
+        return this.rowsWeight * ((double) bicluster.getNumRows() / data.getNumRows()) + this.colsWeight * ((double) bicluster.getNumCols() / data.getNumCols());
     }
 
-    protected double getBiclusterScore(ArrayList<Integer>[] bicluster) {
+    protected double getBiclusterScore(Bicluster bicluster) {
         return getNormalizedSize(bicluster);
     }
 }
@@ -1,15 +1,23 @@
 package moeba.fitnessfunction.impl;
 
-import java.util.ArrayList;
+import java.util.List;
 
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
 import moeba.fitnessfunction.GenericBiclusterFitnessFunction;
+import moeba.utils.dataset.DataMatrix;
 import moeba.utils.storage.CacheStorage;
 
 public class BiclusterSizeNumBicsNormComp extends GenericBiclusterFitnessFunction {
     private BiclusterSizeNormComp biclusterSizeNormComp;
     private double coherenceWeight;
 
-    public BiclusterSizeNumBicsNormComp(double[][] data, Class<?>[] types, CacheStorage<String, Double> internalCache,
+    public BiclusterSizeNumBicsNormComp(double[][] data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache,
+            String summariseIndividualObjectives, double rowsWeight, double coherenceWeight) {
+        this(DataMatrix.of(data), types, internalCache, summariseIndividualObjectives, rowsWeight, coherenceWeight);
+    }
+
+    public BiclusterSizeNumBicsNormComp(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache,
             String summariseIndividualObjectives, double rowsWeight, double coherenceWeight) {
         super(data, types, internalCache, summariseIndividualObjectives);
         this.biclusterSizeNormComp = new BiclusterSizeNormComp(data, types, internalCache, summariseIndividualObjectives, rowsWeight);
@@ -17,10 +25,11 @@ public class BiclusterSizeNumBicsNormComp extends GenericBiclusterFitnessFunctio
     }
 
     @Override
-    protected double getBiclusterScore(ArrayList<Integer>[] bicluster, ArrayList<ArrayList<Integer>[]> biclusters) {
-        int maxSize = data.length * data[0].length;
-        double parcelSize = (double) maxSize / Math.pow(biclusters.size() + 1, 2);
-        int biclusterSize = bicluster[0].size() * bicluster[1].size();
+    protected double getBiclusterScoreAgainstOthers(List<Bicluster> biclusters, int i) {
+        Bicluster bicluster = biclusters.get(i);
+        int maxSize = data.getNumRows() * data.getNumCols();
+        double parcelSize = (double) maxSize / Math.pow(biclusters.size(), 2);
+        int biclusterSize = bicluster.getNumRows() * bicluster.getNumCols();
 
         return (1 - coherenceWeight) * biclusterSizeNormComp.getNormalizedSize(bicluster) + coherenceWeight * (1 - Math.min(1, Math.abs(parcelSize - biclusterSize) / parcelSize));
     }
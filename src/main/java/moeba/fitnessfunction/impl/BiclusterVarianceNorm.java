@@ -1,36 +1,45 @@
 package moeba.fitnessfunction.impl;
 
-import java.util.ArrayList;
-
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.fitnessfunction.CellStatistics;
+import moeba.fitnessfunction.CellStatisticsFitnessFunction;
 import moeba.fitnessfunction.IndividualBiclusterFitnessFunction;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.RowPrefixSums;
 import moeba.utils.storage.CacheStorage;
 
-public class BiclusterVarianceNorm extends IndividualBiclusterFitnessFunction {
+public class BiclusterVarianceNorm extends IndividualBiclusterFitnessFunction implements CellStatisticsFitnessFunction {
+
+    // Null when the matrix is over the memory budget of the tables
+    private final RowPrefixSums prefixSums;
+
+    public BiclusterVarianceNorm(double[][] data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
+        this(DataMatrix.of(data), types, internalCache, summariseIndividualObjectives);
+    }
+
+    public BiclusterVarianceNorm(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
+        this(data, types, internalCache, summariseIndividualObjectives, RowPrefixSums.DEFAULT_MEMORY_BUDGET);
+    }
 
-    public BiclusterVarianceNorm(double[][] data, Class<?>[] types, CacheStorage<String, Double> internalCache, String summariseIndividualObjectives) {
+    public BiclusterVarianceNorm(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives, long prefixSumsMemoryBudget) {
         super(data, types, internalCache, summariseIndividualObjectives);
+        this.prefixSums = RowPrefixSums.get(this.data, prefixSumsMemoryBudget);
     }
 
     @Override
-    protected double getBiclusterScore(ArrayList<Integer>[] bicluster) {  
-        // Get the mean of the bicluster
-        float sum = 0.0f;
-        for (int i : bicluster[0]) {
-            for (int j : bicluster[1]) {
-                sum += data[i][j];
-            }
-        }
-        float mean = sum / (bicluster[0].size() * bicluster[1].size());
-
-        // Sum the squared differences of the bicluster values from the mean
-        double score = 0.0;
-        for (int i : bicluster[0]) {
-            for (int j : bicluster[1]) {
-                score += Math.pow(data[i][j] - mean, 2);
-            }
-        }
+    protected double getBiclusterScore(Bicluster bicluster) {
+        return getBiclusterScore(CellStatistics.computeRowStatistics(data, prefixSums, bicluster));
+    }
 
+    @Override
+    public double getBiclusterScore(CellStatistics statistics) {
         // Revert to maximization and normalize between 0 and 1
-        return 1 - 4 * score / (data.length * data[0].length);
+        return 1 - 4 * statistics.getSquaredDeviation() / (data.getNumRows() * data.getNumCols());
+    }
+
+    @Override
+    public boolean needsColSums() {
+        return false;
     }
 }
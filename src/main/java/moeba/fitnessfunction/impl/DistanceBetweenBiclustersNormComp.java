@@ -1,121 +1,169 @@
 package moeba.fitnessfunction.impl;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
 import moeba.fitnessfunction.GenericBiclusterFitnessFunction;
+import moeba.utils.dataset.DataMatrix;
 import moeba.utils.storage.CacheStorage;
 
 public class DistanceBetweenBiclustersNormComp extends GenericBiclusterFitnessFunction {
 
     public DistanceBetweenBiclustersNormComp(double[][] data, Class<?>[] types,
-            CacheStorage<String, Double> internalCache, String summariseIndividualObjectives) {
+            CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
+        this(DataMatrix.of(data), types, internalCache, summariseIndividualObjectives);
+    }
+
+    public DistanceBetweenBiclustersNormComp(DataMatrix data, Class<?>[] types,
+            CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
         super(data, types, internalCache, summariseIndividualObjectives);
     }
 
     @Override
-    protected double getBiclusterScore(ArrayList<Integer>[] bicluster, ArrayList<ArrayList<Integer>[]> biclusters) {
-        double totalScore = 0.0;
-
-        // Paso 0: Encontrar el bicluster más cercano (mayor cantidad de columnas compartidas)
-        ArrayList<Integer>[] closestBicluster = findClosestBicluster(bicluster, biclusters);
+    protected BiclusterScoreFunction getScoreFunction(List<Bicluster> biclusters) {
+        Evaluation evaluation = new Evaluation(biclusters);
+        return (b, i) -> b.size() == 1 ? 0.0 : evaluation.getScore(i);
+    }
 
-        // Paso 1: Calcular el promedio de cada bicluster
-        double[] meanBicluster = calculateMean(bicluster);
-        double[] meanClosestBicluster = calculateMean(closestBicluster);
+    @Override
+    protected double getBiclusterScoreAgainstOthers(List<Bicluster> biclusters, int i) {
+        return new Evaluation(biclusters).getScore(i);
+    }
 
-        // Paso 2: Para cada fila en el bicluster más cercano
-        for (Integer row : closestBicluster[0]) {
+    /**
+     * State shared by the biclusters of one solution: an inverted index from each column to the
+     * biclusters that contain it, used to count shared columns, and the column means of every
+     * bicluster, computed once however many biclusters pick it as closest. Biclusters may be
+     * scored from several threads at once.
+     */
+    private final class Evaluation {
+        private final List<Bicluster> biclusters;
+        private final AtomicReferenceArray<double[]> means;
+        // Biclusters containing column c are members[offsets[c]] to members[offsets[c + 1] - 1], in ascending order
+        private volatile int[] offsets;
+        private int[] members;
+
+        private Evaluation(List<Bicluster> biclusters) {
+            this.biclusters = biclusters;
+            this.means = new AtomicReferenceArray<>(biclusters.size());
+        }
 
-            // Paso 2.0: Cargar los datos de la fila
-            // Para las columnas del bicluster más cercano
-            double[] yiClosestBic = new double[closestBicluster[1].size()];
-            for (int j = 0; j < closestBicluster[1].size(); j++) {
-                yiClosestBic[j] = data[row][closestBicluster[1].get(j)];
+        private double getScore(int i) {
+            Bicluster bicluster = biclusters.get(i);
+            double totalScore = 0.0;
+
+            // Paso 0: Encontrar el bicluster más cercano (mayor cantidad de columnas compartidas)
+            int closest = findClosestBicluster(i);
+            Bicluster closestBicluster = biclusters.get(closest);
+
+            // Paso 1: Calcular el promedio de cada bicluster
+            double[] meanBicluster = getMean(i);
+            double[] meanClosestBicluster = getMean(closest);
+
+            int n = bicluster.getNumRows();
+            int[] cols = bicluster.getCols();
+            int[] closestCols = closestBicluster.getCols();
+
+            // Paso 2: Para cada fila en el bicluster más cercano
+            for (int row : closestBicluster.getRows()) {
+
+                // Paso 2.1: Distancia de la fila al promedio del bicluster evaluado, en sus columnas
+                double distanceBiclusterMean = 0.0;
+                for (int j = 0; j < cols.length; j++) {
+                    double diff = data.get(row, cols[j]) - meanBicluster[j];
+                    distanceBiclusterMean += diff * diff;
+                }
+                distanceBiclusterMean /= cols.length;
+
+                // Paso 2.2: Distancia de la fila al promedio del bicluster cercano sin ella, en las columnas de éste
+                double distanceClosestBicAdjustedMean = 0.0;
+                for (int j = 0; j < closestCols.length; j++) {
+                    double yi = data.get(row, closestCols[j]);
+                    double diff = yi - (n * meanClosestBicluster[j] - yi) / (n - 1);
+                    distanceClosestBicAdjustedMean += diff * diff;
+                }
+                distanceClosestBicAdjustedMean /= closestCols.length;
+
+                // Paso 2.3: Calcular el valor de encaje
+                totalScore += distanceBiclusterMean / (distanceBiclusterMean + distanceClosestBicAdjustedMean);
             }
-            // Para las columnas del bicluster evaluado
-            double[] yiBic = new double[bicluster[1].size()];
-            for (int j = 0; j < bicluster[1].size(); j++) {
-                yiBic[j] = data[row][bicluster[1].get(j)];
-            }
-
-            // Paso 2.1: Distancia de yiBic al promedio del bicluster evaluado
-            double distanceBiclusterMean = calculateDistanceToBiclusterMean(yiBic, meanBicluster);
-
-            // Paso 2.2: Distancia de yi al promedio ajustado del bicluster cercano
-            double[] adjustedMeanClosestBicluster = calculateAdjustedMean(meanClosestBicluster, yiClosestBic, bicluster[0].size());
-            double distanceClosestBicAdjustedMean = calculateDistanceToBiclusterMean(yiClosestBic, adjustedMeanClosestBicluster);
-
-            // Paso 2.3: Calcular el valor de encaje
-            double fitScore = calculateFitScore(distanceBiclusterMean, distanceClosestBicAdjustedMean);
 
-            // Acumular el puntaje
-            totalScore += fitScore;
+            // Paso 3: Promedio de los valores
+            return totalScore / closestBicluster.getNumRows();
         }
 
-        // Paso 3: Promedio de los valores
-        return totalScore / closestBicluster[0].size();
-    }
-
-    // Encuentra el bicluster más cercano basado en el mayor número de columnas compartidas
-    private ArrayList<Integer>[] findClosestBicluster(ArrayList<Integer>[] bicluster, ArrayList<ArrayList<Integer>[]> biclusters) {
-        ArrayList<Integer>[] closestBicluster = biclusters.get(0);
-        int maxSharedColumns = 0;
-
-        for (ArrayList<Integer>[] otherBicluster : biclusters) {
-            int sharedColumns = countSharedColumns(bicluster[1], otherBicluster[1]);
-            if (sharedColumns > maxSharedColumns) {
-                maxSharedColumns = sharedColumns;
-                closestBicluster = otherBicluster;
+        // Encuentra el bicluster más cercano basado en el mayor número de columnas compartidas, sin contar el de la posición i.
+        // En caso de empate gana el de menor posición
+        private int findClosestBicluster(int i) {
+            int[] offsets = getIndex();
+            int[] shared = new int[biclusters.size()];
+            for (int col : biclusters.get(i).getCols()) {
+                for (int k = offsets[col]; k < offsets[col + 1]; k++) {
+                    shared[members[k]]++;
+                }
             }
-        }
-        return closestBicluster;
-    }
-
-    // Cuenta las columnas compartidas entre dos conjuntos de columnas
-    private int countSharedColumns(ArrayList<Integer> cols1, ArrayList<Integer> cols2) {
-        int shared = 0;
-        for (Integer col : cols1) {
-            if (cols2.contains(col)) {
-                shared++;
+            int closest = i == 0 ? 1 : 0;
+            int maxSharedColumns = 0;
+            for (int k = 0; k < shared.length; k++) {
+                if (k != i && shared[k] > maxSharedColumns) {
+                    maxSharedColumns = shared[k];
+                    closest = k;
+                }
             }
+            return closest;
         }
-        return shared;
-    }
 
-    // Calcula el promedio de las columnas del bicluster
-    private double[] calculateMean(ArrayList<Integer>[] bicluster) {
-        double[] mean = new double[bicluster[1].size()];
-        for (int j = 0; j < bicluster[1].size(); j++) {
-            double sum = 0.0;
-            for (Integer row : bicluster[0]) {
-                sum += data[row][bicluster[1].get(j)];
-            }
-            mean[j] = sum / bicluster[0].size();
+        private int[] getIndex() {
+            int[] res = offsets;
+            return res != null ? res : buildIndex();
         }
 
-        return mean;
-    }
-
-    // Calcula la distancia entre la fila yi y el promedio de las columnas del bicluster
-    private double calculateDistanceToBiclusterMean(double[] yi, double[] meanBicluster) {
-        double sum = 0.0;
-        for (int j = 0; j < yi.length; j++) {
-            sum += Math.pow(yi[j] - meanBicluster[j], 2);
+        private synchronized int[] buildIndex() {
+            if (offsets != null) return offsets;
+            int numCols = data.getNumCols();
+            int[] offsets = new int[numCols + 1];
+            int total = 0;
+            for (Bicluster bicluster : biclusters) {
+                for (int col : bicluster.getCols()) {
+                    offsets[col + 1]++;
+                }
+                total += bicluster.getNumCols();
+            }
+            for (int c = 0; c < numCols; c++) {
+                offsets[c + 1] += offsets[c];
+            }
+            members = new int[total];
+            int[] next = offsets.clone();
+            for (int b = 0; b < biclusters.size(); b++) {
+                for (int col : biclusters.get(b).getCols()) {
+                    members[next[col]++] = b;
+                }
+            }
+            // Published last, so that members is visible to any thread that sees the offsets
+            this.offsets = offsets;
+            return offsets;
         }
-        return sum / yi.length;
-    }
 
-    // Ajusta el promedio de un bicluster al quitar una fila yi
-    private double[] calculateAdjustedMean(double[] meanBicluster, double[] yi, int n) {
-        double[] adjustedMean = new double[meanBicluster.length];
-        for (int j = 0; j < meanBicluster.length; j++) {
-            adjustedMean[j] = (n * meanBicluster[j] - yi[j]) / (n - 1);
+        // Calcula el promedio de las columnas del bicluster, una sola vez por evaluación
+        private double[] getMean(int b) {
+            double[] mean = means.get(b);
+            if (mean == null) {
+                Bicluster bicluster = biclusters.get(b);
+                int[] cols = bicluster.getCols();
+                mean = new double[cols.length];
+                for (int row : bicluster.getRows()) {
+                    for (int j = 0; j < cols.length; j++) {
+                        mean[j] += data.get(row, cols[j]);
+                    }
+                }
+                for (int j = 0; j < cols.length; j++) {
+                    mean[j] /= bicluster.getNumRows();
+                }
+                means.set(b, mean);
+            }
+            return mean;
         }
-        return adjustedMean;
-    }
-
-    // Calcula el valor de ajuste basado en las distancias a los promedios
-    private double calculateFitScore(double distanceToCurrentMean, double distanceToAdjustedMean) {
-        return distanceToCurrentMean / (distanceToCurrentMean + distanceToAdjustedMean);
     }
 }
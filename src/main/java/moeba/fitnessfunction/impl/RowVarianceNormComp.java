@@ -1,43 +1,45 @@
 package moeba.fitnessfunction.impl;
 
-import java.util.ArrayList;
-
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.fitnessfunction.CellStatistics;
+import moeba.fitnessfunction.CellStatisticsFitnessFunction;
 import moeba.fitnessfunction.IndividualBiclusterFitnessFunction;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.RowPrefixSums;
 import moeba.utils.storage.CacheStorage;
 
-public class RowVarianceNormComp extends IndividualBiclusterFitnessFunction {
+public class RowVarianceNormComp extends IndividualBiclusterFitnessFunction implements CellStatisticsFitnessFunction {
+
+    // Null when the matrix is over the memory budget of the tables
+    private final RowPrefixSums prefixSums;
+
+    public RowVarianceNormComp(double[][] data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
+        this(DataMatrix.of(data), types, internalCache, summariseIndividualObjectives);
+    }
+
+    public RowVarianceNormComp(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives) {
+        this(data, types, internalCache, summariseIndividualObjectives, RowPrefixSums.DEFAULT_MEMORY_BUDGET);
+    }
 
-    public RowVarianceNormComp(double[][] data, Class<?>[] types, CacheStorage<String, Double> internalCache, String summariseIndividualObjectives) {
+    public RowVarianceNormComp(DataMatrix data, Class<?>[] types, CacheStorage<BiclusterFingerprint, Double> internalCache, String summariseIndividualObjectives, long prefixSumsMemoryBudget) {
         super(data, types, internalCache, summariseIndividualObjectives);
+        this.prefixSums = RowPrefixSums.get(this.data, prefixSumsMemoryBudget);
     }
 
     @Override
-    protected double getBiclusterScore(ArrayList<Integer>[] bicluster) {  
-        // Get the mean of each row in the bicluster
-        float[] means = new float[bicluster[0].size()];
-        int cnt = 0;
-        for (int i : bicluster[0]) {
-            float sum = 0.0f;
-            for (int j : bicluster[1]) {
-                sum += data[i][j];
-            }
-            means[cnt++] = sum / bicluster[1].size();
-        }
-
-        // Sum the squared differences of the bicluster values from the mean for each row
-        double score = 0.0;
-        cnt = 0;
-        for (int i : bicluster[0]) {
-            for (int j : bicluster[1]) {
-                score += Math.pow(data[i][j] - means[cnt], 2);
-            }
-            cnt++;
-        }
-
-        // Divide by the number of elements in the bicluster
-        score /= (bicluster[0].size() * bicluster[1].size());
+    protected double getBiclusterScore(Bicluster bicluster) {
+        return getBiclusterScore(CellStatistics.computeRowStatistics(data, prefixSums, bicluster));
+    }
 
+    @Override
+    public double getBiclusterScore(CellStatistics statistics) {
         // Normalize between 0 and 1
-        return 4 * score;
+        return 4 * statistics.getRowVariance();
+    }
+
+    @Override
+    public boolean needsColSums() {
+        return false;
     }
 }
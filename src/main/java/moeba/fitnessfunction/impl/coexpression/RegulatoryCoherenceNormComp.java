@@ -1,14 +1,19 @@
 package moeba.fitnessfunction.impl.coexpression;
 
-import java.util.ArrayList;
+import java.util.List;
 
+import moeba.bicluster.Bicluster;
 import moeba.fitnessfunction.GlobalFitnessFunction;
+import moeba.utils.coexpression.DockerGenie3Inference;
 import moeba.utils.coexpression.GeneRegulatoryNetwork;
+import moeba.utils.coexpression.NetworkCache;
+import moeba.utils.coexpression.NetworkInference;
+import moeba.utils.dataset.DataMatrix;
 
 /**
  * The RegulatoryCoherenceNormComp class is a global fitness function designed to measure the modularity 
  * of the partition into communities, where the communities are represented by the rows of biclusters. 
- * This partition is evaluated on the regulatory network inferred by Genie3 based on the input gene expression data.
+ * This partition is evaluated on the regulatory network inferred from the input gene expression data, by default with Genie3.
  * 
  * Reason: https://journals.plos.org/plosone/article?id=10.1371/journal.pone.0247671
  */
@@ -16,8 +21,7 @@ public class RegulatoryCoherenceNormComp extends GlobalFitnessFunction {
     private GeneRegulatoryNetwork regNetwork; // The gene regulatory network inferred from gene expression data
 
     /**
-     * Constructor that initializes the fitness function with gene expression data and types for the data.
-     * It also infers the gene regulatory network using the provided data.
+     * Constructor that initializes the fitness function from a 2D double array of gene expression data.
      * 
      * @param data A 2D double array representing the gene expression data, where rows correspond to genes
      *             and columns correspond to conditions or samples.
@@ -25,12 +29,68 @@ public class RegulatoryCoherenceNormComp extends GlobalFitnessFunction {
      * @throws IllegalArgumentException if any of the provided types are not numeric.
      */
     public RegulatoryCoherenceNormComp(double[][] data, Class<?>[] types) {
+        this(DataMatrix.of(data), types);
+    }
+
+    /**
+     * Constructor that initializes the fitness function with gene expression data and types for the data.
+     * It also infers the gene regulatory network using the provided data with GENIE3 in Docker, unless
+     * it is found in the default {@link NetworkCache}.
+     * 
+     * @param data A matrix representing the gene expression data, where rows correspond to genes
+     *             and columns correspond to conditions or samples.
+     * @param types An array of Class objects representing the data types of the columns. All types must be numeric.
+     * @throws IllegalArgumentException if any of the provided types are not numeric.
+     */
+    public RegulatoryCoherenceNormComp(DataMatrix data, Class<?>[] types) {
+        this(data, types, new DockerGenie3Inference());
+    }
+
+    /**
+     * Constructor that initializes the fitness function with gene expression data and types for the data.
+     * It also infers the gene regulatory network using the provided data and inference method, unless
+     * it is found in the default {@link NetworkCache}.
+     * 
+     * @param data A matrix representing the gene expression data, where rows correspond to genes
+     *             and columns correspond to conditions or samples.
+     * @param types An array of Class objects representing the data types of the columns. All types must be numeric.
+     * @param inference The method inferring the gene regulatory network.
+     * @throws IllegalArgumentException if any of the provided types are not numeric.
+     */
+    public RegulatoryCoherenceNormComp(DataMatrix data, Class<?>[] types, NetworkInference inference) {
+        this(data, types, inferNetwork(data, inference));  // Create the gene regulatory network
+    }
+
+    /**
+     * Constructor that initializes the fitness function with gene expression data and an already
+     * available gene regulatory network.
+     * 
+     * @param data A matrix representing the gene expression data, where rows correspond to genes
+     *             and columns correspond to conditions or samples.
+     * @param types An array of Class objects representing the data types of the columns. All types must be numeric.
+     * @param regNetwork The gene regulatory network, with one node per row of the data.
+     * @throws IllegalArgumentException if any of the provided types are not numeric.
+     */
+    public RegulatoryCoherenceNormComp(DataMatrix data, Class<?>[] types, GeneRegulatoryNetwork regNetwork) {
         super(data, types);
         checkTypes(types);  // Validate the types
-        this.regNetwork = new GeneRegulatoryNetwork(data);  // Create the gene regulatory network
+        this.regNetwork = regNetwork;
         this.func = biclusters -> getRegulatoryCoherence(biclusters);  // Define the fitness function
     }
 
+    /**
+     * Infers the gene regulatory network of the data, or loads it if it was already cached.
+     * 
+     * @param data A matrix representing the gene expression data.
+     * @param inference The method inferring the gene regulatory network.
+     * @return The gene regulatory network.
+     */
+    private static GeneRegulatoryNetwork inferNetwork(DataMatrix data, NetworkInference inference) {
+        NetworkCache cache = NetworkCache.getDefault();
+        if (cache == null) return inference.infer(data);
+        return cache.getOrInfer(data, inference);
+    }
+
     /**
      * Validates that all the types in the provided array are numeric.
      * 
@@ -49,15 +109,14 @@ public class RegulatoryCoherenceNormComp extends GlobalFitnessFunction {
     /**
      * Maps each gene (row) to its corresponding bicluster index.
      * 
-     * @param biclusters A list of biclusters, where each bicluster contains two arrays:
-     *                   one for the gene indices (rows) and one for the condition indices (columns).
+     * @param biclusters A list of biclusters, each one with its gene indices (rows) and condition indices (columns).
      * @return An integer array where the value at each index represents the bicluster index the gene belongs to.
      */
-    private int[] getRowBiclusters(ArrayList<ArrayList<Integer>[]> biclusters) {
+    private int[] getRowBiclusters(List<Bicluster> biclusters) {
         int[] rowBiclusters = new int[regNetwork.getNumNodes()];
         for (int i = 0; i < biclusters.size(); i++) {
-            for (int j = 0; j < biclusters.get(i)[0].size(); j++) {
-                rowBiclusters[biclusters.get(i)[0].get(j)] = i + 1; // Assign bicluster index (1-based)
+            for (int row : biclusters.get(i).getRows()) {
+                rowBiclusters[row] = i + 1; // Assign bicluster index (1-based)
             }
         }
         return rowBiclusters;
@@ -66,25 +125,38 @@ public class RegulatoryCoherenceNormComp extends GlobalFitnessFunction {
     /**
      * Calculates the regulatory coherence of the biclusters by comparing the regulatory relationships
      * within the genes grouped in the same bicluster. The coherence is measured based on the gene regulatory network.
+     * <p>
+     * The modularity sums, over every pair of genes in the same bicluster, the confidence of their
+     * interaction minus the product of the out-degree of the first and the in-degree of the second
+     * divided by the total weight. It is computed per bicluster instead of per pair: the confidences
+     * come from the out-edges of its genes that stay inside it, and the degree term is the product of
+     * the sums of the out-degrees and in-degrees of its genes. The cost is linear in the genes of the
+     * biclusters and their out-edges.
      * 
-     * @param biclusters A list of biclusters, where each bicluster contains two arrays:
-     *                   one for the gene indices (rows) and one for the condition indices (columns).
+     * @param biclusters A list of biclusters, each one with its gene indices (rows) and condition indices (columns).
      * @return A double value representing the normalized regulatory coherence. The value is between 0 and 1,
      *         where 0 represents the best coherence and 1 represents the worst.
      */
-    private double getRegulatoryCoherence(ArrayList<ArrayList<Integer>[]> biclusters) {
+    private double getRegulatoryCoherence(List<Bicluster> biclusters) {
         int[] rowBiclusters = getRowBiclusters(biclusters);  // Get the bicluster assignments for genes
-        float sum = 0;
+        double sum = 0;
 
-        // Loop through all pairs of genes in the network and accumulate coherence based on regulatory relationships
-        for (int i = 0; i < regNetwork.getNumNodes(); i++) {
-            for (int j = 0; j < regNetwork.getNumNodes(); j++) {
-                // Only consider gene pairs in the same bicluster and skip unassigned genes (bicluster index = 0)
-                if (rowBiclusters[i] == rowBiclusters[j] && rowBiclusters[i] != 0) {
-                    sum += regNetwork.getConfidence(i, j) 
-                           - (regNetwork.getOutDegree(i) * regNetwork.getInDegree(j)) / regNetwork.getTotalWeight();
+        for (int b = 0; b < biclusters.size(); b++) {
+            double internalWeight = 0;
+            double outDegrees = 0;
+            double inDegrees = 0;
+            for (int i : biclusters.get(b).getRows()) {
+                // A gene in several biclusters belongs to the last one
+                if (rowBiclusters[i] != b + 1) continue;
+                outDegrees += regNetwork.getOutDegree(i);
+                inDegrees += regNetwork.getInDegree(i);
+                for (int e = regNetwork.getFirstOutEdge(i); e < regNetwork.getFirstOutEdge(i + 1); e++) {
+                    if (rowBiclusters[regNetwork.getEdgeTarget(e)] == b + 1) {
+                        internalWeight += regNetwork.getEdgeConfidence(e);
+                    }
                 }
             }
+            sum += internalWeight - outDegrees * inDegrees / regNetwork.getTotalWeight();
         }
 
         // Calculate the modularity-like score based on the accumulated sum and total weight of the network
@@ -94,4 +166,3 @@ public class RegulatoryCoherenceNormComp extends GlobalFitnessFunction {
         return 1 - (mod + 1) / 2;
     }
 }
-
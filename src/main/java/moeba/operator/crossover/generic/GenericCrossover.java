@@ -7,6 +7,7 @@ import moeba.operator.crossover.generic.biclusterbinary.BiclusterBinaryCrossover
 import moeba.operator.crossover.generic.cellbinary.CellBinaryCrossover;
 import moeba.operator.crossover.generic.rowbiclustermixed.RowBiclusterMixedCrossover;
 import moeba.operator.crossover.generic.rowpermutation.RowPermutationCrossover;
+import moeba.representationwrapper.RepresentationWrapper;
 import org.uma.jmetal.operator.crossover.CrossoverOperator;
 import org.uma.jmetal.solution.binarysolution.BinarySolution;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
@@ -62,8 +63,11 @@ public class GenericCrossover implements CrossoverOperator<CompositeSolution> {
         IntegerSolution offSpring2IntSol = (IntegerSolution) offSpring2.variables().get(0);
         BinarySolution offSpring2BinSol = (BinarySolution) offSpring2.variables().get(1);
 
+        // Offspring copy the decoded biclusters of their parents, which are only kept if they are not crossed
         if (random.nextDouble(0, 1) <= this.crossoverProbability) {
             runnerGenericCrossover.execute(offSpring1IntSol, offSpring2IntSol, offSpring1BinSol, offSpring2BinSol);
+            RepresentationWrapper.invalidateBiclusters(offSpring1);
+            RepresentationWrapper.invalidateBiclusters(offSpring2);
         } 
 
         offspring.add(offSpring1);
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import moeba.bicluster.BitMatrix;
 import moeba.operator.crossover.generic.rowbiclustermixed.RowBiclusterMixedCrossover;
 
 import java.util.ArrayList;
@@ -78,8 +79,8 @@ public class GroupedBasedCrossover implements RowBiclusterMixedCrossover {
         int n = is1.variables().size();
 
         // Determine the number of biclusters to cross for each individual, ensuring at least one is crossed
-        int numBicsP1 = Math.max((int) ((bs1.cardinality() + (bs1.get(n -1) ? 0 : 1 )) * amount), 1);
-        int numBicsP2 = Math.max((int) ((bs2.cardinality() + (bs2.get(n -1) ? 0 : 1 )) * amount), 1);
+        int numBicsP1 = Math.max((int) (BitMatrix.countSegments(bs1, n) * amount), 1);
+        int numBicsP2 = Math.max((int) (BitMatrix.countSegments(bs2, n) * amount), 1);
 
         // Calculate the range of positions for the biclusters to be crossed
         int[] limits1 = amount != 1 ? getLimits(bs1, random.nextInt(n-4)+2, numBicsP1, n) : new int[] {-1, n-1};
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import moeba.operator.crossover.individual.rowcolbinary.RowColBinaryCrossover;
+import moeba.representationwrapper.RepresentationWrapper;
 import org.uma.jmetal.operator.crossover.CrossoverOperator;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
 import org.uma.jmetal.util.binarySet.BinarySet;
@@ -35,8 +36,11 @@ public class IndividualCrossover implements CrossoverOperator<CompositeSolution>
         CompositeSolution offSpring2 = (CompositeSolution) source.get(1).copy();
         BinarySet bs2 = (BinarySet) offSpring2.variables().get(1).variables().get(0);
 
+        // Offspring copy the decoded biclusters of their parents, which are only kept if they are not crossed
         if (random.nextDouble(0, 1) <= this.crossoverProbability) {
             rowColBinaryCrossover.execute(bs1, bs2);
+            RepresentationWrapper.invalidateBiclusters(offSpring1);
+            RepresentationWrapper.invalidateBiclusters(offSpring2);
         } 
 
         offspring.add(offSpring1);
@@ -5,6 +5,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import moeba.operator.mutation.generic.biclusterbinary.BiclusterBinaryMutation;
 import moeba.operator.mutation.generic.cellbinary.CellBinaryMutation;
 import moeba.operator.mutation.generic.rowpermutation.RowPermutationMutation;
+import moeba.representationwrapper.RepresentationWrapper;
 import org.uma.jmetal.operator.mutation.MutationOperator;
 import org.uma.jmetal.solution.binarysolution.BinarySolution;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
@@ -55,6 +56,7 @@ public class GenericMutation implements MutationOperator<CompositeSolution> {
         for (int i = 1; i < binSol.variables().size(); i++) {
             cellBinaryMutation.execute(binSol.variables().get(i), mutationProbability);
         }
+        RepresentationWrapper.invalidateBiclusters(solution);
 
         return solution;
     }
@@ -3,6 +3,7 @@ package moeba.operator.mutation.individual;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import moeba.operator.mutation.individual.rowcolbinary.RowColBinaryMutation;
+import moeba.representationwrapper.RepresentationWrapper;
 import org.uma.jmetal.operator.mutation.MutationOperator;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
 import org.uma.jmetal.util.binarySet.BinarySet;
@@ -43,6 +44,7 @@ public class IndividualMutation implements MutationOperator<CompositeSolution> {
 
         BinarySet bs = (BinarySet) solution.variables().get(1).variables().get(0);
         rowColBinaryMutation.execute(bs, mutationProbability);
+        RepresentationWrapper.invalidateBiclusters(solution);
 
         return solution;
     }
@@ -1,8 +1,6 @@
 package moeba.parameterization.problem.impl;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -23,6 +21,7 @@ import moeba.parameterization.ParameterizationRunner;
 import moeba.parameterization.ParameterizationSolution;
 import moeba.parameterization.problem.ParameterizationProblem;
 import moeba.representationwrapper.RepresentationWrapper;
+import moeba.utils.dataset.DatasetRegistry;
 import moeba.utils.observer.ProblemObserver.ObserverInterface;
 import moeba.validation.ValidationRunner;
 import moeba.validation.metric.MetricInterface;
@@ -36,6 +35,7 @@ public class CEProblem extends ParameterizationProblem {
     public int[] numRows;
     public int[] numCols;
     public String strTempFolder;
+    private DatasetRegistry.Lease[] datasetLeases;
 
     public CEProblem(ParameterizationExercise parameterizationExercise, String staticConf, ObserverInterface[] observers, String subObservers, String[] prefixes, ParameterizationExercise subExercise, String strTempFolder) {
         super(parameterizationExercise, staticConf, observers);
@@ -45,6 +45,7 @@ public class CEProblem extends ParameterizationProblem {
         this.subExercise = subExercise;
         this.numRows = new int[prefixes.length];
         this.numCols = new int[prefixes.length];
+        this.datasetLeases = new DatasetRegistry.Lease[prefixes.length];
         this.strTempFolder = strTempFolder;
         try {
             Files.createDirectories(Paths.get(strTempFolder));
@@ -53,18 +54,14 @@ public class CEProblem extends ParameterizationProblem {
         }
 
         for (int i = 0; i < prefixes.length; i++) {
-            String dataset = prefixes[i] + "-data.csv";
-            int rowCount = 0;
-            int columnCount = 0;
-
-            try (BufferedReader br = new BufferedReader(new FileReader(dataset))) {
-                columnCount = br.readLine().split(",").length - 1;
-                while (br.readLine() != null) {
-                    rowCount++;
-                }
+            // Keep benchmark datasets registered for the whole parameterization, so that the runners launched on every evaluation share them
+            try {
+                this.datasetLeases[i] = DatasetRegistry.getInstance().acquire(new File(prefixes[i] + "-data.csv"), new File(prefixes[i] + "-types.json"), Runtime.getRuntime().availableProcessors());
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new RuntimeException(e);
             }
+            int rowCount = this.datasetLeases[i].getDataset().getNumRows();
+            int columnCount = this.datasetLeases[i].getDataset().getNumCols() - 1;
 
             this.numRows[i] = rowCount;
             this.numCols[i] = columnCount;
@@ -1,7 +1,10 @@
 package moeba.representationwrapper;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import moeba.bicluster.Bicluster;
 import org.uma.jmetal.operator.crossover.CrossoverOperator;
 import org.uma.jmetal.operator.mutation.MutationOperator;
 import org.uma.jmetal.solution.binarysolution.BinarySolution;
@@ -10,6 +13,12 @@ import org.uma.jmetal.solution.integersolution.IntegerSolution;
 
 public abstract class RepresentationWrapper {
 
+    /**
+     * Key of the solution attribute that holds its decoded biclusters. Operators that modify the
+     * genotype of a solution must remove it with {@link #invalidateBiclusters(CompositeSolution)}.
+     */
+    public static final String BICLUSTERS_ATTRIBUTE = "moeba.biclusters";
+
     protected int numRows;
     protected int numColumns;
 
@@ -26,7 +35,55 @@ public abstract class RepresentationWrapper {
 
     public abstract CompositeSolution buildComposition(IntegerSolution integerSolution, BinarySolution binarySolution);
 
-    public abstract ArrayList<ArrayList<Integer>[]> getBiclustersFromRepresentation(CompositeSolution solution);
+    public abstract List<Bicluster> decodeBiclusters(CompositeSolution solution);
+
+    /**
+     * Returns the biclusters of a solution, decoding them only if they are not already stored
+     * in the solution, in which case they are stored for later calls.
+     *
+     * @param solution The solution
+     * @return The biclusters, as an unmodifiable list
+     */
+    public List<Bicluster> getBiclusters(CompositeSolution solution) {
+        List<Bicluster> res = getCachedBiclusters(solution);
+        if (res == null) {
+            res = Collections.unmodifiableList(decodeBiclusters(solution));
+            solution.attributes().put(BICLUSTERS_ATTRIBUTE, res);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the biclusters stored in a solution by a previous decode.
+     *
+     * @param solution The solution
+     * @return The biclusters, or null if the solution has not been decoded since it last changed
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Bicluster> getCachedBiclusters(CompositeSolution solution) {
+        return (List<Bicluster>) solution.attributes().get(BICLUSTERS_ATTRIBUTE);
+    }
+
+    /**
+     * Removes the decoded biclusters stored in a solution, which must be done whenever its
+     * variables change.
+     *
+     * @param solution The solution
+     */
+    public static void invalidateBiclusters(CompositeSolution solution) {
+        solution.attributes().remove(BICLUSTERS_ATTRIBUTE);
+    }
+
+    /**
+     * Decodes the biclusters of a solution into their legacy representation.
+     *
+     * @param solution The solution
+     * @return The biclusters, where position 0 holds the rows and position 1 the columns
+     */
+    public ArrayList<ArrayList<Integer>[]> getBiclustersFromRepresentation(CompositeSolution solution) {
+        return Bicluster.toLists(getBiclusters(solution));
+    }
+
     public abstract CrossoverOperator<CompositeSolution> getCrossoverFromString(String strCrossoverOperator, double crossoverProbability, int numApproxCrossovers);
     public abstract MutationOperator<CompositeSolution> getMutationFromString(String strMutationOperator, String mutationProbability, int numApproxMutations);
 
@@ -3,7 +3,6 @@ package moeba.representationwrapper.impl;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
@@ -12,6 +11,8 @@ import java.util.Map;
 import java.util.LinkedHashMap;
 
 import moeba.StaticUtils;
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BitMatrix;
 import moeba.operator.crossover.generic.GenericCrossover;
 import moeba.operator.crossover.generic.biclusterbinary.BiclusterBinaryCrossover;
 import moeba.operator.crossover.generic.biclusterbinary.impl.BicUniformCrossover;
@@ -43,6 +44,30 @@ public class GenericRepresentationWrapper extends RepresentationWrapper {
     private float genericInitialMaxPercBics;
     private String summariseIndividualObjectives;
     private Random random;
+    private ThreadLocal<DecodeScratch> decodeScratch;
+
+    /**
+     * Per-thread buffers reused by every decode, so that decoding only allocates its output.
+     */
+    private static class DecodeScratch {
+        // Row permutation, unboxed
+        private final int[] permutation;
+        // Columns transposed into rows
+        private final BitMatrix matrix;
+        // Columns of the bicluster being built
+        private final int[] cols;
+        // Sort keys of the biclusters: smallest row in the high half and position in the low half
+        private final long[] keys;
+        private final Bicluster[] biclusters;
+
+        private DecodeScratch(int numRows, int numColumns) {
+            this.permutation = new int[numRows];
+            this.matrix = new BitMatrix(numRows, numColumns);
+            this.cols = new int[numColumns];
+            this.keys = new long[numRows];
+            this.biclusters = new Bicluster[numRows];
+        }
+    }
 
     public GenericRepresentationWrapper(int numRows, int numColumns, float genericInitialMinPercBics, float genericInitialMaxPercBics, String summariseIndividualObjectives) {
         super(numRows, numColumns);
@@ -50,6 +75,7 @@ public class GenericRepresentationWrapper extends RepresentationWrapper {
         this.genericInitialMaxPercBics = genericInitialMaxPercBics;
         this.summariseIndividualObjectives = summariseIndividualObjectives;
         this.random = new Random();
+        this.decodeScratch = ThreadLocal.withInitial(() -> new DecodeScratch(numRows, numColumns));
     }
 
     public CompositeSolution buildComposition(IntegerSolution integerSolution, BinarySolution binarySolution) {
@@ -104,85 +130,57 @@ public class GenericRepresentationWrapper extends RepresentationWrapper {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public ArrayList<ArrayList<Integer>[]> getBiclustersFromRepresentation(CompositeSolution solution) {
-        
-        // Initialize the result list
-        ArrayList<ArrayList<Integer>[]> res = new ArrayList<>();
+    public List<Bicluster> decodeBiclusters(CompositeSolution solution) {
+        DecodeScratch scratch = decodeScratch.get();
         
         // Extract integer and binary variables from the composite solution
         List<Integer> integerVariables = ((IntegerSolution) solution.variables().get(0)).variables();
         List<BinarySet> binaryVariables = ((BinarySolution) solution.variables().get(1)).variables();
         
-        // Initialize rows, cols, minRows, minRow and precalculatedSums
-        ArrayList<Integer> rows = new ArrayList<>();
-        ArrayList<Integer> cols = new ArrayList<>();
-        ArrayList<Integer> minRows = new ArrayList<>();
-        int minRow = super.numRows;
-        int[][] precalculatedSums = new int[super.numColumns][super.numRows + 1];
-        
-        // Calculate precalculatedSums
-        for (int j = 0; j < super.numColumns; j++) {
-            precalculatedSums[j][0] = 0;
-            for (int i = 1; i <= super.numRows; i++) {
-                precalculatedSums[j][i] = precalculatedSums[j][i - 1] + (binaryVariables.get(j+1).get(integerVariables.get(i-1)) ? 1 : 0);
-            }
-        }
-
-        // Extract biclusters
+        // Unbox the row permutation once
+        int[] permutation = scratch.permutation;
         for (int i = 0; i < super.numRows; i++) {
-            int row = integerVariables.get(i);
-            rows.add(row);
-            if (row < minRow) minRow = row;
-            if (binaryVariables.get(0).get(i) || i == super.numRows - 1) {
-                for (int j = 0; j < super.numColumns; j++) {
-                    if (((float) (precalculatedSums[j][i + 1] - precalculatedSums[j][i - rows.size() + 1]) / rows.size()) > 0.5) {
-                        cols.add(j);
-                    }
-                }
-                
-                // Create and add bicluster to the result list
-                ArrayList<Integer>[] bicluster = new ArrayList[2];
-                Collections.sort(rows);
-                bicluster[0] = new ArrayList<>(rows);
-                Collections.sort(cols);
-                bicluster[1] = new ArrayList<>(cols);
-                res.add(bicluster);
-
-                // Clear rows and cols for next iteration
-                rows.clear();
-                cols.clear();
-
-                // Add minRow to list and reset for next iteration
-                minRows.add(minRow);
-                minRow = super.numRows;
-            }
+            permutation[i] = integerVariables.get(i);
         }
 
-        // Clean unused variables
-        rows = null;
-        cols = null;
-        precalculatedSums = null;
-
-        // Sort list of biclusters depending on the smallest row
-        List<Integer> indexes = new ArrayList<>();
-        for (int i = 0; i < minRows.size(); i++) {
-            indexes.add(i);
-        }
-        Collections.sort(indexes, Comparator.comparing(minRows::get));
-        ArrayList<ArrayList<Integer>[]> resOrdered = new ArrayList<>();
-        for (int index : indexes) {
-            resOrdered.add(res.get(index));
+        // Transpose the columns, so that the rows of each bicluster can be added word by word
+        BitMatrix matrix = scratch.matrix;
+        matrix.load(binaryVariables, 1);
+
+        // Extract biclusters, each one made of the rows between two consecutive cuts
+        BinarySet cuts = binaryVariables.get(0);
+        int numBiclusters = 0;
+        int start = 0;
+        while (start < super.numRows) {
+            int end = BitMatrix.segmentEnd(cuts, start, super.numRows);
+
+            // A column belongs to the bicluster if it is set for more than half of its rows
+            matrix.countSegment(permutation, start, end);
+            int numCols = matrix.getMajorityColumns(scratch.cols);
+
+            // Create the bicluster and its sort key
+            int[] rows = Arrays.copyOfRange(permutation, start, end + 1);
+            Arrays.sort(rows);
+            scratch.biclusters[numBiclusters] = Bicluster.wrap(rows, Arrays.copyOf(scratch.cols, numCols));
+            scratch.keys[numBiclusters] = ((long) rows[0] << 32) | numBiclusters;
+            numBiclusters++;
+            start = end + 1;
         }
 
-        // Clean unused variables
-        res = null;
+        // Sort biclusters depending on the smallest row
+        Arrays.sort(scratch.keys, 0, numBiclusters);
+        List<Bicluster> res = new ArrayList<>(numBiclusters);
+        for (int b = 0; b < numBiclusters; b++) {
+            int index = (int) scratch.keys[b];
+            res.add(scratch.biclusters[index]);
+            scratch.biclusters[index] = null;
+        }
 
         // Merge biclusters with same columns
         // TODO: Hacer esto en fase de reparacion / busqueda local
         //mergeBiclustersSameColumns(resOrdered, solution);
 
-        return resOrdered;
+        return res;
     }
 
     @Override
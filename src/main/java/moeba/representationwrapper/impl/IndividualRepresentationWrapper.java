@@ -1,8 +1,10 @@
 package moeba.representationwrapper.impl;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import moeba.bicluster.Bicluster;
 import moeba.operator.crossover.individual.IndividualCrossover;
 import moeba.operator.crossover.individual.rowcolbinary.RowColBinaryCrossover;
 import moeba.operator.crossover.individual.rowcolbinary.impl.RowColUniformCrossover;
@@ -58,39 +60,24 @@ public class IndividualRepresentationWrapper extends RepresentationWrapper {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public ArrayList<ArrayList<Integer>[]> getBiclustersFromRepresentation(CompositeSolution solution) {
-        // Initialize the result list
-        ArrayList<ArrayList<Integer>[]> res = new ArrayList<>();
-        
+    public List<Bicluster> decodeBiclusters(CompositeSolution solution) {
         // Extract binary variable from the composite solution
         BinarySet bs = ((BinarySolution) solution.variables().get(1)).variables().get(0);
-        
-        // Initialize bicluster, rows and cols
-        ArrayList<Integer>[] bicluster = new ArrayList[2];
-        ArrayList<Integer> rows = new ArrayList<>();
-        ArrayList<Integer> cols = new ArrayList<>();
 
-        // Iterate over rows and add them to the bicluster if they are set to true
-        for (int i = 0; i < super.numRows; i++) {
-            if (bs.get(i)) {
-                rows.add(i);
-            }
-        }
-        
-        // Iterate over columns and add them to the bicluster if they are set to true
-        for (int i = 0; i < super.numColumns; i++) {
-            if (bs.get(i + super.numRows)) {
-                cols.add(i);
+        // Rows are the set bits before numRows and columns the set bits after it
+        int[] rows = new int[bs.get(0, super.numRows).cardinality()];
+        int[] cols = new int[bs.get(super.numRows, super.numRows + super.numColumns).cardinality()];
+        int numRows = 0;
+        int numCols = 0;
+        for (int i = bs.nextSetBit(0); i >= 0 && i < super.numRows + super.numColumns; i = bs.nextSetBit(i + 1)) {
+            if (i < super.numRows) {
+                rows[numRows++] = i;
+            } else {
+                cols[numCols++] = i - super.numRows;
             }
         }
 
-        // Add rows and cols to the bicluster and add it to the result list
-        bicluster[0] = rows;
-        bicluster[1] = cols;
-        res.add(bicluster);
-        
-        return res;
+        return Collections.singletonList(Bicluster.wrap(rows, cols));
     }
 
     @Override
@@ -1,8 +1,9 @@
 package moeba.representationwrapper.impl;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import moeba.bicluster.Bicluster;
 import moeba.representationwrapper.RepresentationWrapper;
 import org.uma.jmetal.operator.crossover.CrossoverOperator;
 import org.uma.jmetal.operator.mutation.MutationOperator;
@@ -58,9 +59,9 @@ public class SpecificRepresentationWrapper extends RepresentationWrapper {
     }
 
     @Override
-    public ArrayList<ArrayList<Integer>[]> getBiclustersFromRepresentation(CompositeSolution solution) {
+    public List<Bicluster> decodeBiclusters(CompositeSolution solution) {
         // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'getBiclustersFromRepresentation'");
+        throw new UnsupportedOperationException("Unimplemented method 'decodeBiclusters'");
     }
 
     @Override
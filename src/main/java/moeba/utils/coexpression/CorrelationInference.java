@@ -0,0 +1,151 @@
+package moeba.utils.coexpression;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import moeba.utils.dataset.DataMatrix;
+
+/**
+ * Infers gene regulatory networks in process from the Pearson correlation between the
+ * expression profiles of the genes. Each gene keeps as regulators the genes whose profiles
+ * are most correlated with its own, in absolute value, which becomes the confidence of the
+ * interaction. Targets are processed in parallel.
+ * <p>
+ * Profiles are centered and scaled to unit norm once, so that every correlation is a dot
+ * product. Genes with constant expression are not correlated with any other.
+ */
+public class CorrelationInference implements NetworkInference {
+    private final int maxRegulators;
+    private final int numThreads;
+
+    /**
+     * Constructor that sets the size of the network and the parallelism of the inference.
+     *
+     * @param maxRegulators Maximum number of regulators kept for each gene.
+     * @param numThreads Number of threads.
+     */
+    public CorrelationInference(int maxRegulators, int numThreads) {
+        if (maxRegulators < 1) throw new IllegalArgumentException("The maximum number of regulators must be positive");
+        if (numThreads < 1) throw new IllegalArgumentException("The number of threads must be positive");
+        this.maxRegulators = maxRegulators;
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public String getName() {
+        return "correlation-top" + maxRegulators;
+    }
+
+    @Override
+    public GeneRegulatoryNetwork infer(DataMatrix geneExpressionData) {
+        long startTime = System.currentTimeMillis();
+        int numGenes = geneExpressionData.getNumRows();
+        int numSamples = geneExpressionData.getNumCols();
+        double[] profiles = normalizeProfiles(geneExpressionData);
+
+        // Regulators of gene t are stored at [t * width, (t + 1) * width), strongest first. No gene
+        // has more regulators than there are other genes
+        int width = Math.max(1, Math.min(maxRegulators, numGenes - 1));
+        long size = (long) numGenes * width;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many regulators for " + numGenes + " genes: " + maxRegulators);
+        }
+        int[] regulators = new int[(int) size];
+        float[] confidences = new float[(int) size];
+        int[] numRegulators = new int[numGenes];
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            pool.submit(() -> IntStream.range(0, numGenes).parallel().forEach(target ->
+                numRegulators[target] = findRegulators(profiles, numGenes, numSamples, target, width, regulators, confidences)
+            )).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        int numEdges = 0;
+        for (int count : numRegulators) numEdges += count;
+        int[] edgeSources = new int[numEdges];
+        int[] edgeTargets = new int[numEdges];
+        float[] edgeConfidences = new float[numEdges];
+        int e = 0;
+        for (int target = 0; target < numGenes; target++) {
+            for (int k = 0; k < numRegulators[target]; k++) {
+                edgeSources[e] = regulators[target * width + k];
+                edgeTargets[e] = target;
+                edgeConfidences[e++] = confidences[target * width + k];
+            }
+        }
+        System.out.println("Inference time: " + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+        return new GeneRegulatoryNetwork(numGenes, edgeSources, edgeTargets, edgeConfidences);
+    }
+
+    /**
+     * Centers the profile of every gene and scales it to unit norm, or to zero if it is constant.
+     *
+     * @param data The gene expression data.
+     * @return The profiles, one after another.
+     */
+    private static double[] normalizeProfiles(DataMatrix data) {
+        int numSamples = data.getNumCols();
+        double[] profiles = new double[data.getNumRows() * numSamples];
+        for (int i = 0; i < data.getNumRows(); i++) {
+            int offset = i * numSamples;
+            double mean = 0;
+            for (int j = 0; j < numSamples; j++) {
+                profiles[offset + j] = data.get(i, j);
+                mean += profiles[offset + j];
+            }
+            mean /= numSamples;
+            double norm = 0;
+            for (int j = 0; j < numSamples; j++) {
+                profiles[offset + j] -= mean;
+                norm += profiles[offset + j] * profiles[offset + j];
+            }
+            double scale = norm > 0 ? 1 / Math.sqrt(norm) : 0;
+            for (int j = 0; j < numSamples; j++) {
+                profiles[offset + j] *= scale;
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Finds the genes most correlated with a target, keeping them sorted by decreasing absolute
+     * correlation. On ties, the gene with the lowest index comes first.
+     *
+     * @param width Number of regulators kept for each gene.
+     * @return The number of regulators found.
+     */
+    private static int findRegulators(double[] profiles, int numGenes, int numSamples, int target, int width, int[] regulators, float[] confidences) {
+        int base = target * width;
+        int targetOffset = target * numSamples;
+        int count = 0;
+        for (int gene = 0; gene < numGenes; gene++) {
+            if (gene == target) continue;
+            int offset = gene * numSamples;
+            double dot = 0;
+            for (int j = 0; j < numSamples; j++) {
+                dot += profiles[offset + j] * profiles[targetOffset + j];
+            }
+            float confidence = (float) Math.min(1.0, Math.abs(dot));
+            if (confidence == 0 || (count == width && confidence <= confidences[base + count - 1])) continue;
+
+            // Insert it in its place, dropping the weakest regulator when full
+            int k = count < width ? count++ : count - 1;
+            while (k > 0 && confidences[base + k - 1] < confidence) {
+                confidences[base + k] = confidences[base + k - 1];
+                regulators[base + k] = regulators[base + k - 1];
+                k--;
+            }
+            confidences[base + k] = confidence;
+            regulators[base + k] = gene;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,192 @@
+package moeba.utils.coexpression;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.WaitContainerResultCallback;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.PullResponseItem;
+import com.github.dockerjava.api.model.Volume;
+import com.github.dockerjava.core.DockerClientBuilder;
+
+import moeba.utils.dataset.DataMatrix;
+
+/**
+ * Infers gene regulatory networks with the GENIE3 algorithm (extra trees variant) within a
+ * Docker container. The expression data is written to a CSV file in a temporary directory
+ * mounted in the container, which writes back the ranked interactions as another CSV file.
+ */
+public class DockerGenie3Inference implements NetworkInference {
+    private static final String IMAGE_NAME = "adriansegura99/geneci_infer-network_genie3:2.0.0";
+
+    @Override
+    public String getName() {
+        // Identifies the networks inferred by the image in the network cache
+        return "genie3-et-2.0.0";
+    }
+
+    /**
+     * Runs the inference in a new container, which is removed afterwards.
+     * 
+     * @param geneExpressionData A matrix where each row corresponds to the expression
+     *                           levels of a gene and each column represents a sample or condition.
+     * @return The inferred network.
+     */
+    @Override
+    public GeneRegulatoryNetwork infer(DataMatrix geneExpressionData) {
+        Path tempDir = null;
+
+        // Create a temporary directory for storing input/output files
+        try {
+            tempDir = Files.createTempDirectory("docker-temp");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // Define input and output file paths
+        Path inputFilePath = tempDir.resolve("input.csv");
+        Path outputFilePath = tempDir.resolve("GRN_GENIE3_ET.csv");
+
+        // Write the gene expression data to a CSV file
+        writeExpressionDataToFile(geneExpressionData, inputFilePath.toFile());
+
+        // Set up Docker client and infer the gene regulatory network using GENIE3
+        DockerClient dockerClient = DockerClientBuilder.getInstance().build();
+        long startTime = System.currentTimeMillis();
+        String containerId = runNetworkInference(dockerClient, IMAGE_NAME, tempDir, inputFilePath);
+        long endTime = System.currentTimeMillis();
+        double duration = (endTime - startTime) / 1000.0;
+        System.out.println("Inference time: " + duration + " s");
+
+        // Read the output CSV file into an edge list
+        int numEdges = 0;
+        int[] sources = new int[16];
+        int[] targets = new int[16];
+        float[] confidences = new float[16];
+        if (Files.exists(outputFilePath)) {
+            try (BufferedReader br = new BufferedReader(new FileReader(outputFilePath.toFile()))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] values = line.split(",");
+                    if (values.length == 3) {
+                        if (numEdges == sources.length) {
+                            sources = Arrays.copyOf(sources, 2 * numEdges);
+                            targets = Arrays.copyOf(targets, 2 * numEdges);
+                            confidences = Arrays.copyOf(confidences, 2 * numEdges);
+                        }
+                        sources[numEdges] = Integer.parseInt(values[0].substring(1)); // Extract source gene ID
+                        targets[numEdges] = Integer.parseInt(values[1].substring(1)); // Extract target gene ID
+                        confidences[numEdges] = Float.parseFloat(values[2]);          // Extract confidence value
+                        numEdges++;
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else {
+            System.out.println("Output file not found.");
+        }
+        GeneRegulatoryNetwork network = new GeneRegulatoryNetwork(geneExpressionData.getNumRows(),
+                Arrays.copyOf(sources, numEdges), Arrays.copyOf(targets, numEdges), Arrays.copyOf(confidences, numEdges));
+
+        // Remove Docker container after inference is completed
+        dockerClient.removeContainerCmd(containerId).exec();
+
+        // Clean up temporary files and directories
+        try {
+            Files.deleteIfExists(inputFilePath);
+            Files.deleteIfExists(outputFilePath);
+            Files.deleteIfExists(tempDir);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return network;
+    }
+
+    /**
+     * Writes the gene expression data to a CSV file for input into the Docker container.
+     * 
+     * @param geneExpressionData Matrix with gene expression data.
+     * @param file File object representing the CSV file to write to.
+     */
+    private void writeExpressionDataToFile(DataMatrix geneExpressionData, File file) {
+        try (FileWriter writer = new FileWriter(file)) {
+            for (int i = 0; i < geneExpressionData.getNumCols(); i++) {
+                writer.write("C" + i); // Write column headers for conditions
+                if (i < geneExpressionData.getNumCols() - 1) {
+                    writer.write(",");
+                }
+            }
+            writer.write("\n");
+
+            for (int i = 0; i < geneExpressionData.getNumRows(); i++) {
+                writer.write("G" + i + ","); // Write row headers for genes
+                for (int j = 0; j < geneExpressionData.getNumCols(); j++) {
+                    writer.write(String.valueOf(geneExpressionData.get(i, j)));
+                    if (j < geneExpressionData.getNumCols() - 1) {
+                        writer.write(",");
+                    }
+                }
+                writer.write("\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Executes the GENIE3 algorithm in a Docker container to infer the gene regulatory network.
+     * 
+     * @param dockerClient The Docker client object for interacting with Docker.
+     * @param imageName The name of the Docker image to use for inference.
+     * @param tempDir Path to the temporary directory used for input/output files.
+     * @param inputFilePath Path to the input CSV file containing gene expression data.
+     * @return The ID of the Docker container running the inference.
+     */
+    private String runNetworkInference(DockerClient dockerClient, String imageName, Path tempDir, Path inputFilePath) {
+
+        // Check if the Docker image is available locally, if not, pull it
+        try {
+            dockerClient.inspectImageCmd(imageName).exec();
+        } catch (NotFoundException e) {
+            try {
+                dockerClient.pullImageCmd(imageName).exec(new ResultCallback.Adapter<PullResponseItem>() {}).awaitCompletion();
+            } catch (InterruptedException e1) {
+                e1.printStackTrace();
+            }
+        }
+
+        // Create the Docker container for network inference
+        CreateContainerResponse container = dockerClient.createContainerCmd(imageName)
+                .withHostConfig(new HostConfig()
+                        .withBinds(
+                                new Bind(tempDir.toString(), new Volume("/usr/local/src/inferred_networks"))
+                        ))
+                .withCmd("inferred_networks/" + inputFilePath.getFileName().toString(), "inferred_networks", "ET")
+                .exec();
+
+        // Start the container
+        dockerClient.startContainerCmd(container.getId()).exec();
+
+        // Wait for the container to finish processing
+        try {
+            dockerClient.waitContainerCmd(container.getId()).exec(new WaitContainerResultCallback()).awaitCompletion();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        return container.getId();
+    }
+}
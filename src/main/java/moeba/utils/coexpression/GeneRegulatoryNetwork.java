@@ -1,185 +1,93 @@
 package moeba.utils.coexpression;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
-
-import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.async.ResultCallback;
-import com.github.dockerjava.api.command.CreateContainerResponse;
-import com.github.dockerjava.api.command.WaitContainerResultCallback;
-import com.github.dockerjava.api.exception.NotFoundException;
-import com.github.dockerjava.api.model.Bind;
-import com.github.dockerjava.api.model.HostConfig;
-import com.github.dockerjava.api.model.PullResponseItem;
-import com.github.dockerjava.api.model.Volume;
-import com.github.dockerjava.core.DockerClientBuilder;
+import java.util.Arrays;
 
 /**
- * The GeneRegulatoryNetwork class is responsible for inferring a gene regulatory network
- * using the GENIE3 algorithm within a Docker container. It processes gene expression data,
- * infers the network, and calculates network properties such as adjacency matrix, 
- * in-degrees, out-degrees, and total weight of the regulatory interactions.
+ * The GeneRegulatoryNetwork class holds a gene regulatory network inferred by a
+ * {@link NetworkInference} from gene expression data, and calculates network properties such as
+ * adjacency, in-degrees, out-degrees, and total weight of the regulatory interactions.
+ * <p>
+ * The adjacency is stored in compressed sparse row (CSR) form: the out-edges of every gene are
+ * contiguous and sorted by target, so memory grows with the number of interactions instead of
+ * the square of the number of genes.
  */
 public class GeneRegulatoryNetwork {
 
-    private float[][] adjRegMatrix; // Adjacency matrix representing the gene regulatory network
-    private float[] inDegrees;      // Array representing the in-degree of each gene
-    private float[] outDegrees;     // Array representing the out-degree of each gene
-    private float totalWeight;      // Total weight of the regulatory interactions in the network
+    private float[] inDegrees;       // Array representing the in-degree of each gene
+    private float[] outDegrees;      // Array representing the out-degree of each gene
+    private float totalWeight;       // Total weight of the regulatory interactions in the network
+    private int[] edgeOffsets;       // Out-edges of gene i are at positions [edgeOffsets[i], edgeOffsets[i + 1])
+    private int[] edgeTargets;       // Target gene of each out-edge, ascending within each gene
+    private float[] edgeConfidences; // Confidence of each out-edge
 
     /**
-     * Constructor that initiates the process of inferring the gene regulatory network.
-     * 
-     * @param geneExpressionData A 2D double array where each row corresponds to the expression
-     *                           levels of a gene and each column represents a sample or condition.
+     * Constructor that builds the network from a list of weighted regulatory interactions,
+     * without running any inference.
+     *
+     * @param numNodes Number of genes.
+     * @param sources Source gene of each interaction.
+     * @param targets Target gene of each interaction.
+     * @param confidences Confidence of each interaction.
      */
-    public GeneRegulatoryNetwork(double[][] geneExpressionData) {
-        // Initialize Docker image information and create temporary directories for I/O
-        String imageName = "adriansegura99/geneci_infer-network_genie3:2.0.0";
-        Path tempDir = null;
-
-        // Create a temporary directory for storing input/output files
-        try {
-            tempDir = Files.createTempDirectory("docker-temp");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        // Define input and output file paths
-        Path inputFilePath = tempDir.resolve("input.csv");
-        Path outputFilePath = tempDir.resolve("GRN_GENIE3_ET.csv");
-
-        // Write the gene expression data to a CSV file
-        writeExpressionDataToFile(geneExpressionData, inputFilePath.toFile());
-
-        // Set up Docker client and infer the gene regulatory network using GENIE3
-        DockerClient dockerClient = DockerClientBuilder.getInstance().build();
-        long startTime = System.currentTimeMillis();
-        String containerId = runNetworkInference(dockerClient, imageName, tempDir, inputFilePath);
-        long endTime = System.currentTimeMillis();
-        double duration = (endTime - startTime) / 1000.0;
-        System.out.println("Inference time: " + duration + " s");
-
-        // Initialize adjacency matrix and degree arrays
-        this.adjRegMatrix = new float[geneExpressionData.length][geneExpressionData.length];
-        this.inDegrees = new float[geneExpressionData.length];
-        this.outDegrees = new float[geneExpressionData.length];
-        this.totalWeight = 0;
-
-        // Read the output CSV file and build the adjacency matrix
-        if (Files.exists(outputFilePath)) {
-            try (BufferedReader br = new BufferedReader(new FileReader(outputFilePath.toFile()))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] values = line.split(",");
-                    if (values.length == 3) {
-                        int source = Integer.parseInt(values[0].substring(1)); // Extract source gene ID
-                        int target = Integer.parseInt(values[1].substring(1)); // Extract target gene ID
-                        Float confidence = Float.parseFloat(values[2]);        // Extract confidence value
-                        this.adjRegMatrix[source][target] = confidence;
-                        this.outDegrees[source] += confidence;
-                        this.inDegrees[target] += confidence;
-                        this.totalWeight += confidence;
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        } else {
-            System.out.println("Output file not found.");
-        }
-
-        // Remove Docker container after inference is completed
-        dockerClient.removeContainerCmd(containerId).exec();
-
-        // Clean up temporary files and directories
-        try {
-            Files.deleteIfExists(inputFilePath);
-            Files.deleteIfExists(outputFilePath);
-            Files.deleteIfExists(tempDir);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public GeneRegulatoryNetwork(int numNodes, int[] sources, int[] targets, float[] confidences) {
+        if (sources.length != targets.length || sources.length != confidences.length) {
+            throw new IllegalArgumentException("Sources, targets and confidences must have the same length");
         }
+        buildNetwork(numNodes, sources, targets, confidences, sources.length);
     }
 
     /**
-     * Writes the gene expression data to a CSV file for input into the Docker container.
-     * 
-     * @param geneExpressionData 2D double array with gene expression data.
-     * @param file File object representing the CSV file to write to.
+     * Constructor that takes an already built network, as stored by {@link NetworkCache}.
      */
-    private void writeExpressionDataToFile(double[][] geneExpressionData, File file) {
-        try (FileWriter writer = new FileWriter(file)) {
-            for (int i = 0; i < geneExpressionData[0].length; i++) {
-                writer.write("C" + i); // Write column headers for conditions
-                if (i < geneExpressionData[0].length - 1) {
-                    writer.write(",");
-                }
-            }
-            writer.write("\n");
-
-            for (int i = 0; i < geneExpressionData.length; i++) {
-                writer.write("G" + i + ","); // Write row headers for genes
-                for (int j = 0; j < geneExpressionData[i].length; j++) {
-                    writer.write(String.valueOf(geneExpressionData[i][j]));
-                    if (j < geneExpressionData[i].length - 1) {
-                        writer.write(",");
-                    }
-                }
-                writer.write("\n");
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    GeneRegulatoryNetwork(int[] edgeOffsets, int[] edgeTargets, float[] edgeConfidences, float[] inDegrees, float[] outDegrees, float totalWeight) {
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+        this.edgeConfidences = edgeConfidences;
+        this.inDegrees = inDegrees;
+        this.outDegrees = outDegrees;
+        this.totalWeight = totalWeight;
     }
 
     /**
-     * Executes the GENIE3 algorithm in a Docker container to infer the gene regulatory network.
-     * 
-     * @param dockerClient The Docker client object for interacting with Docker.
-     * @param imageName The name of the Docker image to use for inference.
-     * @param tempDir Path to the temporary directory used for input/output files.
-     * @param inputFilePath Path to the input CSV file containing gene expression data.
-     * @return The ID of the Docker container running the inference.
+     * Builds the degrees and the out-edges of each gene from an edge list.
+     *
+     * @param numNodes Number of genes.
+     * @param sources Source gene of each interaction.
+     * @param targets Target gene of each interaction.
+     * @param confidences Confidence of each interaction.
+     * @param numEdges Number of interactions, which may be less than the length of the arrays.
      */
-    private String runNetworkInference(DockerClient dockerClient, String imageName, Path tempDir, Path inputFilePath) {
-
-        // Check if the Docker image is available locally, if not, pull it
-        try {
-            dockerClient.inspectImageCmd(imageName).exec();
-        } catch (NotFoundException e) {
-            try {
-                dockerClient.pullImageCmd(imageName).exec(new ResultCallback.Adapter<PullResponseItem>() {}).awaitCompletion();
-            } catch (InterruptedException e1) {
-                e1.printStackTrace();
-            }
+    private void buildNetwork(int numNodes, int[] sources, int[] targets, float[] confidences, int numEdges) {
+        this.inDegrees = new float[numNodes];
+        this.outDegrees = new float[numNodes];
+        this.totalWeight = 0;
+        this.edgeOffsets = new int[numNodes + 1];
+        for (int e = 0; e < numEdges; e++) {
+            this.outDegrees[sources[e]] += confidences[e];
+            this.inDegrees[targets[e]] += confidences[e];
+            this.totalWeight += confidences[e];
+            this.edgeOffsets[sources[e] + 1]++;
         }
 
-        // Create the Docker container for network inference
-        CreateContainerResponse container = dockerClient.createContainerCmd(imageName)
-                .withHostConfig(new HostConfig()
-                        .withBinds(
-                                new Bind(tempDir.toString(), new Volume("/usr/local/src/inferred_networks"))
-                        ))
-                .withCmd("inferred_networks/" + inputFilePath.getFileName().toString(), "inferred_networks", "ET")
-                .exec();
-
-        // Start the container
-        dockerClient.startContainerCmd(container.getId()).exec();
-
-        // Wait for the container to finish processing
-        try {
-            dockerClient.waitContainerCmd(container.getId()).exec(new WaitContainerResultCallback()).awaitCompletion();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        // Group the edges by source gene, each packed with its target in the high half so that
+        // sorting them orders the out-edges of every gene by target
+        for (int i = 0; i < numNodes; i++) {
+            this.edgeOffsets[i + 1] += this.edgeOffsets[i];
+        }
+        long[] edges = new long[numEdges];
+        int[] next = Arrays.copyOf(this.edgeOffsets, numNodes);
+        for (int e = 0; e < numEdges; e++) {
+            edges[next[sources[e]]++] = ((long) targets[e] << 32) | (Float.floatToRawIntBits(confidences[e]) & 0xFFFFFFFFL);
+        }
+        this.edgeTargets = new int[numEdges];
+        this.edgeConfidences = new float[numEdges];
+        for (int i = 0; i < numNodes; i++) {
+            Arrays.sort(edges, this.edgeOffsets[i], this.edgeOffsets[i + 1]);
+        }
+        for (int k = 0; k < numEdges; k++) {
+            this.edgeTargets[k] = (int) (edges[k] >>> 32);
+            this.edgeConfidences[k] = Float.intBitsToFloat((int) edges[k]);
         }
-
-        return container.getId();
     }
 
     /**
@@ -190,7 +98,59 @@ public class GeneRegulatoryNetwork {
      * @return The confidence score for the regulatory interaction.
      */
     public float getConfidence(int source, int target) {
-        return this.adjRegMatrix[source][target];
+        int edge = Arrays.binarySearch(this.edgeTargets, this.edgeOffsets[source], this.edgeOffsets[source + 1], target);
+        return edge < 0 ? 0 : this.edgeConfidences[edge];
+    }
+
+    /**
+     * Gets the position of the first out-edge of a gene. Its out-edges are the positions from
+     * this one to the first out-edge of the next gene, excluded.
+     * 
+     * @param node Index of the gene, or the number of nodes to get the total number of edges.
+     * @return The position of its first out-edge.
+     */
+    public int getFirstOutEdge(int node) {
+        return this.edgeOffsets[node];
+    }
+
+    /**
+     * Gets the target gene of an out-edge.
+     * 
+     * @param edge Position of the edge.
+     * @return Index of the target gene.
+     */
+    public int getEdgeTarget(int edge) {
+        return this.edgeTargets[edge];
+    }
+
+    /**
+     * Gets the confidence value of an out-edge.
+     * 
+     * @param edge Position of the edge.
+     * @return The confidence score of the edge.
+     */
+    public float getEdgeConfidence(int edge) {
+        return this.edgeConfidences[edge];
+    }
+
+    int[] getEdgeOffsets() {
+        return this.edgeOffsets;
+    }
+
+    int[] getEdgeTargets() {
+        return this.edgeTargets;
+    }
+
+    float[] getEdgeConfidences() {
+        return this.edgeConfidences;
+    }
+
+    float[] getInDegrees() {
+        return this.inDegrees;
+    }
+
+    float[] getOutDegrees() {
+        return this.outDegrees;
     }
 
     /**
@@ -228,6 +188,6 @@ public class GeneRegulatoryNetwork {
      * @return The number of nodes in the network.
      */
     public int getNumNodes() {
-        return this.adjRegMatrix.length;
+        return this.inDegrees.length;
     }
 }
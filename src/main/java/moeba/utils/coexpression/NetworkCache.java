@@ -0,0 +1,206 @@
+package moeba.utils.coexpression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import moeba.utils.dataset.DataMatrix;
+
+/**
+ * Persistent cache of inferred gene regulatory networks, so that repeated runs on the same
+ * dataset do not infer the network again. Entries are addressed by their content: the file
+ * name holds the inference method and the SHA-256 of the dimensions and values of the
+ * expression matrix.
+ * <p>
+ * Networks are stored in a little-endian binary file that is memory-mapped to be loaded:
+ * a header with a magic number, the format version, the number of genes and of edges and the
+ * total weight, followed by the CSR offsets, targets and confidences and the out-degrees and
+ * in-degrees of the genes. Files are written to a temporary file first and then moved into
+ * place, so concurrent runs never read a partial entry.
+ */
+public class NetworkCache {
+    public static final String DIRECTORY_PROPERTY = "moeba.networkCacheDir";
+
+    private static final int MAGIC = 0x4E52474D; // "MGRN" in little-endian order
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private final Path directory;
+
+    /**
+     * Constructor that stores networks in a directory, created when the first one is saved.
+     *
+     * @param directory The directory of the cache.
+     */
+    public NetworkCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache in the directory given by the {@value #DIRECTORY_PROPERTY} system
+     * property, or in {@code .moeba/networks} under the user home if it is not set.
+     *
+     * @return The cache, or null if the property is set to "none".
+     */
+    public static NetworkCache getDefault() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null) return new NetworkCache(Paths.get(System.getProperty("user.home"), ".moeba", "networks"));
+        if (directory.equalsIgnoreCase("none")) return null;
+        return new NetworkCache(Paths.get(directory));
+    }
+
+    /**
+     * Returns the network cached for an expression matrix and inference method, inferring and
+     * caching it if there is none. Errors reading or writing the cache are reported and the
+     * network is inferred as if there were no cache.
+     *
+     * @param data The gene expression matrix, with one row per gene.
+     * @param inference The inference method, run on a cache miss.
+     * @return The network.
+     */
+    public GeneRegulatoryNetwork getOrInfer(DataMatrix data, NetworkInference inference) {
+        Path path = getPath(data, inference.getName());
+        if (Files.exists(path)) {
+            try {
+                long startTime = System.currentTimeMillis();
+                GeneRegulatoryNetwork network = load(path);
+                if (network.getNumNodes() == data.getNumRows()) {
+                    System.out.println("Network loaded from cache in " + (System.currentTimeMillis() - startTime) + " ms: " + path);
+                    return network;
+                }
+                System.out.println("Warning: cached network " + path + " does not match the dataset. Inferring it again");
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Warning: could not load cached network " + path + ": " + e.getMessage() + ". Inferring it again");
+            }
+        }
+
+        GeneRegulatoryNetwork network = inference.infer(data);
+        if (network.getFirstOutEdge(network.getNumNodes()) == 0) {
+            // Most likely a failed inference, which must not outlive this run
+            System.out.println("Warning: the inferred network has no edges and is not cached");
+            return network;
+        }
+        try {
+            save(network, path);
+        } catch (IOException e) {
+            System.out.println("Warning: could not cache network in " + path + ": " + e.getMessage());
+        }
+        return network;
+    }
+
+    /**
+     * Returns the file of the network of an expression matrix and inference method.
+     *
+     * @param data The gene expression matrix.
+     * @param inference Identifier of the inference method.
+     * @return The path of the file, which may not exist.
+     */
+    public Path getPath(DataMatrix data, String inference) {
+        return directory.resolve(inference.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + hash(data) + ".grn");
+    }
+
+    /**
+     * Computes the SHA-256 of the dimensions and values of a matrix, as
+     * {@link DataMatrix#sha256(DataMatrix)} does.
+     *
+     * @param data The matrix.
+     * @return The hash as a hexadecimal string.
+     */
+    public static String hash(DataMatrix data) {
+        return DataMatrix.sha256(data);
+    }
+
+    /**
+     * Loads a network by memory-mapping its file.
+     *
+     * @param path The file.
+     * @return The network.
+     * @throws IOException If the file cannot be read or is not a valid network file.
+     */
+    public static GeneRegulatoryNetwork load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) throw new IOException("Truncated network file");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a network file");
+            if (buffer.getInt() != VERSION) throw new IOException("Unsupported network file version");
+            int numNodes = buffer.getInt();
+            int numEdges = buffer.getInt();
+            float totalWeight = buffer.getFloat();
+            buffer.getInt();
+            if (numNodes < 0 || numEdges < 0 || size != getFileSize(numNodes, numEdges)) {
+                throw new IOException("Truncated network file");
+            }
+
+            int[] offsets = new int[numNodes + 1];
+            int[] targets = new int[numEdges];
+            float[] confidences = new float[numEdges];
+            float[] outDegrees = new float[numNodes];
+            float[] inDegrees = new float[numNodes];
+            buffer.asIntBuffer().get(offsets);
+            buffer.position(buffer.position() + 4 * offsets.length);
+            buffer.asIntBuffer().get(targets);
+            buffer.position(buffer.position() + 4 * numEdges);
+            buffer.asFloatBuffer().get(confidences);
+            buffer.position(buffer.position() + 4 * numEdges);
+            buffer.asFloatBuffer().get(outDegrees);
+            buffer.position(buffer.position() + 4 * numNodes);
+            buffer.asFloatBuffer().get(inDegrees);
+            return new GeneRegulatoryNetwork(offsets, targets, confidences, inDegrees, outDegrees, totalWeight);
+        }
+    }
+
+    /**
+     * Saves a network, replacing the file atomically.
+     *
+     * @param network The network.
+     * @param path The file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(GeneRegulatoryNetwork network, Path path) throws IOException {
+        int numNodes = network.getNumNodes();
+        int numEdges = network.getFirstOutEdge(numNodes);
+        long size = getFileSize(numNodes, numEdges);
+        if (size > Integer.MAX_VALUE) throw new IOException("Network too large to be cached: " + numEdges + " edges");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(numNodes).putInt(numEdges).putFloat(network.getTotalWeight()).putInt(0);
+        buffer.asIntBuffer().put(network.getEdgeOffsets());
+        buffer.position(buffer.position() + 4 * (numNodes + 1));
+        buffer.asIntBuffer().put(network.getEdgeTargets());
+        buffer.position(buffer.position() + 4 * numEdges);
+        buffer.asFloatBuffer().put(network.getEdgeConfidences());
+        buffer.position(buffer.position() + 4 * numEdges);
+        buffer.asFloatBuffer().put(network.getOutDegrees());
+        buffer.position(buffer.position() + 4 * numNodes);
+        buffer.asFloatBuffer().put(network.getInDegrees());
+        buffer.rewind();
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long getFileSize(int numNodes, int numEdges) {
+        return HEADER_BYTES + 4L * (numNodes + 1) + 8L * numEdges + 8L * numNodes;
+    }
+}
@@ -0,0 +1,26 @@
+package moeba.utils.coexpression;
+
+import moeba.utils.dataset.DataMatrix;
+
+/**
+ * Method inferring a gene regulatory network from gene expression data, where each row of the
+ * data is a gene and each column a sample or condition.
+ */
+public interface NetworkInference {
+
+    /**
+     * Returns an identifier of the method and its parameters, which tells apart the networks
+     * it infers in the {@link NetworkCache}.
+     *
+     * @return The identifier
+     */
+    String getName();
+
+    /**
+     * Infers the network of the data.
+     *
+     * @param geneExpressionData The gene expression data
+     * @return The network, with one node per row of the data
+     */
+    GeneRegulatoryNetwork infer(DataMatrix geneExpressionData);
+}
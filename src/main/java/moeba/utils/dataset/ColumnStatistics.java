@@ -0,0 +1,35 @@
+package moeba.utils.dataset;
+
+/**
+ * Summary of the numeric values of a dataset column, recorded while the dataset is loaded.
+ */
+public class ColumnStatistics {
+    private final double min;
+    private final double max;
+    private final int cardinality;
+
+    /**
+     * Constructs the statistics of a column.
+     *
+     * @param min Minimum value, ignoring NaN (NaN if the column has no values)
+     * @param max Maximum value, ignoring NaN (NaN if the column has no values)
+     * @param cardinality Number of distinct values
+     */
+    public ColumnStatistics(double min, double max, int cardinality) {
+        this.min = min;
+        this.max = max;
+        this.cardinality = cardinality;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public int getCardinality() {
+        return cardinality;
+    }
+}
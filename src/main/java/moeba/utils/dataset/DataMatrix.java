@@ -0,0 +1,140 @@
+package moeba.utils.dataset;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import moeba.utils.dataset.impl.ColumnMajorDataMatrix;
+import moeba.utils.dataset.impl.FloatColumnMajorDataMatrix;
+import moeba.utils.dataset.impl.FloatRowMajorDataMatrix;
+import moeba.utils.dataset.impl.RowMajorDataMatrix;
+
+/**
+ * Read-only numeric matrix (rows x columns) on which fitness functions are evaluated.
+ * Implementations store values contiguously in row-major or column-major order, either
+ * as doubles or as floats when half the memory is preferred over full precision.
+ */
+public interface DataMatrix {
+
+    /**
+     * Order in which values are laid out in memory.
+     */
+    enum Layout {
+        ROW_MAJOR,
+        COLUMN_MAJOR
+    }
+
+    /**
+     * Writable matrix, used while the matrix is being built.
+     */
+    interface Writable extends DataMatrix {
+        void set(int row, int col, double value);
+    }
+
+    int getNumRows();
+
+    int getNumCols();
+
+    double get(int row, int col);
+
+    Layout getLayout();
+
+    boolean isFloatStorage();
+
+    /**
+     * Allocates an empty matrix.
+     *
+     * @param numRows Number of rows
+     * @param numCols Number of columns
+     * @param layout Memory layout
+     * @param floatStorage Whether values are stored as floats instead of doubles
+     * @return The new matrix
+     */
+    static Writable allocate(int numRows, int numCols, Layout layout, boolean floatStorage) {
+        if ((long) numRows * numCols > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Matrix too large for contiguous storage: " + numRows + "x" + numCols);
+        }
+        if (layout == Layout.ROW_MAJOR) {
+            return floatStorage ? new FloatRowMajorDataMatrix(numRows, numCols) : new RowMajorDataMatrix(numRows, numCols);
+        }
+        return floatStorage ? new FloatColumnMajorDataMatrix(numRows, numCols) : new ColumnMajorDataMatrix(numRows, numCols);
+    }
+
+    /**
+     * Copies a matrix into a new one with the given layout and storage.
+     *
+     * @param source The matrix to copy
+     * @param layout Memory layout of the copy
+     * @param floatStorage Whether values of the copy are stored as floats instead of doubles
+     * @return The copy
+     */
+    static DataMatrix copyOf(DataMatrix source, Layout layout, boolean floatStorage) {
+        Writable res = allocate(source.getNumRows(), source.getNumCols(), layout, floatStorage);
+        if (layout == Layout.COLUMN_MAJOR) {
+            for (int j = 0; j < source.getNumCols(); j++) {
+                for (int i = 0; i < source.getNumRows(); i++) {
+                    res.set(i, j, source.get(i, j));
+                }
+            }
+        } else {
+            for (int i = 0; i < source.getNumRows(); i++) {
+                for (int j = 0; j < source.getNumCols(); j++) {
+                    res.set(i, j, source.get(i, j));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Wraps a row-major array into a contiguous double matrix.
+     *
+     * @param data The array (rows x columns)
+     * @return A row-major matrix with a copy of the values
+     */
+    static DataMatrix of(double[][] data) {
+        Writable res = allocate(data.length, data.length == 0 ? 0 : data[0].length, Layout.ROW_MAJOR, false);
+        for (int i = 0; i < data.length; i++) {
+            for (int j = 0; j < data[i].length; j++) {
+                res.set(i, j, data[i][j]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Computes the SHA-256 of the dimensions and values of a matrix, whatever its layout. Values
+     * are hashed as stored, so a float copy of a matrix has a different hash.
+     *
+     * @param data The matrix
+     * @return The hash as a hexadecimal string
+     */
+    static String sha256(DataMatrix data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8 * Math.max(2, data.getNumCols()));
+        buffer.putInt(data.getNumRows()).putInt(data.getNumCols());
+        buffer.flip();
+        digest.update(buffer);
+        for (int i = 0; i < data.getNumRows(); i++) {
+            buffer.clear();
+            for (int j = 0; j < data.getNumCols(); j++) {
+                buffer.putDouble(data.get(i, j));
+            }
+            buffer.flip();
+            digest.update(buffer);
+        }
+        String digits = "0123456789abcdef";
+        byte[] bytes = digest.digest();
+        char[] res = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            res[2 * i] = digits.charAt((bytes[i] >> 4) & 0xF);
+            res[2 * i + 1] = digits.charAt(bytes[i] & 0xF);
+        }
+        return new String(res);
+    }
+}
@@ -0,0 +1,102 @@
+package moeba.utils.dataset;
+
+import moeba.utils.dataset.impl.MappedDataMatrix;
+
+/**
+ * Numeric view of an input dataset, as produced by {@link DatasetLoader}. Besides the
+ * primitive matrix it keeps the column names, the column types and the dictionaries used
+ * to encode categorical columns, so that numeric codes can be translated back to their
+ * original values, and the statistics of each column recorded while loading.
+ */
+public class Dataset {
+    private final String[] columnNames;
+    private final Class<?>[] types;
+    private final DataMatrix matrix;
+    private final String[][] dictionaries;
+    private final ColumnStatistics[] statistics;
+    private final long loadTime;
+    private final long peakHeapUsage;
+
+    /**
+     * Constructs a new dataset.
+     *
+     * @param columnNames The names of the columns in order
+     * @param types The type of each column
+     * @param matrix Numeric matrix. It must not be modified once the dataset is built
+     * @param dictionaries For each categorical column, the original value of each code (null for other columns)
+     * @param statistics Statistics of each column
+     * @param loadTime Time in milliseconds spent loading the dataset
+     * @param peakHeapUsage Peak heap usage in bytes observed while loading the dataset
+     */
+    public Dataset(String[] columnNames, Class<?>[] types, DataMatrix matrix, String[][] dictionaries, ColumnStatistics[] statistics, long loadTime, long peakHeapUsage) {
+        this.columnNames = columnNames;
+        this.types = types;
+        this.matrix = matrix;
+        this.dictionaries = dictionaries;
+        this.statistics = statistics;
+        this.loadTime = loadTime;
+        this.peakHeapUsage = peakHeapUsage;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public Class<?>[] getTypes() {
+        return types;
+    }
+
+    public DataMatrix getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * Returns a copy of the numeric matrix as a row-major array.
+     *
+     * @return The numeric matrix (rows x columns)
+     */
+    public double[][] getData() {
+        double[][] res = new double[getNumRows()][getNumCols()];
+        for (int i = 0; i < res.length; i++) {
+            for (int j = 0; j < res[i].length; j++) {
+                res[i][j] = matrix.get(i, j);
+            }
+        }
+        return res;
+    }
+
+    public boolean isMapped() {
+        return matrix instanceof MappedDataMatrix;
+    }
+
+    public int getNumRows() {
+        return matrix.getNumRows();
+    }
+
+    public int getNumCols() {
+        return columnNames.length;
+    }
+
+    /**
+     * Returns the dictionary of a categorical column, where position i holds the original
+     * value encoded as i.
+     *
+     * @param column The column index
+     * @return The dictionary of the column or null if the column is not categorical
+     */
+    public String[] getDictionary(int column) {
+        return dictionaries[column];
+    }
+
+    public ColumnStatistics getStatistics(int column) {
+        return statistics[column];
+    }
+
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    public long getPeakHeapUsage() {
+        return peakHeapUsage;
+    }
+}
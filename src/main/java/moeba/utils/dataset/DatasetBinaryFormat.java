@@ -0,0 +1,278 @@
+package moeba.utils.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import moeba.utils.dataset.impl.MappedDataMatrix;
+
+/**
+ * Binary dataset format (.moebabin). The file starts with a header holding the column
+ * names, the column types and the categorical dictionaries, followed by a column-major
+ * payload of little-endian doubles or floats aligned to 8 bytes:
+ *
+ * <pre>
+ * "MOEBABIN" | version (int) | numRows (int) | numCols (int) | float payload (byte)
+ * for each column: name (string) | type (string) | dictionary size (int, -1 if none) | values (strings)
+ *                  | min (double) | max (double) | cardinality (int)
+ * padding | payload (numCols x numRows values)
+ * </pre>
+ *
+ * Strings are stored as their UTF-8 length (int) followed by their bytes. The payload is
+ * mapped with FileChannel.map so values are read without copying them into the heap.
+ * Version 1 files, which do not store the column statistics, are still readable.
+ */
+public class DatasetBinaryFormat {
+
+    public static final String EXTENSION = ".moebabin";
+    private static final byte[] MAGIC = "MOEBABIN".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    private static final long MAX_BLOCK_SIZE = 1L << 30;
+    private static final int HEADER_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Returns the binary file that corresponds to a CSV dataset, which is the same path with
+     * the .csv extension replaced by .moebabin.
+     *
+     * @param inputDataset The input CSV file
+     * @return The binary file, which may not exist
+     */
+    public static File getBinaryFile(File inputDataset) {
+        String name = inputDataset.getName();
+        int dot = name.toLowerCase().endsWith(".csv") ? name.length() - 4 : name.length();
+        return new File(inputDataset.getParentFile(), name.substring(0, dot) + EXTENSION);
+    }
+
+    /**
+     * Writes a dataset in binary format.
+     *
+     * @param dataset The dataset to write
+     * @param outputFile The output binary file
+     * @param floatPayload Whether to store values as floats instead of doubles
+     * @throws IOException If there is an error writing the file
+     */
+    public static void write(Dataset dataset, File outputFile, boolean floatPayload) throws IOException {
+        int numRows = dataset.getNumRows();
+        int numCols = dataset.getNumCols();
+        DataMatrix matrix = dataset.getMatrix();
+
+        // Header
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.write(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(numRows);
+        header.writeInt(numCols);
+        header.writeByte(floatPayload ? 1 : 0);
+        for (int j = 0; j < numCols; j++) {
+            writeString(header, dataset.getColumnNames()[j]);
+            writeString(header, typeToString(dataset.getTypes()[j]));
+            String[] dictionary = dataset.getDictionary(j);
+            header.writeInt(dictionary == null ? -1 : dictionary.length);
+            if (dictionary != null) {
+                for (String value : dictionary) {
+                    writeString(header, value);
+                }
+            }
+            ColumnStatistics statistics = dataset.getStatistics(j);
+            header.writeDouble(statistics.getMin());
+            header.writeDouble(statistics.getMax());
+            header.writeInt(statistics.getCardinality());
+        }
+        while (header.size() % Double.BYTES != 0) {
+            header.writeByte(0);
+        }
+        header.flush();
+
+        // Payload
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 20)) {
+            headerBytes.writeTo(out);
+            ByteBuffer column = ByteBuffer.allocate(numRows * (floatPayload ? Float.BYTES : Double.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+            for (int j = 0; j < numCols; j++) {
+                column.clear();
+                for (int i = 0; i < numRows; i++) {
+                    if (floatPayload) {
+                        column.putFloat((float) matrix.get(i, j));
+                    } else {
+                        column.putDouble(matrix.get(i, j));
+                    }
+                }
+                out.write(column.array(), 0, column.position());
+            }
+        }
+    }
+
+    /**
+     * Maps a binary dataset into memory.
+     *
+     * @param inputFile The input binary file
+     * @return The dataset, backed by the mapped file
+     * @throws IOException If the file cannot be read or it is not a valid binary dataset
+     */
+    public static Dataset read(File inputFile) throws IOException {
+        long startTime = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            HeaderReader header = new HeaderReader(channel);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            int version = java.util.Arrays.equals(magic, MAGIC) ? header.getInt() : -1;
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Not a valid " + EXTENSION + " file: " + inputFile);
+            }
+            int numRows = header.getInt();
+            int numCols = header.getInt();
+            boolean floatPayload = header.get() == 1;
+            String[] columnNames = new String[numCols];
+            Class<?>[] types = new Class<?>[numCols];
+            String[][] dictionaries = new String[numCols][];
+            ColumnStatistics[] statistics = version >= 2 ? new ColumnStatistics[numCols] : null;
+            for (int j = 0; j < numCols; j++) {
+                columnNames[j] = readString(header);
+                types[j] = stringToType(readString(header));
+                int size = header.getInt();
+                if (size >= 0) {
+                    dictionaries[j] = new String[size];
+                    for (int k = 0; k < size; k++) {
+                        dictionaries[j][k] = readString(header);
+                    }
+                }
+                if (statistics != null) {
+                    statistics[j] = new ColumnStatistics(header.getDouble(), header.getDouble(), header.getInt());
+                }
+            }
+            long payloadStart = (header.getPosition() + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+
+            // Map the payload in blocks of whole columns, since a single mapping is limited to 2GB
+            long columnSize = (long) numRows * (floatPayload ? Float.BYTES : Double.BYTES);
+            if (payloadStart + columnSize * numCols > channel.size()) {
+                throw new IOException("Truncated " + EXTENSION + " file: " + inputFile);
+            }
+            int columnsPerBlock = (int) Math.max(1, Math.min(numCols, MAX_BLOCK_SIZE / Math.max(1, columnSize)));
+            ByteBuffer[] blocks = new ByteBuffer[(numCols + columnsPerBlock - 1) / columnsPerBlock];
+            for (int b = 0; b < blocks.length; b++) {
+                int blockCols = Math.min(columnsPerBlock, numCols - b * columnsPerBlock);
+                blocks[b] = channel.map(FileChannel.MapMode.READ_ONLY, payloadStart + b * columnsPerBlock * columnSize, blockCols * columnSize);
+            }
+            DataMatrix matrix = new MappedDataMatrix(blocks, columnsPerBlock, floatPayload, numRows, numCols);
+            if (statistics == null) {
+                statistics = DatasetLoader.computeStatistics(matrix, types, dictionaries, Runtime.getRuntime().availableProcessors());
+            }
+            return new Dataset(columnNames, types, matrix, dictionaries, statistics, System.currentTimeMillis() - startTime, 0);
+        }
+    }
+
+    /**
+     * Returns whether a binary file exists and is newer than the files it was built from.
+     *
+     * @param binaryFile The binary file
+     * @param sources The source files
+     * @return True if the binary file can be used instead of the sources
+     */
+    public static boolean isUpToDate(File binaryFile, File... sources) {
+        if (!binaryFile.isFile()) return false;
+        for (File source : sources) {
+            if (source != null && source.lastModified() > binaryFile.lastModified()) return false;
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(HeaderReader header) throws IOException {
+        int length = header.getInt();
+        if (length < 0) throw new IOException("Invalid string length in header: " + length);
+        byte[] bytes = new byte[length];
+        header.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String typeToString(Class<?> type) {
+        if (type == String.class) return "string";
+        if (type == Integer.class) return "int";
+        if (type == Double.class) return "double";
+        if (type == Float.class) return "float";
+        if (type == Boolean.class) return "boolean";
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    private static Class<?> stringToType(String type) {
+        switch (type) {
+            case "string": return String.class;
+            case "int": return Integer.class;
+            case "double": return Double.class;
+            case "float": return Float.class;
+            case "boolean": return Boolean.class;
+            default: throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+    }
+
+    /**
+     * Reads the header of a file sequentially, a chunk at a time, so that only the bytes of the
+     * header are read whatever the size of the payload.
+     */
+    private static final class HeaderReader {
+        private final FileChannel channel;
+        private ByteBuffer buffer;
+        // Position in the file of the first byte of the buffer
+        private long bufferStart;
+
+        private HeaderReader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(HEADER_CHUNK_SIZE);
+            this.buffer.limit(0);
+        }
+
+        private long getPosition() {
+            return bufferStart + buffer.position();
+        }
+
+        private int getInt() throws IOException {
+            return require(Integer.BYTES).getInt();
+        }
+
+        private double getDouble() throws IOException {
+            return require(Double.BYTES).getDouble();
+        }
+
+        private byte get() throws IOException {
+            return require(1).get();
+        }
+
+        private void get(byte[] bytes) throws IOException {
+            require(bytes.length).get(bytes);
+        }
+
+        // Returns the buffer with at least the given number of bytes left, reading the next chunk if needed
+        private ByteBuffer require(int length) throws IOException {
+            if (buffer.remaining() >= length) return buffer;
+            if (getPosition() + length > channel.size()) throw new EOFException("Truncated header");
+            bufferStart += buffer.position();
+            if (buffer.capacity() < length) {
+                ByteBuffer larger = ByteBuffer.allocate(length);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < length) {
+                if (channel.read(buffer, bufferStart + buffer.position()) < 0) throw new EOFException("Truncated header");
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package moeba.utils.dataset;
+
+import java.io.File;
+import java.io.IOException;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(name = "DatasetConversionRunner", description = "Converts a CSV dataset into the binary " + DatasetBinaryFormat.EXTENSION + " format, which runners load directly when it is placed next to the CSV file", mixinStandardHelpOptions = true, showDefaultValues = true, sortOptions = false)
+public class DatasetConversionRunner implements Runnable {
+
+    @Option(names = {"--input-dataset"}, description = "Path to the input CSV dataset", required = true)
+    private File inputDataset;
+
+    @Option(names = {"--input-column-types"}, description = "Path to the input JSON file which specifies the names of the columns in order and the type of data of each of them", required = true)
+    private File inputColumnTypes;
+
+    @Option(names = {"--output-file"}, description = "Path to the output binary file. Default: next to the input dataset")
+    private File outputFile;
+
+    @Option(names = {"--float-payload"}, description = "Whether to store values as floats instead of doubles, halving the size of the file")
+    private boolean floatPayload;
+
+    @Option(names = {"--num-threads"}, description = "Number of threads. Default: All")
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    public void run() {
+        File output = outputFile != null ? outputFile : DatasetBinaryFormat.getBinaryFile(inputDataset);
+        try {
+            Dataset dataset = DatasetLoader.loadCsv(inputDataset, inputColumnTypes, numThreads);
+            DatasetBinaryFormat.write(dataset, output, floatPayload);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.out.println("Binary dataset written to " + output);
+    }
+
+    public static void main(String[] args) {
+        CommandLine commandLine = new CommandLine(new DatasetConversionRunner());
+        commandLine.execute(args);
+    }
+}
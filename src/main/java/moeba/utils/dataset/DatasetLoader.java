@@ -0,0 +1,564 @@
+package moeba.utils.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import moeba.StaticUtils;
+
+/**
+ * Streaming loader for CSV datasets. The file is split into chunks aligned to line
+ * boundaries, and each chunk is memory mapped and parsed in parallel directly into the
+ * rows of the numeric matrix, so neither the whole text nor the individual tokens are
+ * ever held in memory. Values are converted while parsing according to the column types
+ * read with {@link StaticUtils#jsonToClassArray(File, String[])}, following the same rules
+ * as {@link StaticUtils#dataToNumericMatrix(String[][], Class[], int)}. Categorical values are
+ * encoded by their bytes with a {@link DictionaryEncoder} per chunk, and a final per-column
+ * stage merges the chunk dictionaries and records the {@link ColumnStatistics} of each column.
+ * Every stage runs on the {@link SharedExecutor} and completes before the next one starts.
+ *
+ * If an up-to-date binary version of the dataset (see {@link DatasetBinaryFormat}) sits next
+ * to the CSV file, it is mapped instead of parsing the CSV.
+ */
+public class DatasetLoader {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 26;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private static final byte NUMERIC = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte CATEGORICAL = 2;
+
+    /**
+     * Loads a dataset into a column-major double matrix, mapping its binary version if there
+     * is an up-to-date one next to the CSV file and parsing the CSV file otherwise.
+     *
+     * @param inputDataset The input CSV file, whose first line contains the column names
+     * @param inputColumnTypes The input JSON file with the type of each column
+     * @param numThreads Number of threads used to parse the file
+     * @return The loaded dataset
+     * @throws IOException If there is an error reading the input files
+     */
+    public static Dataset load(File inputDataset, File inputColumnTypes, int numThreads) throws IOException {
+        return load(inputDataset, inputColumnTypes, numThreads, DataMatrix.Layout.COLUMN_MAJOR, false);
+    }
+
+    /**
+     * Loads a dataset, mapping its binary version if there is an up-to-date one next to the
+     * CSV file and parsing the CSV file otherwise. A mapped payload is used in place when it
+     * already has the requested layout and storage, and copied into a new matrix otherwise. A
+     * float payload cannot give back double values, so the CSV file is parsed when doubles are
+     * requested.
+     *
+     * @param inputDataset The input CSV file, whose first line contains the column names
+     * @param inputColumnTypes The input JSON file with the type of each column
+     * @param numThreads Number of threads used to parse the file
+     * @param layout Memory layout of the matrix
+     * @param floatStorage Whether values are stored as floats instead of doubles
+     * @return The loaded dataset
+     * @throws IOException If there is an error reading the input files
+     */
+    public static Dataset load(File inputDataset, File inputColumnTypes, int numThreads, DataMatrix.Layout layout, boolean floatStorage) throws IOException {
+        File binaryFile = DatasetBinaryFormat.getBinaryFile(inputDataset);
+        if (DatasetBinaryFormat.isUpToDate(binaryFile, inputDataset, inputColumnTypes)) {
+            Dataset dataset = DatasetBinaryFormat.read(binaryFile);
+            DataMatrix mapped = dataset.getMatrix();
+            if (!floatStorage && mapped.isFloatStorage()) {
+                return loadCsv(inputDataset, inputColumnTypes, numThreads, layout, false, 0);
+            }
+            if (layout != mapped.getLayout() || floatStorage != mapped.isFloatStorage()) {
+                dataset = new Dataset(dataset.getColumnNames(), dataset.getTypes(), DataMatrix.copyOf(mapped, layout, floatStorage), getDictionaries(dataset), getStatistics(dataset), dataset.getLoadTime(), dataset.getPeakHeapUsage());
+            }
+            System.out.println("Dataset mapped from " + binaryFile.getName() + " in " + dataset.getLoadTime() + "ms (" + dataset.getNumRows() + "x" + dataset.getNumCols() + ")");
+            return dataset;
+        }
+        return loadCsv(inputDataset, inputColumnTypes, numThreads, layout, floatStorage, 0);
+    }
+
+    /**
+     * Loads a CSV dataset into a column-major double matrix, ignoring any binary version of it.
+     *
+     * @param inputDataset The input CSV file, whose first line contains the column names
+     * @param inputColumnTypes The input JSON file with the type of each column
+     * @param numThreads Number of threads used to parse the file
+     * @return The loaded dataset
+     * @throws IOException If there is an error reading the input files
+     */
+    public static Dataset loadCsv(File inputDataset, File inputColumnTypes, int numThreads) throws IOException {
+        return loadCsv(inputDataset, inputColumnTypes, numThreads, DataMatrix.Layout.COLUMN_MAJOR, false, 0);
+    }
+
+    static Dataset loadCsv(File inputDataset, File inputColumnTypes, int numThreads, DataMatrix.Layout layout, boolean floatStorage, int chunkSize) throws IOException {
+        List<MemoryPoolMXBean> heapPools = getHeapPools();
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+        long startTime = System.currentTimeMillis();
+
+        try (FileChannel channel = FileChannel.open(inputDataset.toPath(), StandardOpenOption.READ)) {
+            // Read column names and types
+            long headerEnd = findLineEnd(channel, 0);
+            String header = readString(channel, 0, headerEnd);
+            String[] columnNames = header.endsWith("\r") ? header.substring(0, header.length() - 1).split(",") : header.split(",");
+            Class<?>[] types = StaticUtils.jsonToClassArray(inputColumnTypes, columnNames);
+            byte[] kinds = getKinds(types);
+
+            List<long[]> chunks = splitIntoChunks(channel, Math.min(headerEnd + 1, channel.size()), numThreads, chunkSize);
+            try {
+                // Count the rows of each chunk, so the matrix is allocated once and chunks are parsed straight into it
+                List<Callable<Integer>> countTasks = new ArrayList<>(chunks.size());
+                for (long[] chunk : chunks) {
+                    countTasks.add(() -> countRows(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0])));
+                }
+                List<Integer> counts = SharedExecutor.invokeAll(countTasks, numThreads);
+                int[] firstRows = new int[chunks.size() + 1];
+                for (int c = 0; c < chunks.size(); c++) {
+                    firstRows[c + 1] = firstRows[c] + counts.get(c);
+                }
+                int numRows = firstRows[chunks.size()];
+                DataMatrix.Writable matrix = DataMatrix.allocate(numRows, columnNames.length, layout, floatStorage);
+
+                // Parse chunks in parallel
+                List<Callable<ChunkResult>> parseTasks = new ArrayList<>(chunks.size());
+                for (int c = 0; c < chunks.size(); c++) {
+                    long[] chunk = chunks.get(c);
+                    int firstRow = firstRows[c];
+                    parseTasks.add(() -> parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]), kinds, matrix, firstRow));
+                }
+                List<ChunkResult> results = SharedExecutor.invokeAll(parseTasks, numThreads);
+
+                // Merge local dictionaries and record the statistics of each column in parallel
+                String[][] dictionaries = new String[columnNames.length][];
+                List<Callable<ColumnStatistics>> columnTasks = new ArrayList<>(columnNames.length);
+                for (int j = 0; j < columnNames.length; j++) {
+                    int col = j;
+                    columnTasks.add(() -> {
+                        if (kinds[col] == CATEGORICAL) {
+                            dictionaries[col] = mergeDictionaries(results, col, matrix);
+                        }
+                        return computeStatistics(matrix, col, kinds[col], dictionaries[col]);
+                    });
+                }
+                ColumnStatistics[] statistics = SharedExecutor.invokeAll(columnTasks, numThreads).toArray(new ColumnStatistics[0]);
+
+                long loadTime = System.currentTimeMillis() - startTime;
+                long peakHeapUsage = 0;
+                for (MemoryPoolMXBean pool : heapPools) {
+                    peakHeapUsage += pool.getPeakUsage().getUsed();
+                }
+                System.out.println("Dataset loaded in " + loadTime + "ms (" + numRows + "x" + columnNames.length + ", peak heap: " + (peakHeapUsage >> 20) + "MB)");
+
+                return new Dataset(columnNames, types, matrix, dictionaries, statistics, loadTime, peakHeapUsage);
+            } catch (InterruptedException | ExecutionException e) {
+                if (e.getCause() instanceof IllegalArgumentException) {
+                    throw (IllegalArgumentException) e.getCause();
+                }
+                throw new IOException("Error parsing " + inputDataset, e);
+            }
+        }
+    }
+
+    /**
+     * Converts a data matrix with string values into a dataset. Columns are converted in
+     * parallel following the same rules as the CSV loader, and the call returns once every
+     * column has been converted.
+     *
+     * @param columnNames The names of the columns in order
+     * @param data The data matrix with string values (rows x columns)
+     * @param types The type of each column
+     * @param numThreads Number of threads used to convert the columns
+     * @param layout Memory layout of the matrix
+     * @param floatStorage Whether values are stored as floats instead of doubles
+     * @return The converted dataset
+     */
+    public static Dataset convert(String[] columnNames, String[][] data, Class<?>[] types, int numThreads, DataMatrix.Layout layout, boolean floatStorage) {
+        long startTime = System.currentTimeMillis();
+        int numRows = data.length;
+        byte[] kinds = getKinds(types);
+        DataMatrix.Writable matrix = DataMatrix.allocate(numRows, types.length, layout, floatStorage);
+        String[][] dictionaries = new String[types.length][];
+
+        List<Callable<ColumnStatistics>> columnTasks = new ArrayList<>(types.length);
+        for (int j = 0; j < types.length; j++) {
+            int col = j;
+            columnTasks.add(() -> {
+                switch (kinds[col]) {
+                    case BOOLEAN:
+                        for (int i = 0; i < numRows; i++) {
+                            matrix.set(i, col, data[i][col].equalsIgnoreCase("Yes") ? 1.0 : 0.0);
+                        }
+                        break;
+                    case CATEGORICAL:
+                        DictionaryEncoder encoder = new DictionaryEncoder();
+                        for (int i = 0; i < numRows; i++) {
+                            matrix.set(i, col, encoder.encode(data[i][col]));
+                        }
+                        dictionaries[col] = encoder.getValues();
+                        break;
+                    default:
+                        for (int i = 0; i < numRows; i++) {
+                            matrix.set(i, col, Double.parseDouble(data[i][col]));
+                        }
+                }
+                return computeStatistics(matrix, col, kinds[col], dictionaries[col]);
+            });
+        }
+
+        try {
+            ColumnStatistics[] statistics = SharedExecutor.invokeAll(columnTasks, numThreads).toArray(new ColumnStatistics[0]);
+            return new Dataset(columnNames, types, matrix, dictionaries, statistics, System.currentTimeMillis() - startTime, 0);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the shape of a CSV dataset without parsing its values.
+     *
+     * @param inputDataset The input CSV file, whose first line contains the column names
+     * @return An array with the number of rows (without the header) and the number of columns
+     * @throws IOException If there is an error reading the input file
+     */
+    public static int[] readShape(File inputDataset) throws IOException {
+        File binaryFile = DatasetBinaryFormat.getBinaryFile(inputDataset);
+        if (DatasetBinaryFormat.isUpToDate(binaryFile, inputDataset)) {
+            Dataset dataset = DatasetBinaryFormat.read(binaryFile);
+            return new int[] {dataset.getNumRows(), dataset.getNumCols()};
+        }
+        try (FileChannel channel = FileChannel.open(inputDataset.toPath(), StandardOpenOption.READ)) {
+            long headerEnd = findLineEnd(channel, 0);
+            String header = readString(channel, 0, headerEnd);
+            int numCols = header.endsWith("\r") ? header.substring(0, header.length() - 1).split(",").length : header.split(",").length;
+            int numRows = 0;
+            for (long[] chunk : splitIntoChunks(channel, Math.min(headerEnd + 1, channel.size()), 1, 0)) {
+                numRows += countRows(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]));
+            }
+            return new int[] {numRows, numCols};
+        }
+    }
+
+    private static class ChunkResult {
+        private final int firstRow;
+        private final int numRows;
+        private final DictionaryEncoder[] localDictionaries;
+
+        private ChunkResult(int firstRow, int numRows, DictionaryEncoder[] localDictionaries) {
+            this.firstRow = firstRow;
+            this.numRows = numRows;
+            this.localDictionaries = localDictionaries;
+        }
+    }
+
+    private static int countRows(ByteBuffer buffer) {
+        int numRows = 0;
+        int limit = buffer.limit();
+        int lineStart = 0;
+        for (int i = 0; i <= limit; i++) {
+            if (i == limit || buffer.get(i) == '\n') {
+                if (!isBlank(buffer, lineStart, i)) numRows++;
+                lineStart = i + 1;
+            }
+        }
+        return numRows;
+    }
+
+    private static ChunkResult parseChunk(ByteBuffer buffer, byte[] kinds, DataMatrix.Writable matrix, int firstRow) {
+        int numCols = kinds.length;
+        DictionaryEncoder[] localDictionaries = new DictionaryEncoder[numCols];
+        for (int j = 0; j < numCols; j++) {
+            if (kinds[j] == CATEGORICAL) localDictionaries[j] = new DictionaryEncoder();
+        }
+
+        byte[] scratch = new byte[64];
+        int limit = buffer.limit();
+        int pos = 0;
+        int row = firstRow;
+        while (pos < limit) {
+            // Locate the end of the line
+            int lineEnd = pos;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+            int contentEnd = lineEnd > pos && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (isBlank(buffer, pos, lineEnd)) {
+                pos = lineEnd + 1;
+                continue;
+            }
+
+            // Parse every field of the line
+            int col = 0;
+            int fieldStart = pos;
+            for (int i = pos; i <= contentEnd; i++) {
+                if (i < contentEnd && buffer.get(i) != ',') continue;
+                if (col == numCols) {
+                    throw new IllegalArgumentException("Row with more values than columns: " + readString(buffer, pos, contentEnd, scratch));
+                }
+                switch (kinds[col]) {
+                    case BOOLEAN:
+                        matrix.set(row, col, isYes(buffer, fieldStart, i) ? 1.0 : 0.0);
+                        break;
+                    case CATEGORICAL:
+                        matrix.set(row, col, localDictionaries[col].encode(buffer, fieldStart, i));
+                        break;
+                    default:
+                        matrix.set(row, col, parseDouble(buffer, fieldStart, i, scratch));
+                }
+                col++;
+                fieldStart = i + 1;
+            }
+            if (col != numCols) {
+                throw new IllegalArgumentException("Row with fewer values than columns: " + readString(buffer, pos, contentEnd, scratch));
+            }
+            row++;
+            pos = lineEnd + 1;
+        }
+        return new ChunkResult(firstRow, row - firstRow, localDictionaries);
+    }
+
+    /**
+     * Merges the local dictionaries of a categorical column in file order, so that codes
+     * follow the order of first appearance, and remaps the codes of every chunk.
+     */
+    private static String[] mergeDictionaries(List<ChunkResult> results, int col, DataMatrix.Writable matrix) {
+        DictionaryEncoder global = new DictionaryEncoder();
+        for (ChunkResult result : results) {
+            DictionaryEncoder local = result.localDictionaries[col];
+            double[] remap = new double[local.size()];
+            boolean identity = true;
+            for (int k = 0; k < remap.length; k++) {
+                int code = global.encode(local.getValue(k));
+                remap[k] = code;
+                identity &= code == k;
+            }
+            if (!identity) {
+                for (int i = result.firstRow; i < result.firstRow + result.numRows; i++) {
+                    matrix.set(i, col, remap[(int) matrix.get(i, col)]);
+                }
+            }
+        }
+        return global.getValues();
+    }
+
+    /**
+     * Computes the statistics of every column of a matrix in parallel.
+     *
+     * @param matrix The numeric matrix
+     * @param types The type of each column
+     * @param dictionaries The dictionaries of the categorical columns
+     * @param numThreads Number of threads used to scan the columns
+     * @return The statistics of each column
+     */
+    static ColumnStatistics[] computeStatistics(DataMatrix matrix, Class<?>[] types, String[][] dictionaries, int numThreads) throws IOException {
+        byte[] kinds = getKinds(types);
+        List<Callable<ColumnStatistics>> columnTasks = new ArrayList<>(kinds.length);
+        for (int j = 0; j < kinds.length; j++) {
+            int col = j;
+            columnTasks.add(() -> computeStatistics(matrix, col, kinds[col], dictionaries[col]));
+        }
+        try {
+            return SharedExecutor.invokeAll(columnTasks, numThreads).toArray(new ColumnStatistics[0]);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Error computing column statistics", e);
+        }
+    }
+
+    private static ColumnStatistics computeStatistics(DataMatrix matrix, int col, byte kind, String[] dictionary) {
+        int numRows = matrix.getNumRows();
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double[] values = kind == CATEGORICAL ? null : new double[numRows];
+        for (int i = 0; i < numRows; i++) {
+            double value = matrix.get(i, col);
+            if (value < min) min = value;
+            if (value > max) max = value;
+            if (values != null) values[i] = value;
+        }
+        if (min > max) {
+            min = Double.NaN;
+            max = Double.NaN;
+        }
+
+        // The cardinality of categorical columns is the size of their dictionary; the distinct
+        // values of other columns are counted on a sorted copy of the column
+        int cardinality;
+        if (values == null) {
+            cardinality = dictionary.length;
+        } else {
+            Arrays.sort(values);
+            cardinality = numRows == 0 ? 0 : 1;
+            for (int i = 1; i < numRows; i++) {
+                if (Double.compare(values[i], values[i - 1]) != 0) cardinality++;
+            }
+        }
+        return new ColumnStatistics(min, max, cardinality);
+    }
+
+    private static byte[] getKinds(Class<?>[] types) {
+        byte[] kinds = new byte[types.length];
+        for (int j = 0; j < types.length; j++) {
+            if (types[j] == Boolean.class) {
+                kinds[j] = BOOLEAN;
+            } else if (types[j] == String.class) {
+                kinds[j] = CATEGORICAL;
+            } else {
+                kinds[j] = NUMERIC;
+            }
+        }
+        return kinds;
+    }
+
+    private static String[][] getDictionaries(Dataset dataset) {
+        String[][] dictionaries = new String[dataset.getNumCols()][];
+        for (int j = 0; j < dictionaries.length; j++) {
+            dictionaries[j] = dataset.getDictionary(j);
+        }
+        return dictionaries;
+    }
+
+    private static ColumnStatistics[] getStatistics(Dataset dataset) {
+        ColumnStatistics[] statistics = new ColumnStatistics[dataset.getNumCols()];
+        for (int j = 0; j < statistics.length; j++) {
+            statistics[j] = dataset.getStatistics(j);
+        }
+        return statistics;
+    }
+
+    /**
+     * Parses a decimal number. Plain decimals with up to 15 significant digits are computed
+     * exactly from the digits (the mantissa and the power of ten are both exact doubles, so
+     * the division is correctly rounded); anything else falls back to Double.parseDouble.
+     */
+    private static double parseDouble(ByteBuffer buffer, int start, int end, byte[] scratch) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) digits++;
+                if (dot) scale++;
+                any = true;
+                if (digits > MAX_FAST_DIGITS || scale >= POWERS_OF_TEN.length) {
+                    return Double.parseDouble(readString(buffer, start, end, scratch));
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(readString(buffer, start, end, scratch));
+            }
+        }
+        if (!any) {
+            return Double.parseDouble(readString(buffer, start, end, scratch));
+        }
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static boolean isYes(ByteBuffer buffer, int start, int end) {
+        return end - start == 3
+            && (buffer.get(start) | 0x20) == 'y'
+            && (buffer.get(start + 1) | 0x20) == 'e'
+            && (buffer.get(start + 2) | 0x20) == 's';
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) != '\r') return false;
+        }
+        return true;
+    }
+
+    private static String readString(ByteBuffer buffer, int start, int end, byte[] scratch) {
+        byte[] bytes = end - start <= scratch.length ? scratch : new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        return new String(bytes, 0, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the position of the first line break at or after the given position, or the
+     * size of the file if there is none.
+     */
+    private static long findLineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return position + i;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Splits the body of the file into [start, end) ranges that end at line boundaries.
+     */
+    private static List<long[]> splitIntoChunks(FileChannel channel, long bodyStart, int numThreads, int chunkSize) throws IOException {
+        long size = channel.size();
+        if (chunkSize <= 0) {
+            long target = (size - bodyStart) / Math.max(1, numThreads * 4L);
+            chunkSize = (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, target));
+        }
+        List<long[]> chunks = new ArrayList<>();
+        long start = bodyStart;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : Math.min(size, findLineEnd(channel, start + chunkSize) + 1);
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static List<MemoryPoolMXBean> getHeapPools() {
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                heapPools.add(pool);
+            }
+        }
+        return heapPools;
+    }
+}
@@ -0,0 +1,190 @@
+package moeba.utils.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of loaded datasets. Datasets are keyed by the paths of their files
+ * and the hash of their content, and are shared by every caller that acquires the same
+ * files, so a single copy of each matrix lives in the JVM regardless of how many runners
+ * use it concurrently. Datasets are reference counted and released once the last lease is
+ * closed. Shared datasets are immutable: borrowers must not modify the returned matrices.
+ */
+public class DatasetRegistry {
+
+    private static final DatasetRegistry INSTANCE = new DatasetRegistry();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    // Content hashes of already hashed files, keyed by path, size and modification time
+    private final Map<String, Long> contentHashes = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        private final String key;
+        private final long contentHash;
+        private int refCount;
+        private Dataset dataset;
+
+        private Entry(String key, long contentHash) {
+            this.key = key;
+            this.contentHash = contentHash;
+        }
+    }
+
+    /**
+     * Borrowed reference to a registered dataset. Closing it releases the reference.
+     */
+    public class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Dataset getDataset() {
+            return entry.dataset;
+        }
+
+        /**
+         * Returns the hash of the content of the dataset files, which identifies the dataset
+         * regardless of its location.
+         *
+         * @return The content hash
+         */
+        public long getContentHash() {
+            return entry.contentHash;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+
+    public static DatasetRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires a dataset stored as a column-major double matrix.
+     *
+     * @param inputDataset The input CSV file
+     * @param inputColumnTypes The input JSON file with the type of each column
+     * @param numThreads Number of threads used to load the dataset
+     * @return A lease on the dataset, which must be closed when it is no longer needed
+     * @throws IOException If there is an error reading the input files
+     * @see #acquire(File, File, int, DataMatrix.Layout, boolean)
+     */
+    public Lease acquire(File inputDataset, File inputColumnTypes, int numThreads) throws IOException {
+        return acquire(inputDataset, inputColumnTypes, numThreads, DataMatrix.Layout.COLUMN_MAJOR, false);
+    }
+
+    /**
+     * Acquires a dataset, loading it with {@link DatasetLoader#load(File, File, int, DataMatrix.Layout, boolean)}
+     * if it is not registered yet. Concurrent requests for the same dataset wait for a single load.
+     *
+     * @param inputDataset The input CSV file
+     * @param inputColumnTypes The input JSON file with the type of each column
+     * @param numThreads Number of threads used to load the dataset
+     * @param layout Memory layout of the matrix
+     * @param floatStorage Whether values are stored as floats instead of doubles
+     * @return A lease on the dataset, which must be closed when it is no longer needed
+     * @throws IOException If there is an error reading the input files
+     */
+    public Lease acquire(File inputDataset, File inputColumnTypes, int numThreads, DataMatrix.Layout layout, boolean floatStorage) throws IOException {
+        long contentHash = getContentHash(inputDataset) * 31 + getContentHash(inputColumnTypes);
+        String key = inputDataset.getCanonicalPath() + "|" + inputColumnTypes.getCanonicalPath() + "|" + Long.toHexString(contentHash) + "|" + layout + (floatStorage ? "|float" : "|double");
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, k -> new Entry(k, contentHash));
+            entry.refCount++;
+        }
+
+        synchronized (entry) {
+            if (entry.dataset == null) {
+                try {
+                    entry.dataset = DatasetLoader.load(inputDataset, inputColumnTypes, numThreads, layout, floatStorage);
+                } catch (IOException | RuntimeException e) {
+                    release(entry);
+                    throw e;
+                }
+            }
+        }
+        return new Lease(entry);
+    }
+
+    /**
+     * Returns the number of datasets currently registered.
+     *
+     * @return The number of registered datasets
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void release(Entry entry) {
+        synchronized (entries) {
+            if (--entry.refCount == 0) {
+                entries.remove(entry.key);
+            }
+        }
+    }
+
+    private long getContentHash(File file) throws IOException {
+        String stamp = file.getCanonicalPath() + "|" + file.length() + "|" + file.lastModified();
+        Long hash = contentHashes.get(stamp);
+        if (hash == null) {
+            hash = hashFile(file);
+            contentHashes.put(stamp, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Computes a 64-bit hash of the content of a file, reading it in 8-byte words.
+     */
+    static long hashFile(File file) throws IOException {
+        long hash = 0x9E3779B97F4A7C15L;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            long position = 0;
+            while (true) {
+                int read = channel.read(buffer, position);
+                if (read > 0) position += read;
+                buffer.flip();
+                while (buffer.remaining() >= Long.BYTES) {
+                    hash = mix(hash, buffer.getLong());
+                }
+                if (read <= 0 || position >= size) {
+                    while (buffer.hasRemaining()) {
+                        hash = mix(hash, buffer.get());
+                    }
+                    break;
+                }
+                buffer.compact();
+            }
+            return mix(hash, size);
+        }
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value * 0xC2B2AE3D27D4EB4FL;
+        hash = Long.rotateLeft(hash, 31) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+}
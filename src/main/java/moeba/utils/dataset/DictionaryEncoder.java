@@ -0,0 +1,125 @@
+package moeba.utils.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Assigns consecutive integer codes to the distinct values of a categorical column, in order
+ * of first appearance. Values are looked up by their UTF-8 bytes in an open-addressing table
+ * made of primitive arrays, so encoding a value that has already been seen allocates nothing.
+ * Instances are not thread-safe.
+ */
+public class DictionaryEncoder {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Code + 1 of the value stored in each slot, 0 if the slot is empty
+    private int[] table;
+    // Hash, UTF-8 bytes and string of the value of each code
+    private int[] hashes;
+    private byte[][] keys;
+    private String[] values;
+    private int size;
+
+    public DictionaryEncoder() {
+        this.table = new int[INITIAL_CAPACITY * 2];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.keys = new byte[INITIAL_CAPACITY][];
+        this.values = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Encodes the UTF-8 value stored between two positions of a buffer.
+     *
+     * @param buffer The buffer holding the value
+     * @param start The position of the first byte of the value
+     * @param end The position after the last byte of the value
+     * @return The code of the value
+     */
+    public int encode(ByteBuffer buffer, int start, int end) {
+        int hash = hash(buffer, start, end);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return add(slot, hash, buffer, start, end);
+            }
+            if (hashes[entry - 1] == hash && matches(keys[entry - 1], buffer, start, end)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Encodes a value.
+     *
+     * @param value The value
+     * @return The code of the value
+     */
+    public int encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return encode(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getValue(int code) {
+        return values[code];
+    }
+
+    /**
+     * Returns the dictionary, where position i holds the value encoded as i.
+     *
+     * @return The distinct values in order of first appearance
+     */
+    public String[] getValues() {
+        return Arrays.copyOf(values, size);
+    }
+
+    private int add(int slot, int hash, ByteBuffer buffer, int start, int end) {
+        if (size == values.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        byte[] key = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            key[i - start] = buffer.get(i);
+        }
+        hashes[size] = hash;
+        keys[size] = key;
+        values[size] = new String(key, StandardCharsets.UTF_8);
+        table[slot] = ++size;
+
+        // Keep the load factor at or below 1/2 so probe sequences stay short
+        if (size * 2 > table.length) {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int code = 0; code < size; code++) {
+                int s = hashes[code] & mask;
+                while (table[s] != 0) s = (s + 1) & mask;
+                table[s] = code + 1;
+            }
+        }
+        return size - 1;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int hash = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (buffer.get(i) & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+        if (key.length != end - start) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(start + i)) return false;
+        }
+        return true;
+    }
+}
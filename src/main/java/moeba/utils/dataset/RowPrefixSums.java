@@ -0,0 +1,115 @@
+package moeba.utils.dataset;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Prefix sums and prefix sums of squares of every row of a matrix, so that the sum and the sum
+ * of squares of a row over a range of contiguous columns take two lookups each, whatever the
+ * length of the range. They pay off on time-course data, where biclusters tend to span runs of
+ * consecutive columns.
+ * <p>
+ * Values are shifted by the mean of the matrix before being accumulated, which keeps the sums
+ * small and the differences between them accurate. Tables take two doubles per cell, so they are
+ * only built for matrices within a memory budget, and are shared by every user of the same matrix.
+ */
+public final class RowPrefixSums {
+    public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+    private static final Map<DataMatrix, RowPrefixSums> tables = new WeakHashMap<>();
+
+    private final int stride;
+    private final double shift;
+    private final double[] sums;
+    private final double[] sumSquares;
+
+    private RowPrefixSums(DataMatrix data) {
+        int numRows = data.getNumRows();
+        int numCols = data.getNumCols();
+        double total = 0.0;
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numCols; j++) {
+                total += data.get(i, j);
+            }
+        }
+        this.stride = numCols + 1;
+        this.shift = (long) numRows * numCols == 0 ? 0.0 : total / ((long) numRows * numCols);
+        this.sums = new double[numRows * stride];
+        this.sumSquares = new double[numRows * stride];
+        for (int i = 0; i < numRows; i++) {
+            int base = i * stride;
+            for (int j = 0; j < numCols; j++) {
+                double value = data.get(i, j) - shift;
+                sums[base + j + 1] = sums[base + j] + value;
+                sumSquares[base + j + 1] = sumSquares[base + j] + value * value;
+            }
+        }
+    }
+
+    /**
+     * Returns the tables of a matrix, building them on first use.
+     *
+     * @param data The matrix, which must not be modified afterwards
+     * @param memoryBudget Maximum size of the tables of the matrix, or 0 to never use them
+     * @return The tables, or null if they do not fit in the memory budget
+     */
+    public static synchronized RowPrefixSums get(DataMatrix data, long memoryBudget) {
+        if (memoryBudget < 0) throw new IllegalArgumentException("The memory budget must not be negative");
+        long size = getMemorySize(data.getNumRows(), data.getNumCols());
+        if (size > memoryBudget || (long) data.getNumRows() * (data.getNumCols() + 1) > Integer.MAX_VALUE - 8) {
+            return null;
+        }
+        RowPrefixSums res = tables.get(data);
+        if (res == null) {
+            res = new RowPrefixSums(data);
+            tables.put(data, res);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the memory taken by the tables of a matrix.
+     *
+     * @param numRows Number of rows
+     * @param numCols Number of columns
+     * @return The size in bytes
+     */
+    public static long getMemorySize(int numRows, int numCols) {
+        return 16L * numRows * (numCols + 1);
+    }
+
+    /**
+     * Returns the value subtracted from every cell before accumulating it.
+     *
+     * @return The mean of the matrix
+     */
+    public double getShift() {
+        return shift;
+    }
+
+    /**
+     * Returns the sum of the shifted values of a row over a range of columns.
+     *
+     * @param row The row
+     * @param from First column of the range
+     * @param to Column after the last one of the range
+     * @return The sum
+     */
+    public double getSum(int row, int from, int to) {
+        int base = row * stride;
+        return sums[base + to] - sums[base + from];
+    }
+
+    /**
+     * Returns the sum of the squares of the shifted values of a row over a range of columns.
+     *
+     * @param row The row
+     * @param from First column of the range
+     * @param to Column after the last one of the range
+     * @return The sum of squares
+     */
+    public double getSumSquares(int row, int from, int to) {
+        int base = row * stride;
+        return sumSquares[base + to] - sumSquares[base + from];
+    }
+}
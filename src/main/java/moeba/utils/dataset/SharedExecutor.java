@@ -0,0 +1,71 @@
+package moeba.utils.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Thread pool shared by the dataset loading and conversion stages, so that loading a dataset
+ * does not create and tear down a pool of its own. Each call runs its tasks in at most the
+ * requested number of lanes and only returns once every task has finished.
+ */
+public class SharedExecutor {
+
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "moeba-dataset");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Runs a list of independent tasks and waits for all of them to finish.
+     *
+     * @param <T> The result type of the tasks
+     * @param tasks The tasks to run
+     * @param parallelism Maximum number of tasks running at the same time
+     * @return The results of the tasks, in the same order as the tasks
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     * @throws ExecutionException If any task fails, wrapping the first failure
+     */
+    public static <T> List<T> invokeAll(List<Callable<T>> tasks, int parallelism) throws InterruptedException, ExecutionException {
+        int lanes = Math.max(1, Math.min(parallelism, tasks.size()));
+        Object[] results = new Object[tasks.size()];
+        List<Future<?>> futures = new ArrayList<>(lanes);
+        for (int lane = 0; lane < lanes; lane++) {
+            int firstTask = lane;
+            futures.add(POOL.submit(() -> {
+                for (int t = firstTask; t < results.length; t += lanes) {
+                    results[t] = tasks.get(t).call();
+                }
+                return null;
+            }));
+        }
+
+        // Wait for every lane, even after a failure, so that no task outlives the call
+        ExecutionException failure = null;
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+        if (failure != null) throw failure;
+
+        @SuppressWarnings("unchecked")
+        List<T> res = (List<T>) Arrays.asList(results);
+        return res;
+    }
+}
@@ -0,0 +1,48 @@
+package moeba.utils.dataset.impl;
+
+import moeba.utils.dataset.DataMatrix;
+
+/**
+ * Matrix stored as a single array of doubles in column-major order.
+ */
+public class ColumnMajorDataMatrix implements DataMatrix.Writable {
+    private final double[] values;
+    private final int numRows;
+    private final int numCols;
+
+    public ColumnMajorDataMatrix(int numRows, int numCols) {
+        this.values = new double[numRows * numCols];
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return values[col * numRows + row];
+    }
+
+    @Override
+    public void set(int row, int col, double value) {
+        values[col * numRows + row] = value;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.COLUMN_MAJOR;
+    }
+
+    @Override
+    public boolean isFloatStorage() {
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+package moeba.utils.dataset.impl;
+
+import moeba.utils.dataset.DataMatrix;
+
+/**
+ * Matrix stored as a single array of floats in column-major order.
+ */
+public class FloatColumnMajorDataMatrix implements DataMatrix.Writable {
+    private final float[] values;
+    private final int numRows;
+    private final int numCols;
+
+    public FloatColumnMajorDataMatrix(int numRows, int numCols) {
+        this.values = new float[numRows * numCols];
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return values[col * numRows + row];
+    }
+
+    @Override
+    public void set(int row, int col, double value) {
+        values[col * numRows + row] = (float) value;
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.COLUMN_MAJOR;
+    }
+
+    @Override
+    public boolean isFloatStorage() {
+        return true;
+    }
+}
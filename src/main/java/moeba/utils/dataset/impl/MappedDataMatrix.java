@@ -0,0 +1,66 @@
+package moeba.utils.dataset.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import moeba.utils.dataset.DataMatrix;
+
+/**
+ * Column-major matrix read directly from the memory-mapped payload of a binary dataset,
+ * without copying values into the heap.
+ */
+public class MappedDataMatrix implements DataMatrix {
+    private final ByteBuffer[] columnBlocks;
+    private final int columnsPerBlock;
+    private final boolean floatStorage;
+    private final int numRows;
+    private final int numCols;
+
+    /**
+     * Constructs a matrix over mapped column blocks.
+     *
+     * @param columnBlocks Buffers, each one holding columnsPerBlock consecutive columns of little-endian values
+     * @param columnsPerBlock Number of columns stored in each block
+     * @param floatStorage Whether values are stored as floats instead of doubles
+     * @param numRows Number of rows
+     * @param numCols Number of columns
+     */
+    public MappedDataMatrix(ByteBuffer[] columnBlocks, int columnsPerBlock, boolean floatStorage, int numRows, int numCols) {
+        this.columnBlocks = new ByteBuffer[columnBlocks.length];
+        for (int b = 0; b < columnBlocks.length; b++) {
+            this.columnBlocks[b] = columnBlocks[b].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.columnsPerBlock = columnsPerBlock;
+        this.floatStorage = floatStorage;
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    @Override
+    public int getNumRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getNumCols() {
+        return numCols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        // Absolute reads do not modify the buffers, so they are safe to share between threads
+        int index = (col % columnsPerBlock) * numRows + row;
+        ByteBuffer block = columnBlocks[col / columnsPerBlock];
+        return floatStorage ? block.getFloat(index << 2) : block.getDouble(index << 3);
+    }
+
+    @Override
+    public Layout getLayout() {
+        return Layout.COLUMN_MAJOR;
+    }
+
+    @Override
+    public boolean isFloatStorage() {
+        return floatStorage;
+    }
+}
@@ -1,7 +1,12 @@
 package moeba.utils.observer;
 
+import java.util.List;
+
+import moeba.bicluster.BiclusterFingerprint;
 import moeba.Problem;
+import moeba.fitnessfunction.EvaluationContext;
 import moeba.representationwrapper.RepresentationWrapper;
+import moeba.utils.dataset.DataMatrix;
 import moeba.representationwrapper.impl.GenericRepresentationWrapper;
 import moeba.utils.observer.impl.BiclusterCountObserver;
 import moeba.utils.observer.impl.ExternalCacheObserver;
@@ -29,11 +34,25 @@ public class ProblemObserver extends Problem {
         void writeToFile(String strFile);
     }
 
-    public ProblemObserver(double[][] data, Class<?>[] types, String[] strFitnessFunctions,
-            CacheStorage<String, Double[]> externalCache, CacheStorage<String, Double>[] internalCaches,
+    public ProblemObserver(DataMatrix data, Class<?>[] types, String[] strFitnessFunctions,
+            CacheStorage<BiclusterFingerprint, Double[]> externalCache, CacheStorage<BiclusterFingerprint, Double>[] internalCaches,
             RepresentationWrapper representationWrapper, ObserverInterface[] observers) {
 
-        super(data, types, strFitnessFunctions, externalCache, internalCaches, representationWrapper);
+        this(data, types, strFitnessFunctions, externalCache, internalCaches, representationWrapper, false, observers);
+    }
+
+    public ProblemObserver(DataMatrix data, Class<?>[] types, String[] strFitnessFunctions,
+            CacheStorage<BiclusterFingerprint, Double[]> externalCache, CacheStorage<BiclusterFingerprint, Double>[] internalCaches,
+            RepresentationWrapper representationWrapper, boolean exactCacheKeys, ObserverInterface[] observers) {
+
+        this(data, types, strFitnessFunctions, externalCache, internalCaches, representationWrapper, exactCacheKeys, EvaluationContext.getDefault(), observers);
+    }
+
+    public ProblemObserver(DataMatrix data, Class<?>[] types, String[] strFitnessFunctions,
+            CacheStorage<BiclusterFingerprint, Double[]> externalCache, CacheStorage<BiclusterFingerprint, Double>[] internalCaches,
+            RepresentationWrapper representationWrapper, boolean exactCacheKeys, EvaluationContext context, ObserverInterface[] observers) {
+
+        super(data, types, strFitnessFunctions, externalCache, internalCaches, representationWrapper, exactCacheKeys, context);
         checkObservers(observers);
         this.observers = observers;
     }
@@ -55,6 +74,23 @@ public class ProblemObserver extends Problem {
         return result;
     }
 
+    /**
+     * Overrides the batch evaluation of the Problem class to notify the observers of every
+     * solution of the batch, as if they had been evaluated one by one.
+     * @param solutions The solutions to be evaluated.
+     * @return The same list, with the objectives of the solutions updated.
+     */
+    @Override
+    public List<CompositeSolution> runBatch(List<CompositeSolution> solutions) {
+        List<CompositeSolution> results = super.runBatch(solutions);
+        for (CompositeSolution result : results) {
+            for (ObserverInterface observer : observers) {
+                observer.register(result);
+            }
+        }
+        return results;
+    }
+
     /**
      * Checks if the observers passed in the constructor are valid.
      * Throws an IllegalArgumentException if any of the observers require missing dependencies.
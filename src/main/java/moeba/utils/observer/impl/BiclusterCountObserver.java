@@ -8,7 +8,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BitMatrix;
+import moeba.representationwrapper.RepresentationWrapper;
 import moeba.utils.observer.ProblemObserver.ObserverInterface;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
 import org.uma.jmetal.util.binarySet.BinarySet;
@@ -52,9 +56,10 @@ public class BiclusterCountObserver implements ObserverInterface {
     @Override
     public void register(CompositeSolution result) {
         synchronized(lockObject) {
-            // Extracts the number of biclusters from the binary part of the solution
-            BinarySet binarySet = (BinarySet) result.variables().get(1).variables().get(0);
-            int numBiclusters = binarySet.cardinality() + (binarySet.get(result.variables().get(0).variables().size() -1) ? 0 : 1);
+            // Takes the number of biclusters from the decoded solution, or else from the binary part of the solution
+            List<Bicluster> biclusters = RepresentationWrapper.getCachedBiclusters(result);
+            int numBiclusters = biclusters != null ? biclusters.size() : BitMatrix.countSegments(
+                    (BinarySet) result.variables().get(1).variables().get(0), result.variables().get(0).variables().size());
             // Updates the count of biclusters
             biclusterCounts.merge(numBiclusters, 1, Integer::sum);
             // Initializes the percentage array if not already done
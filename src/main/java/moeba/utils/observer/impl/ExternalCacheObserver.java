@@ -1,42 +1,74 @@
 package moeba.utils.observer.impl;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 
+import moeba.bicluster.BiclusterFingerprint;
 import moeba.utils.observer.ProblemObserver.ObserverInterface;
+import moeba.utils.storage.CacheStats;
 import moeba.utils.storage.CacheStorage;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
 
+/**
+ * Records the statistics of the external cache at the end of each generation. The file has a
+ * line per counter, with its accumulated value at each generation: hits, misses, misses that
+ * waited for another worker computing the same key, evictions and the time spent computing
+ * misses, in milliseconds.
+ */
 public class ExternalCacheObserver implements ObserverInterface {
     private int populationSize;
-    private CacheStorage<String, Double[]> externalCache;
+    private CacheStorage<BiclusterFingerprint, Double[]> externalCache;
     private AtomicInteger parallelCount;
-    private ArrayList<Integer> generationCacheCalls;
+    private ArrayList<CacheStats> generationCacheStats;
 
-    public ExternalCacheObserver(int populationSize, CacheStorage<String, Double[]> externalCache) {
+    public ExternalCacheObserver(int populationSize, CacheStorage<BiclusterFingerprint, Double[]> externalCache) {
         this.populationSize = populationSize;
         this.externalCache = externalCache;
         this.parallelCount = new AtomicInteger();
-        this.generationCacheCalls = new ArrayList<>();
+        this.generationCacheStats = new ArrayList<>();
     }
 
     @Override
     public void register(CompositeSolution result) {
         if (this.parallelCount.incrementAndGet() % this.populationSize == 0) {
-            this.generationCacheCalls.add(externalCache.getNumGetters());
+            this.generationCacheStats.add(externalCache.getStats());
         }
     }
 
     @Override
     public void writeToFile(String strFile) {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(strFile))) {
-            String strVector = this.generationCacheCalls.toString();
-            bw.write(strVector.substring(1, strVector.length() - 1) + "\n");
+            writeStats(bw, "", this.generationCacheStats);
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
         }
     }
+
+    /**
+     * Writes a line per counter with its value at each generation.
+     *
+     * @param bw The writer
+     * @param prefix Text at the start of every line
+     * @param generationCacheStats The statistics of each generation
+     * @throws IOException If the lines cannot be written
+     */
+    static void writeStats(BufferedWriter bw, String prefix, List<CacheStats> generationCacheStats) throws IOException {
+        StringBuilder hits = new StringBuilder(prefix + "hits");
+        StringBuilder misses = new StringBuilder(prefix + "misses");
+        StringBuilder waits = new StringBuilder(prefix + "waits");
+        StringBuilder evictions = new StringBuilder(prefix + "evictions");
+        StringBuilder loadTimes = new StringBuilder(prefix + "loadTimeMs");
+        for (CacheStats stats : generationCacheStats) {
+            hits.append(", ").append(stats.getHitCount());
+            misses.append(", ").append(stats.getMissCount());
+            waits.append(", ").append(stats.getWaitCount());
+            evictions.append(", ").append(stats.getEvictionCount());
+            loadTimes.append(", ").append(stats.getTotalLoadTime() / 1000000);
+        }
+        bw.write(hits + "\n" + misses + "\n" + waits + "\n" + evictions + "\n" + loadTimes + "\n");
+    }
 }
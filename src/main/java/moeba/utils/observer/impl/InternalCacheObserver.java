@@ -6,26 +6,33 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import moeba.bicluster.BiclusterFingerprint;
 import moeba.utils.observer.ProblemObserver.ObserverInterface;
+import moeba.utils.storage.CacheStats;
 import moeba.utils.storage.CacheStorage;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
 
+/**
+ * Records the statistics of the internal cache of each fitness function at the end of each
+ * generation, in the format of {@link ExternalCacheObserver} with the function at the start of
+ * every line.
+ */
 public class InternalCacheObserver implements ObserverInterface {
     private int populationSize;
     private String[] fitnessFunctions;
-    private CacheStorage<String, Double>[] internalCaches;
+    private CacheStorage<BiclusterFingerprint, Double>[] internalCaches;
     private AtomicInteger parallelCount;
-    private ArrayList<Integer>[] generationCacheCalls;
+    private ArrayList<CacheStats>[] generationCacheStats;
 
     @SuppressWarnings("unchecked")
-    public InternalCacheObserver(int populationSize, String[] fitnessFunctions, CacheStorage<String, Double>[] internalCaches) {
+    public InternalCacheObserver(int populationSize, String[] fitnessFunctions, CacheStorage<BiclusterFingerprint, Double>[] internalCaches) {
         this.populationSize = populationSize;
         this.fitnessFunctions = fitnessFunctions;
         this.internalCaches = internalCaches;
         this.parallelCount = new AtomicInteger();
-        this.generationCacheCalls = new ArrayList[fitnessFunctions.length];
+        this.generationCacheStats = new ArrayList[fitnessFunctions.length];
         for(int i = 0; i < fitnessFunctions.length; i++) {
-            this.generationCacheCalls[i] = new ArrayList<>();
+            this.generationCacheStats[i] = new ArrayList<>();
         }
     }
 
@@ -33,7 +40,7 @@ public class InternalCacheObserver implements ObserverInterface {
     public void register(CompositeSolution result) {
         if (parallelCount.incrementAndGet() % this.populationSize == 0) {
             for(int i = 0; i < fitnessFunctions.length; i++) {
-                this.generationCacheCalls[i].add(this.internalCaches[i].getNumGetters());
+                this.generationCacheStats[i].add(this.internalCaches[i].getStats());
             }
         }
     }
@@ -42,8 +49,7 @@ public class InternalCacheObserver implements ObserverInterface {
     public void writeToFile(String strFile) {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(strFile))) {
             for(int i = 0; i < fitnessFunctions.length; i++) {
-                String strVector = this.generationCacheCalls[i].toString();
-                bw.write(this.fitnessFunctions[i] + ", " + strVector.substring(1, strVector.length() - 1) + "\n");
+                ExternalCacheObserver.writeStats(bw, this.fitnessFunctions[i] + ", ", this.generationCacheStats[i]);
             }
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
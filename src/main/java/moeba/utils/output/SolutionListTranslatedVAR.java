@@ -1,6 +1,6 @@
 package moeba.utils.output;
 
-import moeba.StaticUtils;
+import moeba.bicluster.Bicluster;
 import moeba.representationwrapper.RepresentationWrapper;
 import org.uma.jmetal.solution.Solution;
 import org.uma.jmetal.solution.compositesolution.CompositeSolution;
@@ -9,7 +9,6 @@ import org.uma.jmetal.util.errorchecking.JMetalException;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 public class SolutionListTranslatedVAR {
@@ -41,10 +40,9 @@ public class SolutionListTranslatedVAR {
     }
 
     public void writeTranslatedSolution(BufferedWriter bufferedWriter, Solution<?> solution) throws IOException {
-        ArrayList<ArrayList<Integer>[]> biclusters = representationWrapper.getBiclustersFromRepresentation((CompositeSolution) solution);
+        List<Bicluster> biclusters = representationWrapper.getBiclusters((CompositeSolution) solution);
         for (int j = 0; j < biclusters.size(); j++) {
-            ArrayList<Integer>[] bicArray = biclusters.get(j);
-            String biclusterString = "Bicluster" + j + ": " + StaticUtils.biclusterToString(bicArray) + (j == biclusters.size() - 1 ? "" : ", ");
+            String biclusterString = "Bicluster" + j + ": " + biclusters.get(j) + (j == biclusters.size() - 1 ? "" : ", ");
             bufferedWriter.write(biclusterString);
         }
     }
@@ -0,0 +1,85 @@
+package moeba.utils.storage;
+
+/**
+ * Snapshot of the counters of a cache. Lookups through {@link CacheStorage#get} and
+ * {@link CacheStorage#computeIfAbsent} count as hits or misses. Misses of the latter either
+ * compute the value, which counts as a load with the time it took, or wait for another caller
+ * computing the same key, which counts as a wait and is work saved.
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long waitCount;
+    private final long loadCount;
+    private final long totalLoadTime;
+    private final long evictionCount;
+
+    public CacheStats(long hitCount, long missCount, long waitCount, long loadCount, long totalLoadTime, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.waitCount = waitCount;
+        this.loadCount = loadCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of misses that waited for the value computed by another caller
+     * instead of computing it again.
+     *
+     * @return The number of waits
+     */
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * Returns the number of lookups, hits and misses together.
+     *
+     * @return The number of lookups
+     */
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the fraction of lookups that were hits.
+     *
+     * @return The hit rate, or 1 if there were no lookups
+     */
+    public double getHitRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Returns the time spent computing the values of misses.
+     *
+     * @return The time in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", misses=" + missCount + ", waits=" + waitCount + ", loads=" + loadCount
+                + ", loadTime=" + totalLoadTime + "ns, evictions=" + evictionCount + "}";
+    }
+}
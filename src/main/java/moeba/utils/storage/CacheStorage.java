@@ -7,7 +7,27 @@ public interface CacheStorage<K,V> {
     public boolean containsKey(K key);
     public V get(K key);
     public void put(K key, V value);
-    public int getNumGetters();
+    public CacheStats getStats();
+
+    /**
+     * Stores the value of a key that missed, computed by the caller instead of through
+     * {@link #computeIfAbsent(Object, Function)}, and records its computation as a load.
+     *
+     * @param key The key
+     * @param value The value
+     * @param loadTime The time it took to compute the value, in nanoseconds
+     */
+    public void putLoaded(K key, V value, long loadTime);
+
+    /**
+     * Returns the value of a key, computing and storing it if it is absent. Concurrent callers
+     * for the same absent key compute it once: the first one computes it and the rest wait for
+     * its result.
+     *
+     * @param key The key
+     * @param mappingFunction Computes the value of the key, which must not look the key up in this cache
+     * @return The value
+     */
     public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction);
 
 }
@@ -0,0 +1,459 @@
+package moeba.utils.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import moeba.bicluster.BiclusterFingerprint;
+
+/**
+ * On-disk store of evaluations that outlives the JVM, so that runs on the same dataset do not
+ * evaluate again the solutions and biclusters evaluated by earlier runs. Each evaluation is a
+ * vector of doubles keyed by a namespace, which identifies the dataset and the objective, and a
+ * bicluster fingerprint.
+ * <p>
+ * Evaluations are appended to a single file, each record followed by its CRC32, and an index
+ * from keys to file positions is kept in memory. Appends take an exclusive lock on the file, so
+ * several processes can share it: each one indexes the records appended by the others before
+ * appending its own, and when a lookup misses, under a shared lock so that
+ * processes missing at once do not wait for each other. Lookups read the file without locking,
+ * since indexed records are never modified.
+ * <p>
+ * When the file grows over its size cap, it is compacted: the newest records are copied to a
+ * new file, up to three quarters of the cap, and the rest are evicted. The new file replaces
+ * the old one atomically, and processes still using the old one switch to it on their next
+ * append.
+ */
+public class EvaluationStore implements Closeable {
+    private static final int MAGIC = 0x4D455653; // "SVEM" in big-endian order
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    // Number of values, namespace, fingerprint and CRC32
+    private static final int RECORD_OVERHEAD = 4 + 8 + 16 + 4;
+    private static final int MAX_VALUES = 1024;
+
+    // Stores open in this JVM, shared since a JVM cannot hold two locks on the same file
+    private static final Map<Path, EvaluationStore> openStores = new HashMap<>();
+
+    private final Path path;
+    private final long maxBytes;
+    private final Map<Key, Long> index = new ConcurrentHashMap<>();
+    private volatile FileChannel channel;
+    // Identity of the open file, or null if the file system has none
+    private Object fileKey;
+    private volatile long indexedSize;
+    private int refCount;
+
+    private static final class Key {
+        private final long namespace;
+        private final long high;
+        private final long low;
+
+        private Key(long namespace, long high, long low) {
+            this.namespace = namespace;
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return namespace == other.namespace && high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(low ^ namespace * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    private EvaluationStore(Path path, long maxBytes) {
+        this.path = path;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens the store of a file, creating it if it does not exist. Stores of the same file are
+     * shared within the JVM, and must be closed once per call to this method.
+     *
+     * @param path The file of the store
+     * @param maxBytes Size of the file from which it is compacted
+     * @return The store
+     */
+    public static EvaluationStore open(Path path, long maxBytes) {
+        if (maxBytes < HEADER_BYTES) throw new IllegalArgumentException("The size cap of the evaluation store is too small: " + maxBytes);
+        Path absolute = path.toAbsolutePath().normalize();
+        synchronized (openStores) {
+            EvaluationStore store = openStores.get(absolute);
+            if (store == null) {
+                store = new EvaluationStore(absolute, maxBytes);
+                try {
+                    store.reopen();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                openStores.put(absolute, store);
+            }
+            store.refCount++;
+            return store;
+        }
+    }
+
+    /**
+     * Computes the namespace of the evaluations of an objective on a dataset.
+     *
+     * @param datasetHash Hash of the content of the dataset
+     * @param objective The objective, canonicalised with {@link #canonicalObjective(String)}
+     * @return The namespace
+     */
+    public static long namespace(String datasetHash, String objective) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(datasetHash.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(objective.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the canonical text of an objective, with its sub-parameters, so that equivalent
+     * specifications share their evaluations: lowercase, without blanks, and with the
+     * sub-parameters of each element sorted by name.
+     *
+     * @param objective The objective, such as {@code BiclusterSizeNormComp(coherenceWeight=0.5)}
+     * @return The canonical text
+     */
+    public static String canonicalObjective(String objective) {
+        String text = objective.toLowerCase().replaceAll("\\s+", "");
+        StringBuilder res = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            int open = text.indexOf('(', i);
+            if (open < 0) {
+                res.append(text, i, text.length());
+                break;
+            }
+            int close = text.indexOf(')', open);
+            if (close < 0) close = text.length();
+            String[] params = text.substring(open + 1, close).split(",");
+            Arrays.sort(params);
+            res.append(text, i, open).append('(').append(String.join(",", params)).append(')');
+            i = close + 1;
+        }
+        return res.toString();
+    }
+
+    /**
+     * Returns an evaluation, indexing first the records appended by other processes if it is
+     * not known.
+     *
+     * @param namespace The namespace of the evaluation
+     * @param key The fingerprint of the evaluated solution or bicluster
+     * @return The values, or null if the evaluation is not stored
+     */
+    public double[] get(long namespace, BiclusterFingerprint key) {
+        Key k = new Key(namespace, key.getHigh(), key.getLow());
+        Long position = index.get(k);
+        if (position == null) {
+            try {
+                if (channel.size() <= indexedSize) return null;
+            } catch (IOException e) {
+                // Closed by a compaction in progress, after which the index is complete again
+            }
+            try {
+                refresh();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            position = index.get(k);
+            if (position == null) return null;
+        }
+        return read(k, position);
+    }
+
+    /**
+     * Tells whether an evaluation is stored.
+     *
+     * @param namespace The namespace of the evaluation
+     * @param key The fingerprint of the evaluated solution or bicluster
+     * @return True if it is stored
+     */
+    public boolean contains(long namespace, BiclusterFingerprint key) {
+        return get(namespace, key) != null;
+    }
+
+    /**
+     * Appends an evaluation, unless already stored, compacting the file if it goes over the
+     * size cap.
+     *
+     * @param namespace The namespace of the evaluation
+     * @param key The fingerprint of the evaluated solution or bicluster
+     * @param values The values of the evaluation
+     */
+    public void put(long namespace, BiclusterFingerprint key, double[] values) {
+        if (values.length > MAX_VALUES) throw new IllegalArgumentException("Too many values for an evaluation: " + values.length);
+        Key k = new Key(namespace, key.getHigh(), key.getLow());
+        if (index.containsKey(k)) return;
+        ByteBuffer record = encode(k, values);
+        try {
+            synchronized (this) {
+                FileLock lock = lockCurrentFile(false);
+                try {
+                    indexTail(true);
+                    if (index.containsKey(k)) return;
+                    long position = channel.size();
+                    while (record.hasRemaining()) {
+                        channel.write(record, position + record.position());
+                    }
+                    indexedSize = position + record.limit();
+                    index.put(k, position);
+                    if (indexedSize > maxBytes) compactLocked();
+                } finally {
+                    release(lock);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Rewrites the file with the newest records that fit in three quarters of the size cap.
+     */
+    public void compact() {
+        try {
+            synchronized (this) {
+                FileLock lock = lockCurrentFile(false);
+                try {
+                    indexTail(true);
+                    compactLocked();
+                } finally {
+                    release(lock);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the number of evaluations known to this process.
+     *
+     * @return The number of indexed evaluations
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Releases this reference to the store, closing the file once every reference is released.
+     */
+    @Override
+    public void close() {
+        synchronized (openStores) {
+            if (--refCount > 0) return;
+            openStores.remove(path);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized void refresh() throws IOException {
+        FileLock lock = lockCurrentFile(true);
+        try {
+            indexTail(false);
+        } finally {
+            release(lock);
+        }
+    }
+
+    // Locks the file, reopening it first if another process replaced it while compacting
+    private FileLock lockCurrentFile(boolean shared) throws IOException {
+        while (true) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, shared);
+            if (fileKey == null || (Files.exists(path) && fileKey.equals(getFileKey()))) return lock;
+            lock.release();
+            reopen();
+        }
+    }
+
+    // The lock is already released if a compaction closed its channel
+    private static void release(FileLock lock) throws IOException {
+        if (lock.isValid()) lock.release();
+    }
+
+    private Object getFileKey() throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    private void reopen() throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        FileChannel previous = channel;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (previous != null) previous.close();
+        fileKey = getFileKey();
+        index.clear();
+        indexedSize = 0;
+        FileLock lock = channel.lock();
+        try {
+            indexTail(true);
+        } finally {
+            release(lock);
+        }
+    }
+
+    // Indexes the records after the last indexed one. Must be called holding the file lock, which
+    // must be exclusive to write the header of an empty file or truncate an interrupted append
+    private void indexTail(boolean exclusive) throws IOException {
+        long size = channel.size();
+        if (indexedSize == 0) {
+            if (size < HEADER_BYTES) {
+                if (!exclusive) return;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                indexedSize = HEADER_BYTES;
+                return;
+            }
+            ByteBuffer header = readFully(0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not an evaluation store: " + path);
+            }
+            indexedSize = HEADER_BYTES;
+        }
+
+        long position = indexedSize;
+        ByteBuffer count = ByteBuffer.allocate(4);
+        while (position + RECORD_OVERHEAD <= size) {
+            count.clear();
+            channel.read(count, position);
+            int numValues = count.getInt(0);
+            long length = RECORD_OVERHEAD + 8L * numValues;
+            if (numValues < 0 || numValues > MAX_VALUES || position + length > size) break;
+            ByteBuffer record = readFully(position, (int) length);
+            if (!checksumMatches(record)) break;
+            record.position(4);
+            index.put(new Key(record.getLong(), record.getLong(), record.getLong()), position);
+            position += length;
+        }
+        // Whatever follows the last valid record was left by an interrupted append
+        if (position < size && exclusive) channel.truncate(position);
+        indexedSize = position;
+    }
+
+    private void compactLocked() throws IOException {
+        List<Map.Entry<Key, Long>> entries = new ArrayList<>(index.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        long budget = maxBytes * 3 / 4 - HEADER_BYTES;
+        List<ByteBuffer> kept = new ArrayList<>();
+        for (Map.Entry<Key, Long> entry : entries) {
+            ByteBuffer count = readFully(entry.getValue(), 4);
+            int length = RECORD_OVERHEAD + 8 * count.getInt();
+            if (length > budget) break;
+            budget -= length;
+            kept.add(readFully(entry.getValue(), length));
+        }
+
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                out.write(header);
+                // Oldest first, so that the next compaction evicts them first again
+                for (int i = kept.size() - 1; i >= 0; i--) {
+                    ByteBuffer record = kept.get(i);
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                }
+                out.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // The lock on the old file is released when its channel is closed
+        reopen();
+    }
+
+    private double[] read(Key key, long position) {
+        try {
+            FileChannel current = channel;
+            ByteBuffer count = ByteBuffer.allocate(4);
+            current.read(count, position);
+            int numValues = count.getInt(0);
+            if (numValues < 0 || numValues > MAX_VALUES) return null;
+            ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + 8 * numValues);
+            while (record.hasRemaining()) {
+                if (current.read(record, position + record.position()) < 0) return null;
+            }
+            record.flip();
+            if (!checksumMatches(record)) return null;
+            record.position(4);
+            if (record.getLong() != key.namespace || record.getLong() != key.high || record.getLong() != key.low) return null;
+            double[] res = new double[numValues];
+            for (int i = 0; i < numValues; i++) {
+                res[i] = record.getDouble();
+            }
+            return res;
+        } catch (IOException e) {
+            // The channel was closed by a compaction in progress. The record is in the new file
+            Long moved = index.get(key);
+            return moved == null || moved == position ? null : read(key, moved);
+        }
+    }
+
+    private static ByteBuffer encode(Key key, double[] values) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + 8 * values.length);
+        record.putInt(values.length).putLong(key.namespace).putLong(key.high).putLong(key.low);
+        for (double value : values) {
+            record.putDouble(value);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static boolean checksumMatches(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.limit() - 4);
+        return record.getInt(record.limit() - 4) == (int) crc.getValue();
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer res = ByteBuffer.allocate(length);
+        while (res.hasRemaining()) {
+            if (channel.read(res, position + res.position()) < 0) throw new IOException("Truncated evaluation store: " + path);
+        }
+        res.flip();
+        return res;
+    }
+}
@@ -0,0 +1,76 @@
+package moeba.utils.storage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Loads of the absent keys of a cache that are in progress, so that each key is computed once
+ * among concurrent callers: the first one computes the value and the rest wait for it. Once the
+ * population converges, asynchronous workers often get identical offspring at the same time, and
+ * without it every one of them pays the full evaluation.
+ * <p>
+ * The computation of a key must not look up the same key in the same cache, which would wait
+ * for itself.
+ */
+public final class SingleFlight<K,V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the value of a key in a cache, computing and storing it if it is absent. Hits,
+     * misses, loads and misses that waited for another caller are recorded in the counters.
+     *
+     * @param key The key
+     * @param lookup Reads the value of a key from the cache, or null if it is absent
+     * @param mappingFunction Computes the value of an absent key
+     * @param store Stores a computed value in the cache
+     * @param stats The counters of the cache
+     * @return The value, or null if the mapping function returned null
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> lookup, Function<? super K, ? extends V> mappingFunction,
+            BiConsumer<? super K, ? super V> store, StatsCounter stats) {
+        V value = lookup.apply(key);
+        if (value != null) {
+            stats.recordHit();
+            return value;
+        }
+        stats.recordMiss();
+
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            stats.recordWait();
+            return await(running);
+        }
+        try {
+            // A load that ended after the first lookup has already stored the value
+            value = lookup.apply(key);
+            if (value == null) {
+                long startTime = System.nanoTime();
+                value = mappingFunction.apply(key);
+                stats.recordLoad(System.nanoTime() - startTime);
+                if (value != null) store.accept(key, value);
+            }
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // The caller that computed the value failed, and so does every caller that waited for it
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+}
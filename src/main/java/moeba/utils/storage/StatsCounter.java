@@ -0,0 +1,54 @@
+package moeba.utils.storage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters behind the {@link CacheStats} of a cache. They are striped, so threads
+ * recording at once do not contend on a single variable.
+ */
+public final class StatsCounter {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    /**
+     * Records a miss served by waiting for another caller computing the same key.
+     */
+    public void recordWait() {
+        waitCount.increment();
+    }
+
+    /**
+     * Records the computation of the value of a miss.
+     *
+     * @param loadTime The time it took, in nanoseconds
+     */
+    public void recordLoad(long loadTime) {
+        loadCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    public void recordEviction() {
+        evictionCount.increment();
+    }
+
+    /**
+     * Returns the current value of the counters.
+     *
+     * @return The snapshot
+     */
+    public CacheStats snapshot() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), waitCount.sum(), loadCount.sum(), totalLoadTime.sum(), evictionCount.sum());
+    }
+}
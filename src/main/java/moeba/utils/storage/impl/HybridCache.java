@@ -1,21 +1,117 @@
 package moeba.utils.storage.impl;
 
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
+import moeba.utils.storage.CacheStats;
 import moeba.utils.storage.CacheStorage;
+import moeba.utils.storage.SingleFlight;
+import moeba.utils.storage.StatsCounter;
 import org.ehcache.Cache;
 import org.ehcache.CacheManager;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheEventListenerConfigurationBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.event.EventType;
+import org.ehcache.spi.serialization.Serializer;
 
+/**
+ * Ehcache-backed cache with up to three tiers: a heap tier, sized in entries, backed by an
+ * off-heap tier and a disk tier, sized in megabytes. Entries evicted from the heap move down to
+ * the next tier instead of being lost, and are brought back to the heap when read.
+ * <p>
+ * Off-heap and disk tiers store keys and values serialized. Types without a built-in Ehcache
+ * serializer fall back to Java serialization unless a serializer is given. Evictions counted in
+ * the statistics are those of the last tier, when entries leave the cache.
+ */
 public class HybridCache<K,V> implements CacheStorage<K,V> {
     private Cache<K,V> cache;
-    private AtomicInteger numGetters;
+    private StatsCounter stats;
+    private SingleFlight<K,V> inFlight;
+
+    /**
+     * Sizes of the tiers of a cache. The heap tier is sized in entries, since sizing it in bytes
+     * makes Ehcache walk the object graph of every stored entry.
+     */
+    public static class Tiers {
+        private final long heapEntries;
+        private final long offheapMegabytes;
+        private final long diskMegabytes;
+
+        /**
+         * Constructs the sizes of the tiers.
+         *
+         * @param heapEntries Maximum number of entries on the heap
+         * @param offheapMegabytes Size of the off-heap tier, or 0 for none
+         * @param diskMegabytes Size of the disk tier, or 0 for none. It must be larger than the off-heap tier
+         */
+        public Tiers(long heapEntries, long offheapMegabytes, long diskMegabytes) {
+            if (heapEntries <= 0) throw new IllegalArgumentException("The heap tier must hold at least one entry");
+            if (offheapMegabytes < 0 || diskMegabytes < 0) throw new IllegalArgumentException("Tier sizes must not be negative");
+            if (diskMegabytes > 0 && offheapMegabytes >= diskMegabytes) {
+                throw new IllegalArgumentException("The disk tier must be larger than the off-heap tier");
+            }
+            this.heapEntries = heapEntries;
+            this.offheapMegabytes = offheapMegabytes;
+            this.diskMegabytes = diskMegabytes;
+        }
+
+        public long getHeapEntries() {
+            return heapEntries;
+        }
+
+        public long getOffheapMegabytes() {
+            return offheapMegabytes;
+        }
+
+        public long getDiskMegabytes() {
+            return diskMegabytes;
+        }
+
+        /**
+         * Tells whether the cache needs a cache manager with a persistence directory.
+         *
+         * @return True if there is a disk tier
+         */
+        public boolean hasDisk() {
+            return diskMegabytes > 0;
+        }
+
+        private ResourcePoolsBuilder toResourcePools() {
+            ResourcePoolsBuilder res = ResourcePoolsBuilder.newResourcePoolsBuilder().heap(heapEntries, EntryUnit.ENTRIES);
+            if (offheapMegabytes > 0) res = res.offheap(offheapMegabytes, MemoryUnit.MB);
+            if (diskMegabytes > 0) res = res.disk(diskMegabytes, MemoryUnit.MB, false);
+            return res;
+        }
+    }
 
     public HybridCache(CacheManager cacheManager, String cacheName, Class<K> keyClass, Class<V> valueClass, int heapSize) {
-        this.cache = cacheManager.createCache(cacheName, CacheConfigurationBuilder.newCacheConfigurationBuilder(keyClass, valueClass, ResourcePoolsBuilder.heap(heapSize)).build());
-        this.numGetters = new AtomicInteger();
+        this(cacheManager, cacheName, keyClass, valueClass, new Tiers(heapSize, 0, 0), null, null);
+    }
+
+    /**
+     * Creates a cache in a cache manager, which must have a persistence directory if the cache
+     * has a disk tier.
+     *
+     * @param cacheManager The cache manager, already initialised
+     * @param cacheName The name of the cache, unique in the manager
+     * @param keyClass The class of the keys
+     * @param valueClass The class of the values
+     * @param tiers The sizes of the tiers
+     * @param keySerializer The serializer of the keys below the heap, or null for the default one
+     * @param valueSerializer The serializer of the values below the heap, or null for the default one
+     */
+    public HybridCache(CacheManager cacheManager, String cacheName, Class<K> keyClass, Class<V> valueClass, Tiers tiers,
+            Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        CacheConfigurationBuilder<K,V> builder = CacheConfigurationBuilder.newCacheConfigurationBuilder(keyClass, valueClass, tiers.toResourcePools());
+        if (keySerializer != null) builder = builder.withKeySerializer(keySerializer);
+        if (valueSerializer != null) builder = builder.withValueSerializer(valueSerializer);
+        this.stats = new StatsCounter();
+        this.inFlight = new SingleFlight<>();
+        builder = builder.withService(CacheEventListenerConfigurationBuilder
+                .newEventListenerConfiguration(event -> stats.recordEviction(), EventType.EVICTED).unordered().synchronous());
+        this.cache = cacheManager.createCache(cacheName, builder.build());
     }
 
     @Override
@@ -25,8 +121,10 @@ public class HybridCache<K,V> implements CacheStorage<K,V> {
 
     @Override
     public V get(K key) {
-        numGetters.incrementAndGet();
-        return cache.get(key);
+        V value = cache.get(key);
+        if (value == null) stats.recordMiss();
+        else stats.recordHit();
+        return value;
     }
 
     @Override
@@ -35,18 +133,19 @@ public class HybridCache<K,V> implements CacheStorage<K,V> {
     }
 
     @Override
-    public int getNumGetters() {
-        return numGetters.get();
+    public void putLoaded(K key, V value, long loadTime) {
+        stats.recordLoad(loadTime);
+        put(key, value);
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats.snapshot();
     }
 
     @Override
     public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
-        V value = cache.get(key);
-        if (value == null) {
-            value = mappingFunction.apply(key);
-            cache.put(key, value);
-        }
-        return value;
+        return inFlight.computeIfAbsent(key, cache::get, mappingFunction, cache::put, stats);
     }
 
 }
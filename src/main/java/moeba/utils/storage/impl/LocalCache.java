@@ -1,18 +1,103 @@
 package moeba.utils.storage.impl;
 
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
+import moeba.utils.storage.CacheStats;
 import moeba.utils.storage.CacheStorage;
+import moeba.utils.storage.SingleFlight;
+import moeba.utils.storage.StatsCounter;
 
+/**
+ * Heap cache backed by a {@link ConcurrentHashMap}, unbounded or bounded in entries or in an
+ * estimated number of bytes.
+ * <p>
+ * Bounded caches follow the W-TinyLFU policy. New entries go to a small LRU window, and those
+ * leaving it compete for a place in the main region with its least recently used entry: the one
+ * accessed more often, as estimated by a compact frequency sketch, stays. The main region is a
+ * segmented LRU, where entries accessed again are protected from eviction. This keeps biclusters
+ * that reappear generation after generation and lets one-off ones go, which plain LRU does not.
+ * <p>
+ * Lookups do not lock. Their effect on the policy is recorded only when the policy lock is free,
+ * so under contention some of them are not counted, which only makes the policy less precise.
+ * Values of absent keys are computed once among concurrent callers, see {@link SingleFlight}.
+ */
 public class LocalCache<K,V> implements CacheStorage<K,V> {
-    private ConcurrentHashMap<K,V> cache;
-    private AtomicInteger numGetters;
+    /**
+     * Estimated bytes taken by an entry besides its key and value, to be added by weighers that
+     * bound a cache in bytes.
+     */
+    public static final long ENTRY_OVERHEAD = 96;
 
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = 3;
+
+    /**
+     * Weight of an entry in the maximum of a cache, such as its estimated size in bytes.
+     */
+    @FunctionalInterface
+    public interface Weigher<K,V> {
+        long weigh(K key, V value);
+    }
+
+    private final ConcurrentHashMap<K, Node<K,V>> cache;
+    private final StatsCounter stats;
+    private final SingleFlight<K,V> inFlight;
+
+    // Policy of bounded caches, guarded by the lock
+    private final boolean bounded;
+    private final long maximum;
+    private final Weigher<? super K, ? super V> weigher;
+    private final ReentrantLock lock;
+    private final FrequencySketch sketch;
+    private final AccessOrder<K,V> window;
+    private final AccessOrder<K,V> probation;
+    private final AccessOrder<K,V> protectedOrder;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long weight;
+
+    /**
+     * Constructs an unbounded cache.
+     */
     public LocalCache() {
+        this(Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Constructs a cache bounded in entries.
+     *
+     * @param maximumEntries Maximum number of entries
+     */
+    public LocalCache(long maximumEntries) {
+        this(maximumEntries, (key, value) -> 1);
+    }
+
+    /**
+     * Constructs a cache bounded in the total weight of its entries.
+     *
+     * @param maximumWeight Maximum total weight
+     * @param weigher Weight of each entry, or null for an unbounded cache
+     */
+    public LocalCache(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        if (maximumWeight <= 0) throw new IllegalArgumentException("The maximum of a cache must be positive");
         this.cache = new ConcurrentHashMap<>();
-        this.numGetters = new AtomicInteger();
+        this.stats = new StatsCounter();
+        this.inFlight = new SingleFlight<>();
+        this.bounded = weigher != null;
+        this.maximum = maximumWeight;
+        this.weigher = weigher;
+        this.lock = new ReentrantLock();
+        this.sketch = new FrequencySketch();
+        this.window = new AccessOrder<>();
+        this.probation = new AccessOrder<>();
+        this.protectedOrder = new AccessOrder<>();
+        // 1% of the maximum for the window and 80% of the rest for protected entries
+        this.windowMaximum = maximumWeight / 100;
+        this.protectedMaximum = (maximumWeight - windowMaximum) / 5 * 4;
     }
 
     @Override
@@ -22,23 +107,302 @@ public class LocalCache<K,V> implements CacheStorage<K,V> {
 
     @Override
     public V get(K key) {
-        numGetters.incrementAndGet();
-        return cache.get(key);
+        V value = lookup(key);
+        if (value == null) stats.recordMiss();
+        else stats.recordHit();
+        return value;
     }
 
     @Override
     public void put(K key, V value) {
-        cache.put(key, value);
+        if (!bounded) {
+            cache.put(key, new Node<>(key, value));
+            return;
+        }
+        lock.lock();
+        try {
+            Node<K,V> node = cache.get(key);
+            if (node == null) {
+                insert(key, value);
+            } else {
+                AccessOrder<K,V> order = orderOf(node);
+                order.remove(node);
+                long newWeight = weigher.weigh(key, value);
+                weight += newWeight - node.weight;
+                node.weight = newWeight;
+                node.value = value;
+                order.addLast(node);
+                onAccess(node);
+                evict(null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putLoaded(K key, V value, long loadTime) {
+        stats.recordLoad(loadTime);
+        put(key, value);
     }
 
     @Override
-    public int getNumGetters() {
-        return numGetters.get();
+    public CacheStats getStats() {
+        return stats.snapshot();
     }
 
     @Override
     public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
-        return cache.computeIfAbsent(key, mappingFunction);
+        return inFlight.computeIfAbsent(key, this::lookup, mappingFunction, this::store, stats);
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the total weight of the entries of a bounded cache.
+     *
+     * @return The weight, or 0 if the cache is unbounded
+     */
+    public long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private V lookup(K key) {
+        Node<K,V> node = cache.get(key);
+        if (node == null) return null;
+        recordAccess(node);
+        return node.value;
+    }
+
+    private void store(K key, V value) {
+        if (!bounded) {
+            cache.putIfAbsent(key, new Node<>(key, value));
+            return;
+        }
+        lock.lock();
+        try {
+            if (!cache.containsKey(key)) insert(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordAccess(Node<K,V> node) {
+        if (bounded && lock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void insert(K key, V value) {
+        Node<K,V> node = new Node<>(key, value);
+        node.weight = weigher.weigh(key, value);
+        cache.put(key, node);
+        sketch.ensureCapacity(cache.size());
+        sketch.increment(key);
+        node.queue = WINDOW;
+        window.addLast(node);
+        weight += node.weight;
+
+        // Entries leaving the window are candidates to the main region, at the end of probation
+        Node<K,V> firstCandidate = null;
+        while (window.weight > windowMaximum && window.first != null) {
+            Node<K,V> candidate = window.first;
+            window.remove(candidate);
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+            if (firstCandidate == null) firstCandidate = candidate;
+        }
+        evict(firstCandidate);
     }
 
+    private void onAccess(Node<K,V> node) {
+        if (node.queue == REMOVED) return;
+        sketch.increment(node.key);
+        if (node.queue == PROBATION) {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedOrder.addLast(node);
+            while (protectedOrder.weight > protectedMaximum && protectedOrder.first != node) {
+                Node<K,V> demoted = protectedOrder.first;
+                protectedOrder.remove(demoted);
+                demoted.queue = PROBATION;
+                probation.addLast(demoted);
+            }
+        } else if (node.queue == WINDOW) {
+            window.moveToLast(node);
+        } else {
+            protectedOrder.moveToLast(node);
+        }
+    }
+
+    /**
+     * Evicts entries until the cache fits in its maximum. Each candidate is compared with the
+     * least recently used entry of probation, and the less frequent of them is evicted.
+     *
+     * @param candidate First of the entries at the end of probation that just left the window, or null
+     */
+    private void evict(Node<K,V> candidate) {
+        while (weight > maximum) {
+            Node<K,V> victim = probation.first;
+            if (victim == null) {
+                victim = protectedOrder.first != null ? protectedOrder.first : window.first;
+            } else if (candidate != null) {
+                Node<K,V> next = candidate.next;
+                if (candidate == victim || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                    victim = candidate;
+                }
+                candidate = next;
+            }
+            remove(victim);
+        }
+    }
+
+    private void remove(Node<K,V> node) {
+        orderOf(node).remove(node);
+        node.queue = REMOVED;
+        weight -= node.weight;
+        cache.remove(node.key, node);
+        stats.recordEviction();
+    }
+
+    private AccessOrder<K,V> orderOf(Node<K,V> node) {
+        return node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedOrder;
+    }
+
+    private static final class Node<K,V> {
+        private final K key;
+        private volatile V value;
+        // Guarded by the lock of the cache
+        private long weight;
+        private int queue;
+        private Node<K,V> prev;
+        private Node<K,V> next;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Entries of a region from the least to the most recently used, with their total weight.
+     */
+    private static final class AccessOrder<K,V> {
+        private Node<K,V> first;
+        private Node<K,V> last;
+        private long weight;
+
+        private void addLast(Node<K,V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) first = node;
+            else last.next = node;
+            last = node;
+            weight += node.weight;
+        }
+
+        private void remove(Node<K,V> node) {
+            if (node.prev == null) first = node.next;
+            else node.prev.next = node.next;
+            if (node.next == null) last = node.prev;
+            else node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        private void moveToLast(Node<K,V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * Count-min sketch with four 4-bit counters per key, which estimates how often keys were
+     * accessed recently. Counters are halved every ten accesses per slot, so old popularity fades.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private long[] table;
+        private int sampleSize;
+        private int size;
+
+        /**
+         * Grows the table to count about as many keys as there are entries. Growing forgets the
+         * frequencies counted so far.
+         *
+         * @param entries Number of entries of the cache
+         */
+        void ensureCapacity(long entries) {
+            int length = Integer.highestOneBit((int) Math.max(8, Math.min(entries, 1 << 29)) - 1) << 1;
+            if (table == null || table.length < length) {
+                table = new long[length];
+                sampleSize = 10 * length;
+                size = 0;
+            }
+        }
+
+        int frequency(Object key) {
+            long hash = spread(key.hashCode());
+            int res = 15;
+            for (int i = 0; i < SEEDS.length; i++) {
+                res = Math.min(res, (int) ((table[index(hash, i)] >>> offset(hash, i)) & 15L));
+            }
+            return res;
+        }
+
+        void increment(Object key) {
+            long hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                int offset = offset(hash, i);
+                if (((table[index] >>> offset) & 15L) != 15L) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                size /= 2;
+            }
+        }
+
+        private static long spread(int hashCode) {
+            long x = hashCode * 0x9E3779B97F4A7C15L;
+            return x ^ (x >>> 29);
+        }
+
+        private int index(long hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            return (int) (h ^ (h >>> 32)) & (table.length - 1);
+        }
+
+        // Each row of the sketch takes its own four counters of every long
+        private static int offset(long hash, int i) {
+            return ((i << 2) + (int) ((hash >>> (i << 3)) & 3)) << 2;
+        }
+    }
 }
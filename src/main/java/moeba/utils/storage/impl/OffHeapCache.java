@@ -0,0 +1,362 @@
+package moeba.utils.storage.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.utils.storage.CacheStats;
+import moeba.utils.storage.CacheStorage;
+import moeba.utils.storage.SingleFlight;
+import moeba.utils.storage.StatsCounter;
+
+/**
+ * External cache kept in fixed-size off-heap tables, with no object per entry. Each slot holds
+ * the two halves of the fingerprint of a solution, an occupied flag and its objectives as
+ * doubles, so the whole memory of the cache is allocated up front and millions of evaluations
+ * put no pressure on the garbage collector.
+ * <p>
+ * Keys are spread over segments, each an open-addressing table with linear probing and its own
+ * lock, so inserts into different segments do not contend. Lookups do not lock unless an insert
+ * changed their segment meanwhile. Full segments evict with the clock policy: the hand sweeps
+ * the slots, giving a second chance to entries read since its last pass. Fingerprints are
+ * compared by their 128 bits only, even exact ones, since their biclusters are not stored.
+ * <p>
+ * The tables are freed when the cache is closed, which must not happen while it is in use.
+ */
+public class OffHeapCache implements CacheStorage<BiclusterFingerprint, Double[]>, AutoCloseable {
+    // Segments are kept below the 2 GB limit of a buffer
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int HIGH_OFFSET = 0;
+    private static final int LOW_OFFSET = 8;
+    private static final int FLAG_OFFSET = 16;
+    private static final int VALUES_OFFSET = 24;
+    // Frees a direct buffer at once, or null if the JVM does not allow it
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final int width;
+    private final int slotBytes;
+    private final Segment[] segments;
+    private final StatsCounter stats;
+    private final SingleFlight<BiclusterFingerprint, Double[]> inFlight;
+
+    /**
+     * Allocates the tables of a cache.
+     *
+     * @param width Number of objectives of every entry
+     * @param memoryBytes Memory of the tables, off the heap
+     * @param concurrency Expected number of threads writing at once, which sets the minimum number of segments
+     */
+    public OffHeapCache(int width, long memoryBytes, int concurrency) {
+        if (width <= 0) throw new IllegalArgumentException("Entries must have at least one objective");
+        this.width = width;
+        this.slotBytes = VALUES_OFFSET + 8 * width;
+        long numSlots = memoryBytes / slotBytes;
+        int numSegments = 1;
+        while (numSegments < concurrency || numSlots / numSegments * slotBytes > MAX_SEGMENT_BYTES) {
+            numSegments <<= 1;
+        }
+        int segmentSlots = (int) (numSlots / numSegments);
+        if (segmentSlots < 2) throw new IllegalArgumentException("The memory of the cache does not fit two entries per segment");
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(segmentSlots);
+        }
+        this.stats = new StatsCounter();
+        this.inFlight = new SingleFlight<>();
+    }
+
+    @Override
+    public boolean containsKey(BiclusterFingerprint key) {
+        return segmentOf(key).read(key, null);
+    }
+
+    @Override
+    public Double[] get(BiclusterFingerprint key) {
+        Double[] value = lookup(key);
+        if (value == null) stats.recordMiss();
+        else stats.recordHit();
+        return value;
+    }
+
+    @Override
+    public void put(BiclusterFingerprint key, Double[] value) {
+        if (value.length != width) throw new IllegalArgumentException("Expected " + width + " objectives, found " + value.length);
+        segmentOf(key).write(key, value);
+    }
+
+    @Override
+    public void putLoaded(BiclusterFingerprint key, Double[] value, long loadTime) {
+        stats.recordLoad(loadTime);
+        put(key, value);
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats.snapshot();
+    }
+
+    @Override
+    public Double[] computeIfAbsent(BiclusterFingerprint key, Function<? super BiclusterFingerprint, ? extends Double[]> mappingFunction) {
+        return inFlight.computeIfAbsent(key, this::lookup, mappingFunction, this::put, stats);
+    }
+
+    /**
+     * Frees the tables. The cache is empty afterwards, and puts fail.
+     */
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return The number of entries
+     */
+    public long size() {
+        long res = 0;
+        for (Segment segment : segments) {
+            res += segment.getSize();
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of entries the cache holds before evicting.
+     *
+     * @return The capacity
+     */
+    public long getCapacity() {
+        long res = 0;
+        for (Segment segment : segments) {
+            res += segment.maxSize;
+        }
+        return res;
+    }
+
+    /**
+     * Returns the memory taken by the tables, off the heap, and by their reference bits, on it.
+     *
+     * @return The size in bytes
+     */
+    public long getMemorySize() {
+        return (long) segments.length * segments[0].numSlots * (slotBytes + 1);
+    }
+
+    private Double[] lookup(BiclusterFingerprint key) {
+        Double[] res = new Double[width];
+        return segmentOf(key).read(key, res) ? res : null;
+    }
+
+    private Segment segmentOf(BiclusterFingerprint key) {
+        return segments[(int) (key.getHigh() >>> 40) & (segments.length - 1)];
+    }
+
+    /**
+     * Open-addressing table with linear probing, holding at most three quarters of its slots so
+     * that probes end soon at an empty slot.
+     */
+    private final class Segment {
+        // Null once the cache is closed
+        private ByteBuffer table;
+        // Written by lookups without the lock, which at worst gives an extra chance to an entry
+        private final byte[] referenced;
+        private final int numSlots;
+        private final int maxSize;
+        private final StampedLock lock;
+        private int size;
+        private int hand;
+
+        private Segment(int numSlots) {
+            this.table = ByteBuffer.allocateDirect(numSlots * slotBytes);
+            this.referenced = new byte[numSlots];
+            this.numSlots = numSlots;
+            this.maxSize = Math.max(1, numSlots / 4 * 3);
+            this.lock = new StampedLock();
+        }
+
+        /**
+         * Looks a key up, optimistically first and under the read lock if an insert interfered.
+         *
+         * @param key The key
+         * @param values Array receiving the objectives, or null to only check the key
+         * @return True if the key was found
+         */
+        private boolean read(BiclusterFingerprint key, Double[] values) {
+            long stamp = lock.tryOptimisticRead();
+            int slot = find(key, values);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    slot = find(key, values);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            if (slot < 0) return false;
+            if (values != null) referenced[slot] = 1;
+            return true;
+        }
+
+        private void write(BiclusterFingerprint key, Double[] values) {
+            long stamp = lock.writeLock();
+            try {
+                if (table == null) throw new IllegalStateException("The cache is closed");
+                int slot = find(key, null);
+                if (slot < 0) {
+                    if (size >= maxSize) evict();
+                    slot = emptySlotOf(key);
+                    int offset = slot * slotBytes;
+                    table.putLong(offset + HIGH_OFFSET, key.getHigh());
+                    table.putLong(offset + LOW_OFFSET, key.getLow());
+                    table.putLong(offset + FLAG_OFFSET, 1L);
+                    referenced[slot] = 0;
+                    size++;
+                }
+                int offset = slot * slotBytes + VALUES_OFFSET;
+                for (int i = 0; i < width; i++) {
+                    table.putDouble(offset + 8 * i, values[i]);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void close() {
+            long stamp = lock.writeLock();
+            try {
+                if (table == null) return;
+                ByteBuffer freed = table;
+                table = null;
+                size = 0;
+                if (INVOKE_CLEANER != null) {
+                    try {
+                        INVOKE_CLEANER.invoke(UNSAFE, freed);
+                    } catch (ReflectiveOperationException e) {
+                        // Freed when the buffer is garbage collected instead
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private int getSize() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probes the slots of a key. Optimistic lookups may see the table halfway through a
+         * change, so probes give up after a full turn instead of relying on an empty slot.
+         *
+         * @param key The key
+         * @param values Array receiving the objectives if found, or null
+         * @return The slot of the key, or -1 if it is absent
+         */
+        private int find(BiclusterFingerprint key, Double[] values) {
+            ByteBuffer table = this.table;
+            if (table == null) return -1;
+            int slot = homeOf(key.getLow());
+            for (int probes = 0; probes < numSlots; probes++) {
+                int offset = slot * slotBytes;
+                if (table.getLong(offset + FLAG_OFFSET) == 0L) return -1;
+                if (table.getLong(offset + HIGH_OFFSET) == key.getHigh() && table.getLong(offset + LOW_OFFSET) == key.getLow()) {
+                    if (values != null) {
+                        for (int i = 0; i < width; i++) {
+                            values[i] = table.getDouble(offset + VALUES_OFFSET + 8 * i);
+                        }
+                    }
+                    return slot;
+                }
+                slot = slot + 1 == numSlots ? 0 : slot + 1;
+            }
+            return -1;
+        }
+
+        private int emptySlotOf(BiclusterFingerprint key) {
+            int slot = homeOf(key.getLow());
+            while (table.getLong(slot * slotBytes + FLAG_OFFSET) != 0L) {
+                slot = slot + 1 == numSlots ? 0 : slot + 1;
+            }
+            return slot;
+        }
+
+        private int homeOf(long low) {
+            return (int) Long.remainderUnsigned(low, numSlots);
+        }
+
+        /**
+         * Evicts the first entry found by the hand that was not read since its last pass,
+         * clearing the reference bits of those that were.
+         */
+        private void evict() {
+            while (true) {
+                int slot = hand;
+                hand = hand + 1 == numSlots ? 0 : hand + 1;
+                if (table.getLong(slot * slotBytes + FLAG_OFFSET) == 0L) continue;
+                if (referenced[slot] != 0) {
+                    referenced[slot] = 0;
+                    continue;
+                }
+                remove(slot);
+                stats.recordEviction();
+                return;
+            }
+        }
+
+        /**
+         * Empties a slot and shifts back the entries after it whose probes passed through it,
+         * so that no probe ends early at the emptied slot.
+         *
+         * @param slot The slot
+         */
+        private void remove(int slot) {
+            int free = slot;
+            int next = slot;
+            while (true) {
+                next = next + 1 == numSlots ? 0 : next + 1;
+                int offset = next * slotBytes;
+                if (table.getLong(offset + FLAG_OFFSET) == 0L) break;
+                int home = homeOf(table.getLong(offset + LOW_OFFSET));
+                boolean reachable = free <= next ? free < home && home <= next : free < home || home <= next;
+                if (reachable) continue;
+                for (int i = 0; i < slotBytes; i += 8) {
+                    table.putLong(free * slotBytes + i, table.getLong(offset + i));
+                }
+                referenced[free] = referenced[next];
+                free = next;
+            }
+            table.putLong(free * slotBytes + FLAG_OFFSET, 0L);
+            referenced[free] = 0;
+            size--;
+        }
+    }
+}
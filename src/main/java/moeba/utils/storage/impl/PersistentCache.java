@@ -0,0 +1,126 @@
+package moeba.utils.storage.impl;
+
+import java.util.function.Function;
+
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.utils.storage.CacheStats;
+import moeba.utils.storage.CacheStorage;
+import moeba.utils.storage.EvaluationStore;
+
+/**
+ * Read-through layer of an {@link EvaluationStore} below an in-memory cache. Lookups missing in
+ * memory are looked up in the store, and found values are brought to memory. New values are
+ * written to both, so later runs on the same dataset find them. Statistics are those of the
+ * in-memory cache, so values found in the store count as misses.
+ */
+public class PersistentCache<V> implements CacheStorage<BiclusterFingerprint, V> {
+    private final CacheStorage<BiclusterFingerprint, V> memory;
+    private final EvaluationStore store;
+    private final long namespace;
+    private final Function<V, double[]> encoder;
+    private final Function<double[], V> decoder;
+
+    /**
+     * Constructs the layer of a cache.
+     *
+     * @param memory The in-memory cache
+     * @param store The persistent store
+     * @param namespace The namespace of the evaluations of the cache in the store
+     * @param encoder Converts values into the vectors saved in the store
+     * @param decoder Converts the vectors saved in the store into values
+     */
+    public PersistentCache(CacheStorage<BiclusterFingerprint, V> memory, EvaluationStore store, long namespace,
+            Function<V, double[]> encoder, Function<double[], V> decoder) {
+        this.memory = memory;
+        this.store = store;
+        this.namespace = namespace;
+        this.encoder = encoder;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Returns the layer of an internal cache, which holds the score of each bicluster.
+     *
+     * @param memory The in-memory cache
+     * @param store The persistent store
+     * @param namespace The namespace of the objective in the store
+     * @return The layer
+     */
+    public static PersistentCache<Double> ofScores(CacheStorage<BiclusterFingerprint, Double> memory, EvaluationStore store, long namespace) {
+        return new PersistentCache<>(memory, store, namespace, value -> new double[] {value}, values -> values[0]);
+    }
+
+    /**
+     * Returns the layer of an external cache, which holds the objectives of each solution.
+     *
+     * @param memory The in-memory cache
+     * @param store The persistent store
+     * @param namespace The namespace of the objectives in the store
+     * @return The layer
+     */
+    public static PersistentCache<Double[]> ofObjectives(CacheStorage<BiclusterFingerprint, Double[]> memory, EvaluationStore store, long namespace) {
+        return new PersistentCache<>(memory, store, namespace, PersistentCache::unbox, PersistentCache::box);
+    }
+
+    @Override
+    public boolean containsKey(BiclusterFingerprint key) {
+        return memory.containsKey(key) || store.contains(namespace, key);
+    }
+
+    @Override
+    public V get(BiclusterFingerprint key) {
+        V value = memory.get(key);
+        if (value == null) {
+            double[] stored = store.get(namespace, key);
+            if (stored != null) {
+                value = decoder.apply(stored);
+                memory.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void put(BiclusterFingerprint key, V value) {
+        memory.put(key, value);
+        store.put(namespace, key, encoder.apply(value));
+    }
+
+    @Override
+    public void putLoaded(BiclusterFingerprint key, V value, long loadTime) {
+        memory.putLoaded(key, value, loadTime);
+        store.put(namespace, key, encoder.apply(value));
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return memory.getStats();
+    }
+
+    @Override
+    public V computeIfAbsent(BiclusterFingerprint key, Function<? super BiclusterFingerprint, ? extends V> mappingFunction) {
+        return memory.computeIfAbsent(key, k -> {
+            double[] stored = store.get(namespace, k);
+            if (stored != null) return decoder.apply(stored);
+            V value = mappingFunction.apply(k);
+            store.put(namespace, k, encoder.apply(value));
+            return value;
+        });
+    }
+
+    private static double[] unbox(Double[] values) {
+        double[] res = new double[values.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = values[i];
+        }
+        return res;
+    }
+
+    private static Double[] box(double[] values) {
+        Double[] res = new Double[values.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = values[i];
+        }
+        return res;
+    }
+}
@@ -0,0 +1,38 @@
+package moeba.utils.storage.serializer;
+
+import java.nio.ByteBuffer;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import moeba.bicluster.BiclusterFingerprint;
+
+/**
+ * Stores cache keys out of the heap as their two 64-bit halves. Read keys are not exact, so
+ * they are compared by their hashes only.
+ */
+public class BiclusterFingerprintSerializer implements Serializer<BiclusterFingerprint> {
+
+    public BiclusterFingerprintSerializer() {
+    }
+
+    // Constructor used by Ehcache when the serializer is configured by class
+    public BiclusterFingerprintSerializer(ClassLoader classLoader) {
+    }
+
+    @Override
+    public ByteBuffer serialize(BiclusterFingerprint fingerprint) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(fingerprint.getHigh()).putLong(fingerprint.getLow()).flip();
+        return buffer;
+    }
+
+    @Override
+    public BiclusterFingerprint read(ByteBuffer binary) {
+        return BiclusterFingerprint.fromBits(binary.getLong(), binary.getLong());
+    }
+
+    @Override
+    public boolean equals(BiclusterFingerprint fingerprint, ByteBuffer binary) {
+        return fingerprint.getHigh() == binary.getLong() && fingerprint.getLow() == binary.getLong();
+    }
+}
@@ -0,0 +1,48 @@
+package moeba.utils.storage.serializer;
+
+import java.nio.ByteBuffer;
+
+import org.ehcache.spi.serialization.Serializer;
+
+/**
+ * Stores the objectives of the external cache out of the heap as their length followed by
+ * their values, eight bytes each, instead of through Java serialization.
+ */
+public class DoubleArraySerializer implements Serializer<Double[]> {
+
+    public DoubleArraySerializer() {
+    }
+
+    // Constructor used by Ehcache when the serializer is configured by class
+    public DoubleArraySerializer(ClassLoader classLoader) {
+    }
+
+    @Override
+    public ByteBuffer serialize(Double[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 * values.length);
+        buffer.putInt(values.length);
+        for (Double value : values) {
+            buffer.putDouble(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public Double[] read(ByteBuffer binary) {
+        Double[] res = new Double[binary.getInt()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = binary.getDouble();
+        }
+        return res;
+    }
+
+    @Override
+    public boolean equals(Double[] values, ByteBuffer binary) {
+        if (binary.getInt() != values.length) return false;
+        for (Double value : values) {
+            if (Double.doubleToLongBits(value) != Double.doubleToLongBits(binary.getDouble())) return false;
+        }
+        return true;
+    }
+}
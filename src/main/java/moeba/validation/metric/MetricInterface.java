@@ -8,9 +8,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import moeba.bicluster.Bicluster;
+
 public abstract class MetricInterface {
     private ScoreFunction scoreFunction;
     protected String outputProcessFolder;
@@ -28,6 +31,19 @@ public abstract class MetricInterface {
         return scoreFunction.run(inferredBiclusters, goldStandardBiclusters, resultIndex);
     }
 
+    /**
+     * Scores biclusters in their primitive representation by converting them to the
+     * representation the metrics work on.
+     *
+     * @param inferredBiclusters List of biclusters inferred from some analysis method.
+     * @param goldStandardBiclusters List of biclusters considered as the gold standard for comparison.
+     * @param resultIndex Index of the result to save.
+     * @return A double representing the overall score based on specific implementation.
+     */
+    public double run(List<Bicluster> inferredBiclusters, List<Bicluster> goldStandardBiclusters, int resultIndex) {
+        return run(Bicluster.toLists(inferredBiclusters), Bicluster.toLists(goldStandardBiclusters), resultIndex);
+    }
+
     /**
      * Calculate the score by comparing two sets of biclusters, one inferred and one as gold standard.
      *
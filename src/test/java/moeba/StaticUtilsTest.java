@@ -5,6 +5,10 @@ import org.testng.annotations.Test;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import static moeba.StaticUtils.csvToStringMatrix;
+
+import moeba.fitnessfunction.FitnessFunction;
+import moeba.fitnessfunction.GenericBiclusterFitnessFunction;
+import moeba.utils.dataset.DataMatrix;
 import java.io.File;
 import java.io.IOException;
 
@@ -91,4 +95,18 @@ public class StaticUtilsTest {
             StaticUtils.jsonToClassArray(inputJsonFile, columnNames);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSolutionDependentScoresMatchGenericObjectives() {
+        double[][] values = {{1, 2, 3}, {4, 5, 6}, {7, 8, 10}};
+        Class<?>[] types = {Double.class, Double.class, Double.class};
+        for (String objective : StaticUtils.OBJETIVES_MAP.keySet()) {
+            // Inferring its network needs Docker or a network cache, and it has no bicluster scores anyway
+            if (objective.equals("regulatorycoherencenormcomp")) continue;
+            FitnessFunction function = StaticUtils.getFitnessFunctionFromString(objective, DataMatrix.of(values), types, null, "Mean");
+            assertEquals(StaticUtils.hasSolutionDependentScores(objective), function instanceof GenericBiclusterFitnessFunction, objective);
+        }
+        assert(StaticUtils.hasSolutionDependentScores("DistanceBetweenBiclustersNormComp(summariseIndividualObjectives=Mean)"));
+        assert(!StaticUtils.hasSolutionDependentScores("MeanSquaredResidueNorm"));
+    }
+}
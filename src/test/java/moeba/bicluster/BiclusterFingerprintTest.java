@@ -0,0 +1,102 @@
+package moeba.bicluster;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+import moeba.StaticUtils;
+
+public class BiclusterFingerprintTest {
+
+    @Test
+    public void testCanonicalAndDistinct() {
+        Bicluster a = Bicluster.of(new int[] {3, 1, 2}, new int[] {0, 4});
+        Bicluster b = Bicluster.wrap(new int[] {1, 2, 3}, new int[] {0, 4});
+        assertEquals(BiclusterFingerprint.of(a), BiclusterFingerprint.of(b));
+        assertEquals(BiclusterFingerprint.of(a).hashCode(), BiclusterFingerprint.of(b).hashCode());
+
+        // Moving an index from the rows to the columns changes the fingerprint
+        assertNotEquals(BiclusterFingerprint.of(a), BiclusterFingerprint.of(Bicluster.wrap(new int[] {1, 2}, new int[] {0, 3, 4})));
+        assertNotEquals(BiclusterFingerprint.of(a), BiclusterFingerprint.of(Bicluster.wrap(new int[] {0, 4}, new int[] {1, 2, 3})));
+
+        // The fingerprint of a list depends on the order of the biclusters, like their text
+        Bicluster c = Bicluster.wrap(new int[] {0}, new int[] {1});
+        assertEquals(BiclusterFingerprint.of(Arrays.asList(a, c)), BiclusterFingerprint.of(Arrays.asList(b, c)));
+        assertNotEquals(BiclusterFingerprint.of(Arrays.asList(a, c)), BiclusterFingerprint.of(Arrays.asList(c, a)));
+        assertNotEquals(BiclusterFingerprint.of(Arrays.asList(a)), BiclusterFingerprint.of(a));
+
+        // Exact fingerprints compare their biclusters and match plain ones
+        assertEquals(BiclusterFingerprint.exactOf(Arrays.asList(a, c)), BiclusterFingerprint.exactOf(Arrays.asList(b, c)));
+        assertEquals(BiclusterFingerprint.exactOf(a), BiclusterFingerprint.of(b));
+    }
+
+    @Test
+    public void testNoCollisionsAmongSmallBiclusters() {
+        // Every bicluster with rows and columns taken from 0..5
+        Set<BiclusterFingerprint> fingerprints = new HashSet<>();
+        int numBiclusters = 0;
+        for (int rowMask = 1; rowMask < 64; rowMask++) {
+            for (int colMask = 1; colMask < 64; colMask++) {
+                fingerprints.add(BiclusterFingerprint.of(Bicluster.wrap(indices(rowMask), indices(colMask))));
+                numBiclusters++;
+            }
+        }
+        assertEquals(fingerprints.size(), numBiclusters);
+    }
+
+    @Test
+    public void testSolutionKeysAgreeWithText() {
+        Random random = new Random(7);
+        int numSolutions = 200;
+        List<List<int[][]>> indices = new ArrayList<>();
+        for (int s = 0; s < numSolutions; s++) {
+            List<int[][]> solution = new ArrayList<>();
+            for (int b = 0; b < 20; b++) {
+                solution.add(new int[][] {randomIndices(random, 2000, 200), randomIndices(random, 300, 60)});
+            }
+            indices.add(solution);
+        }
+
+        // Rebuilt biclusters, which compute their fingerprint again, give the same keys, and
+        // solutions with different text give different keys
+        List<List<Bicluster>> solutions = build(indices);
+        List<List<Bicluster>> rebuilt = build(indices);
+        Set<String> texts = new HashSet<>();
+        Set<BiclusterFingerprint> fingerprints = new HashSet<>();
+        for (int s = 0; s < numSolutions; s++) {
+            assertEquals(BiclusterFingerprint.of(rebuilt.get(s)), BiclusterFingerprint.of(solutions.get(s)));
+            texts.add(StaticUtils.biclustersToString(solutions.get(s)));
+            fingerprints.add(BiclusterFingerprint.of(solutions.get(s)));
+        }
+        assertEquals(fingerprints.size(), texts.size());
+    }
+
+    private static List<List<Bicluster>> build(List<List<int[][]>> indices) {
+        List<List<Bicluster>> res = new ArrayList<>(indices.size());
+        for (List<int[][]> solution : indices) {
+            List<Bicluster> biclusters = new ArrayList<>(solution.size());
+            for (int[][] bicluster : solution) {
+                biclusters.add(Bicluster.wrap(bicluster[0], bicluster[1]));
+            }
+            res.add(biclusters);
+        }
+        return res;
+    }
+
+    private static int[] randomIndices(Random random, int bound, int size) {
+        return random.ints(0, bound).distinct().limit(size).sorted().toArray();
+    }
+
+    private static int[] indices(int mask) {
+        return IntStream.range(0, 6).filter(i -> ((mask >>> i) & 1) != 0).toArray();
+    }
+}
@@ -0,0 +1,63 @@
+package moeba.bicluster;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import moeba.StaticUtils;
+
+public class BiclusterTest {
+
+    @Test
+    public void testOfSortsAndRemovesDuplicates() {
+        Bicluster bicluster = Bicluster.of(new int[] {4, 1, 4, 2}, new int[] {3, 0});
+        assertEquals(bicluster.getRows(), new int[] {1, 2, 4});
+        assertEquals(bicluster.getCols(), new int[] {0, 3});
+        assertEquals(bicluster.getSize(), 6);
+        assert(bicluster.containsRow(4));
+        assert(!bicluster.containsCol(1));
+        assertEquals(bicluster.getRowSet().cardinality(), 3);
+        assert(bicluster.getColSet().get(3));
+    }
+
+    @Test
+    public void testColumnRuns() {
+        assertEquals(Bicluster.of(new int[] {0}, new int[] {9, 2, 3, 4, 7, 8}).getColRuns(), new int[] {2, 5, 7, 10});
+        assertEquals(Bicluster.of(new int[] {0}, new int[] {5}).getColRuns(), new int[] {5, 6});
+        assertEquals(Bicluster.of(new int[] {0}, new int[] {1, 3}).getNumColRuns(), 2);
+        assertEquals(Bicluster.of(new int[] {0}, new int[0]).getNumColRuns(), 0);
+    }
+
+    @Test
+    public void testEqualityAndSharedIndices() {
+        Bicluster a = Bicluster.of(new int[] {0, 1}, new int[] {1, 2, 5});
+        Bicluster b = Bicluster.wrap(new int[] {0, 1}, new int[] {1, 2, 5});
+        Bicluster c = Bicluster.wrap(new int[] {1, 3}, new int[] {2, 3, 5});
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+        assertEquals(a.countSharedCols(c), 2);
+        assertEquals(a.countSharedRows(c), 1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLegacyConversion() {
+        ArrayList<Integer>[] legacy = new ArrayList[] {new ArrayList<>(Arrays.asList(2, 3)), new ArrayList<>(Arrays.asList(0, 1, 4))};
+        ArrayList<ArrayList<Integer>[]> legacyList = new ArrayList<>();
+        legacyList.add(legacy);
+
+        List<Bicluster> biclusters = Bicluster.fromLists(legacyList);
+        assertEquals(biclusters.get(0).toString(), StaticUtils.biclusterToString(legacy));
+        assertEquals(StaticUtils.biclustersToString(biclusters), StaticUtils.biclustersToString(legacyList));
+
+        ArrayList<Integer>[] back = Bicluster.toLists(biclusters).get(0);
+        assertEquals(back[0], legacy[0]);
+        assertEquals(back[1], legacy[1]);
+    }
+}
@@ -0,0 +1,73 @@
+package moeba.bicluster;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class BitMatrixTest {
+
+    @Test
+    public void testCountMatchesBitByBitCount() {
+        Random random = new Random(5);
+        int numRows = 150;
+        int numCols = 70;
+
+        List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < numRows; i++) shuffled.add(i);
+        Collections.shuffle(shuffled, random);
+        int[] permutation = shuffled.stream().mapToInt(Integer::intValue).toArray();
+
+        // The first bitset plays the role of the cuts and is skipped
+        List<BitSet> columns = new ArrayList<>();
+        for (int j = 0; j <= numCols; j++) {
+            BitSet column = new BitSet(numRows);
+            for (int i = 0; i < numRows; i++) {
+                if (random.nextBoolean()) column.set(i);
+            }
+            columns.add(column);
+        }
+
+        BitMatrix matrix = new BitMatrix(numRows, numCols);
+        matrix.load(columns, 1);
+
+        int[][] segments = {{0, 0}, {0, 63}, {5, 60}, {60, 70}, {63, 64}, {10, 140}, {64, 127}, {130, 149}, {0, 149}};
+        int[] majority = new int[numCols];
+        for (int[] segment : segments) {
+            matrix.countSegment(permutation, segment[0], segment[1]);
+            int size = segment[1] - segment[0] + 1;
+            int numMajority = 0;
+            for (int j = 0; j < numCols; j++) {
+                int expected = 0;
+                for (int k = segment[0]; k <= segment[1]; k++) {
+                    if (columns.get(j + 1).get(permutation[k])) expected++;
+                }
+                assertEquals(matrix.getCount(j), expected);
+                if (2 * expected > size) majority[numMajority++] = j;
+            }
+            int[] found = new int[numCols];
+            assertEquals(matrix.getMajorityColumns(found), numMajority);
+            assertEquals(Arrays.copyOf(found, numMajority), Arrays.copyOf(majority, numMajority));
+        }
+    }
+
+    @Test
+    public void testSegments() {
+        BitSet cuts = new BitSet(10);
+        cuts.set(2);
+        cuts.set(6);
+        assertEquals(BitMatrix.countSegments(cuts, 10), 3);
+        assertEquals(BitMatrix.segmentEnd(cuts, 0, 10), 2);
+        assertEquals(BitMatrix.segmentEnd(cuts, 3, 10), 6);
+        assertEquals(BitMatrix.segmentEnd(cuts, 7, 10), 9);
+
+        cuts.set(9);
+        assertEquals(BitMatrix.countSegments(cuts, 10), 3);
+    }
+}
@@ -1,15 +1,28 @@
 package moeba.fitnessfunction;
 
+import static org.testng.Assert.assertEquals;
+
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import org.testng.annotations.Test;
+import org.uma.jmetal.solution.binarysolution.BinarySolution;
+import org.uma.jmetal.solution.binarysolution.impl.DefaultBinarySolution;
+
+import moeba.bicluster.Bicluster;
 import moeba.fitnessfunction.impl.BiclusterSizeNumBicsNormComp;
 import moeba.fitnessfunction.impl.BiclusterSizeNormComp;
 import moeba.fitnessfunction.impl.BiclusterVarianceNorm;
 import moeba.fitnessfunction.impl.DistanceBetweenBiclustersNormComp;
 import moeba.fitnessfunction.impl.MeanSquaredResidueNorm;
 import moeba.fitnessfunction.impl.RowVarianceNormComp;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.dataset.RowPrefixSums;
+import moeba.utils.storage.impl.LocalCache;
 
 public class FitnessFunctionTest {
 
@@ -173,4 +186,377 @@ public class FitnessFunctionTest {
 
         assert(Math.abs((1.0 - (b1Score + b2Score)/2) - f.run(biclusters)) < epsilon);
     }
+
+    @Test
+    public void testFusedCellStatisticsMatchSeparateObjectives() {
+        Random random = new Random(11);
+        double[][] values = new double[30][10];
+        for (double[] row : values) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = 100 + random.nextDouble();
+            }
+        }
+        DataMatrix matrix = DataMatrix.of(values);
+        Class<?>[] columnTypes = new Class<?>[10];
+        Arrays.fill(columnTypes, Float.class);
+
+        FitnessFunction[] functions = new FitnessFunction[] {
+            new MeanSquaredResidueNorm(matrix, columnTypes, new LocalCache<>(), "Mean"),
+            new BiclusterSizeNormComp(matrix, columnTypes, null, "Mean", 0.5),
+            new BiclusterVarianceNorm(matrix, columnTypes, null, "HarmonicMean"),
+            new RowVarianceNormComp(matrix, columnTypes, null, "GeometricMean")
+        };
+        List<Bicluster> biclusters = Arrays.asList(
+            Bicluster.of(new int[] {0, 4, 7, 9}, new int[] {1, 2, 8}),
+            Bicluster.of(new int[] {3}, new int[] {0, 5}),
+            Bicluster.of(new int[] {1, 2, 10, 20, 29}, new int[] {0, 3, 4, 6, 9})
+        );
+
+        CellStatisticsEvaluator evaluator = CellStatisticsEvaluator.create(matrix, functions);
+        assert(evaluator.handles(0) && !evaluator.handles(1) && evaluator.handles(2) && evaluator.handles(3));
+        double[] objectives = new double[functions.length];
+        evaluator.run(biclusters, objectives);
+        for (int i : new int[] {0, 2, 3}) {
+            assertEquals(objectives[i], functions[i].run(biclusters), 1e-12);
+        }
+
+        // Single-pass statistics against the two-pass definitions, on values far from zero
+        Bicluster bicluster = biclusters.get(2);
+        int[] rows = bicluster.getRows();
+        int[] cols = bicluster.getCols();
+        double mean = 0.0;
+        double[] rowMeans = new double[rows.length];
+        double[] colMeans = new double[cols.length];
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < cols.length; j++) {
+                double value = values[rows[i]][cols[j]];
+                mean += value / (rows.length * cols.length);
+                rowMeans[i] += value / cols.length;
+                colMeans[j] += value / rows.length;
+            }
+        }
+        double residue = 0.0;
+        double deviation = 0.0;
+        double rowVariance = 0.0;
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < cols.length; j++) {
+                double value = values[rows[i]][cols[j]];
+                residue += Math.pow(value - rowMeans[i] - colMeans[j] + mean, 2) / (rows.length * cols.length);
+                deviation += Math.pow(value - mean, 2);
+                rowVariance += Math.pow(value - rowMeans[i], 2) / (rows.length * cols.length);
+            }
+        }
+        CellStatistics statistics = CellStatistics.compute(matrix, bicluster);
+        assertEquals(statistics.getMeanSquaredResidue(), residue, 1e-12);
+        assertEquals(statistics.getSquaredDeviation(), deviation, 1e-12);
+        assertEquals(statistics.getRowVariance(), rowVariance, 1e-12);
+    }
+
+    @Test
+    public void testUpdatedCellStatisticsMatchRecomputedOnes() {
+        Random random = new Random(13);
+        DataMatrix matrix = randomMatrix(random, 60, 25);
+        Bicluster bicluster = Bicluster.of(new int[] {2, 5, 9, 30, 41}, new int[] {0, 7, 8, 20});
+        CellStatistics statistics = CellStatistics.compute(matrix, bicluster);
+
+        // Long enough to go past the updates after which statistics are collected again
+        for (int step = 0; step < 3 * CellStatistics.MAX_UPDATES; step++) {
+            Bicluster next = Bicluster.wrap(toggle(random, bicluster.getRows(), 60), toggle(random, bicluster.getCols(), 25));
+            statistics = statistics.update(matrix, bicluster, next);
+            bicluster = next;
+
+            CellStatistics expected = CellStatistics.compute(matrix, bicluster);
+            assertEquals(statistics.getNumRows(), bicluster.getNumRows());
+            assertEquals(statistics.getNumCols(), bicluster.getNumCols());
+            assertEquals(statistics.getMeanSquaredResidue(), expected.getMeanSquaredResidue(), 1e-9);
+            assertEquals(statistics.getSquaredDeviation(), expected.getSquaredDeviation(), 1e-9);
+            assertEquals(statistics.getRowVariance(), expected.getRowVariance(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testOffspringReuseTheStatisticsOfTheirParent() {
+        Random random = new Random(17);
+        DataMatrix matrix = randomMatrix(random, 1000, 100);
+        Class<?>[] columnTypes = new Class<?>[100];
+        Arrays.fill(columnTypes, Float.class);
+        FitnessFunction[] functions = new FitnessFunction[] {
+            new MeanSquaredResidueNorm(matrix, columnTypes, null, "Mean"),
+            new BiclusterVarianceNorm(matrix, columnTypes, null, "Mean"),
+            new RowVarianceNormComp(matrix, columnTypes, null, "Mean")
+        };
+        CellStatisticsEvaluator evaluator = CellStatisticsEvaluator.create(matrix, functions);
+
+        // Twenty biclusters splitting the rows, like a generic solution
+        List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) shuffled.add(i);
+        Collections.shuffle(shuffled, random);
+        List<Bicluster> parent = new ArrayList<>();
+        for (int b = 0; b < 20; b++) {
+            int[] rows = shuffled.subList(50 * b, 50 * (b + 1)).stream().mapToInt(Integer::intValue).toArray();
+            parent.add(Bicluster.of(rows, random.ints(0, 100).distinct().limit(40).toArray()));
+        }
+        double[] objectives = new double[functions.length];
+        CellStatisticsEvaluator.Memo memo = evaluator.run(parent, objectives, null);
+        assertEquals(memo.size(), parent.size());
+
+        // Offspring moving a row between two biclusters and flipping a column of a third one
+        List<List<Bicluster>> offspring = new ArrayList<>();
+        for (int s = 0; s < 50; s++) {
+            List<Bicluster> child = new ArrayList<>(parent);
+            int from = random.nextInt(20);
+            int to = (from + 1 + random.nextInt(19)) % 20;
+            int row = child.get(from).getRow(random.nextInt(50));
+            child.set(from, Bicluster.of(Arrays.stream(child.get(from).getRows()).filter(r -> r != row).toArray(), child.get(from).getCols()));
+            child.set(to, Bicluster.of(append(child.get(to).getRows(), row), child.get(to).getCols()));
+            int other = random.nextInt(20);
+            child.set(other, Bicluster.wrap(child.get(other).getRows(), toggle(random, child.get(other).getCols(), 100)));
+            offspring.add(child);
+        }
+
+        double[] incremental = new double[functions.length];
+        double[] full = new double[functions.length];
+        for (List<Bicluster> child : offspring) {
+            evaluator.run(child, incremental, memo);
+            evaluator.run(child, full);
+            for (int i = 0; i < functions.length; i++) {
+                assertEquals(incremental[i], full[i], 1e-9);
+                assertEquals(full[i], functions[i].run(child), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testGeometricMeanOfManySmallScores() {
+        DataMatrix matrix = DataMatrix.of(new double[400][400]);
+        Class<?>[] columnTypes = new Class<?>[400];
+        Arrays.fill(columnTypes, Float.class);
+        FitnessFunction f = new BiclusterSizeNormComp(matrix, columnTypes, null, "GeometricMean", 0.5);
+
+        // Each 2x2 bicluster scores 2/400, and the product of 200 such scores underflows
+        List<Bicluster> biclusters = new ArrayList<>();
+        for (int b = 0; b < 200; b++) {
+            biclusters.add(Bicluster.wrap(new int[] {2 * b, 2 * b + 1}, new int[] {b, b + 1}));
+        }
+        assertEquals(f.run(biclusters), 1.0 - 2.0 / 400, 1e-12);
+    }
+
+    @Test
+    public void testDistanceBetweenBiclustersMatchesPairwiseSearch() {
+        Random random = new Random(19);
+        DataMatrix matrix = randomMatrix(random, 300, 60);
+        Class<?>[] columnTypes = new Class<?>[60];
+        Arrays.fill(columnTypes, Float.class);
+        List<Bicluster> biclusters = new ArrayList<>();
+        for (int b = 0; b < 120; b++) {
+            biclusters.add(Bicluster.of(random.ints(0, 300).distinct().limit(2 + random.nextInt(20)).toArray(),
+                                        random.ints(0, 60).distinct().limit(2 + random.nextInt(15)).toArray()));
+        }
+        // Equal biclusters must still be told apart by position
+        biclusters.add(biclusters.get(7));
+        biclusters.add(biclusters.get(7));
+
+        double expected = 0.0;
+        for (int i = 0; i < biclusters.size(); i++) {
+            Bicluster bicluster = biclusters.get(i);
+            Bicluster closest = biclusters.get(i == 0 ? 1 : 0);
+            int maxShared = 0;
+            for (int k = 0; k < biclusters.size(); k++) {
+                if (k != i && bicluster.countSharedCols(biclusters.get(k)) > maxShared) {
+                    maxShared = bicluster.countSharedCols(biclusters.get(k));
+                    closest = biclusters.get(k);
+                }
+            }
+            double[] mean = columnMeans(matrix, bicluster);
+            double[] closestMean = columnMeans(matrix, closest);
+            double score = 0.0;
+            for (int row : closest.getRows()) {
+                double distance = 0.0;
+                for (int j = 0; j < bicluster.getNumCols(); j++) {
+                    distance += Math.pow(matrix.get(row, bicluster.getCol(j)) - mean[j], 2) / bicluster.getNumCols();
+                }
+                double adjustedDistance = 0.0;
+                for (int j = 0; j < closest.getNumCols(); j++) {
+                    double value = matrix.get(row, closest.getCol(j));
+                    double adjusted = (bicluster.getNumRows() * closestMean[j] - value) / (bicluster.getNumRows() - 1);
+                    adjustedDistance += Math.pow(value - adjusted, 2) / closest.getNumCols();
+                }
+                score += distance / (distance + adjustedDistance);
+            }
+            expected += score / closest.getNumRows() / biclusters.size();
+        }
+
+        FitnessFunction f = new DistanceBetweenBiclustersNormComp(matrix, columnTypes, null, "Mean");
+        assertEquals(f.run(biclusters), 1.0 - expected, 1e-9);
+    }
+
+    private static double[] columnMeans(DataMatrix matrix, Bicluster bicluster) {
+        double[] mean = new double[bicluster.getNumCols()];
+        for (int j = 0; j < mean.length; j++) {
+            for (int row : bicluster.getRows()) {
+                mean[j] += matrix.get(row, bicluster.getCol(j)) / bicluster.getNumRows();
+            }
+        }
+        return mean;
+    }
+
+    @Test
+    public void testParallelScoringMatchesSerialScoring() {
+        Random random = new Random(37);
+        DataMatrix matrix = randomMatrix(random, 400, 50);
+        Class<?>[] columnTypes = new Class<?>[50];
+        Arrays.fill(columnTypes, Float.class);
+        FitnessFunction[] functions = new FitnessFunction[] {
+            new DistanceBetweenBiclustersNormComp(matrix, columnTypes, null, "Mean"),
+            new MeanSquaredResidueNorm(matrix, columnTypes, new LocalCache<>(), "GeometricMean"),
+            new BiclusterSizeNumBicsNormComp(matrix, columnTypes, null, "HarmonicMean", 0.5, 0.5)
+        };
+        List<Bicluster> biclusters = new ArrayList<>();
+        for (int b = 0; b < 200; b++) {
+            biclusters.add(Bicluster.of(random.ints(0, 400).distinct().limit(2 + random.nextInt(30)).toArray(),
+                                        random.ints(0, 50).distinct().limit(2 + random.nextInt(20)).toArray()));
+        }
+
+        double[] serial = new double[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            ((BiclusterFitnessFunction) functions[i]).setParallelScoring(new ParallelScoring(1, ParallelScoring.DEFAULT_THRESHOLD));
+            serial[i] = functions[i].run(biclusters);
+        }
+
+        // Scores are summarised in the same order, so results are identical
+        ParallelScoring parallelScoring = new ParallelScoring(4, 16);
+        try {
+            for (int i = 0; i < functions.length; i++) {
+                ((BiclusterFitnessFunction) functions[i]).setParallelScoring(parallelScoring);
+                assertEquals(functions[i].run(biclusters), serial[i]);
+            }
+        } finally {
+            parallelScoring.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchEvaluationMatchesSingleEvaluations() {
+        Random random = new Random(41);
+        DataMatrix matrix = randomMatrix(random, 100, 30);
+        Class<?>[] columnTypes = new Class<?>[30];
+        Arrays.fill(columnTypes, Float.class);
+        FitnessFunction[] functions = new FitnessFunction[] {
+            new BiclusterSizeNormComp(matrix, columnTypes, new LocalCache<>(), "Mean", 0.5),
+            new DistanceBetweenBiclustersNormComp(matrix, columnTypes, null, "Mean"),
+            new MeanSquaredResidueNorm(matrix, columnTypes, null, "GeometricMean"),
+            new RowVarianceNormComp(matrix, columnTypes, null, "HarmonicMean")
+        };
+
+        // Solutions drawn from a small pool of biclusters, so most of them are repeated across the batch
+        List<Bicluster> pool = new ArrayList<>();
+        for (int b = 0; b < 40; b++) {
+            pool.add(Bicluster.of(random.ints(0, 100).distinct().limit(1 + random.nextInt(20)).toArray(),
+                                  random.ints(0, 30).distinct().limit(1 + random.nextInt(10)).toArray()));
+        }
+        List<List<Bicluster>> batch = new ArrayList<>();
+        for (int s = 0; s < 30; s++) {
+            List<Bicluster> biclusters = new ArrayList<>();
+            for (int b = random.nextInt(8); b >= 0; b--) {
+                biclusters.add(pool.get(random.nextInt(pool.size())));
+            }
+            batch.add(biclusters);
+        }
+        batch.add(new ArrayList<>());
+
+        for (FitnessFunction function : functions) {
+            double[] scores = function.runBatch(batch);
+            for (int s = 0; s < batch.size(); s++) {
+                assertEquals(scores[s], function.run(batch.get(s)));
+            }
+        }
+
+        CellStatisticsEvaluator evaluator = CellStatisticsEvaluator.create(matrix, functions);
+        List<BinarySolution> solutions = new ArrayList<>();
+        for (int s = 0; s < batch.size(); s++) {
+            solutions.add(new DefaultBinarySolution(Arrays.asList(1), functions.length));
+        }
+        evaluator.evaluate(solutions, batch);
+        for (int s = 0; s < batch.size(); s++) {
+            double[] objectives = new double[functions.length];
+            evaluator.run(batch.get(s), objectives);
+            assertEquals(solutions.get(s).objectives()[2], objectives[2]);
+            assertEquals(solutions.get(s).objectives()[3], objectives[3]);
+        }
+    }
+
+    @Test
+    public void testPrefixSumStatisticsMatchReadCells() {
+        Random random = new Random(43);
+        DataMatrix matrix = randomMatrix(random, 80, 120);
+        RowPrefixSums prefixSums = RowPrefixSums.get(matrix, RowPrefixSums.DEFAULT_MEMORY_BUDGET);
+        assert(prefixSums != null);
+        // The budget is that of the caller, even once the tables of the matrix are built
+        assert(RowPrefixSums.get(matrix, RowPrefixSums.getMemorySize(80, 120) - 1) == null);
+
+        // Time-course like biclusters, made of a few runs of consecutive columns
+        for (int b = 0; b < 50; b++) {
+            int[] cols = IntStream.range(0, 1 + random.nextInt(3))
+                .flatMap(run -> {
+                    int start = random.nextInt(100);
+                    return IntStream.range(start, start + 1 + random.nextInt(20));
+                }).toArray();
+            Bicluster bicluster = Bicluster.of(random.ints(0, 80).distinct().limit(1 + random.nextInt(30)).toArray(), cols);
+            CellStatistics fromPrefixSums = CellStatistics.compute(prefixSums, bicluster);
+            CellStatistics expected = CellStatistics.compute(matrix, bicluster);
+            assert(!fromPrefixSums.hasColSums());
+            assertEquals(fromPrefixSums.getNumCells(), expected.getNumCells());
+            assertEquals(fromPrefixSums.getSquaredDeviation(), expected.getSquaredDeviation(), 1e-9);
+            assertEquals(fromPrefixSums.getRowVariance(), expected.getRowVariance(), 1e-9);
+        }
+
+        // Without the mean squared residue, the evaluator takes row sums from the prefix sums too
+        Class<?>[] columnTypes = new Class<?>[120];
+        Arrays.fill(columnTypes, Float.class);
+        FitnessFunction[] functions = new FitnessFunction[] {
+            new BiclusterVarianceNorm(matrix, columnTypes, null, "Mean"),
+            new RowVarianceNormComp(matrix, columnTypes, null, "Mean")
+        };
+        List<Bicluster> biclusters = Arrays.asList(
+            Bicluster.of(IntStream.range(10, 40).toArray(), IntStream.range(30, 90).toArray()),
+            Bicluster.of(new int[] {1, 5, 70}, new int[] {0, 1, 2, 3, 50, 51, 52, 119})
+        );
+        double[] objectives = new double[functions.length];
+        CellStatisticsEvaluator.create(matrix, functions).run(biclusters, objectives);
+        for (int i = 0; i < functions.length; i++) {
+            double[] scores = new double[biclusters.size()];
+            for (int b = 0; b < biclusters.size(); b++) {
+                CellStatistics statistics = CellStatistics.compute(matrix, biclusters.get(b));
+                scores[b] = ((CellStatisticsFitnessFunction) functions[i]).getBiclusterScore(statistics);
+            }
+            assertEquals(objectives[i], 1 - (scores[0] + scores[1]) / 2, 1e-9);
+            assertEquals(functions[i].run(biclusters), objectives[i], 1e-12);
+        }
+    }
+
+    private static DataMatrix randomMatrix(Random random, int numRows, int numCols) {
+        double[][] values = new double[numRows][numCols];
+        for (double[] row : values) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = 100 + random.nextDouble();
+            }
+        }
+        return DataMatrix.of(values);
+    }
+
+    // Adds or removes a random index, keeping at least one
+    private static int[] toggle(Random random, int[] indices, int bound) {
+        int index = random.nextInt(bound);
+        if (Arrays.binarySearch(indices, index) < 0) {
+            return Bicluster.of(append(indices, index), new int[] {0}).getRows();
+        }
+        if (indices.length == 1) return indices;
+        return Arrays.stream(indices).filter(i -> i != index).toArray();
+    }
+
+    private static int[] append(int[] indices, int index) {
+        int[] res = Arrays.copyOf(indices, indices.length + 1);
+        res[indices.length] = index;
+        return res;
+    }
 }
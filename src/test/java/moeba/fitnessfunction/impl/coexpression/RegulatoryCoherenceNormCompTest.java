@@ -0,0 +1,58 @@
+package moeba.fitnessfunction.impl.coexpression;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import moeba.bicluster.Bicluster;
+import moeba.utils.coexpression.GeneRegulatoryNetwork;
+import moeba.utils.dataset.DataMatrix;
+
+public class RegulatoryCoherenceNormCompTest {
+
+    @Test
+    public void testPerBiclusterModularityMatchesPairwiseSum() {
+        Random random = new Random(23);
+        int numGenes = 300;
+        int numEdges = 3000;
+        int[] sources = new int[numEdges];
+        int[] targets = new int[numEdges];
+        float[] confidences = new float[numEdges];
+        for (int e = 0; e < numEdges; e++) {
+            // Unique pairs, including self-loops
+            sources[e] = e / 10;
+            targets[e] = (sources[e] * 7 + e % 10 * 31) % numGenes;
+            confidences[e] = random.nextFloat();
+        }
+        GeneRegulatoryNetwork network = new GeneRegulatoryNetwork(numGenes, sources, targets, confidences);
+
+        // Biclusters leave some genes out and share others, which belong to the last one
+        List<Bicluster> biclusters = new ArrayList<>();
+        for (int b = 0; b < 12; b++) {
+            biclusters.add(Bicluster.of(random.ints(0, numGenes).distinct().limit(5 + random.nextInt(30)).toArray(), new int[] {0, 1}));
+        }
+        int[] community = new int[numGenes];
+        for (int b = 0; b < biclusters.size(); b++) {
+            for (int row : biclusters.get(b).getRows()) community[row] = b + 1;
+        }
+        double sum = 0;
+        for (int i = 0; i < numGenes; i++) {
+            for (int j = 0; j < numGenes; j++) {
+                if (community[i] == community[j] && community[i] != 0) {
+                    sum += network.getConfidence(i, j) - (double) network.getOutDegree(i) * network.getInDegree(j) / network.getTotalWeight();
+                }
+            }
+        }
+        double expected = 1 - (sum / network.getTotalWeight() + 1) / 2;
+
+        Class<?>[] types = new Class<?>[2];
+        Arrays.fill(types, Float.class);
+        RegulatoryCoherenceNormComp f = new RegulatoryCoherenceNormComp(DataMatrix.of(new double[numGenes][2]), types, network);
+        assertEquals(f.run(biclusters), expected, 1e-6);
+    }
+}
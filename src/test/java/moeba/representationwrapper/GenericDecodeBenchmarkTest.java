@@ -0,0 +1,101 @@
+package moeba.representationwrapper;
+
+import static org.testng.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+import org.uma.jmetal.solution.binarysolution.BinarySolution;
+import org.uma.jmetal.solution.binarysolution.impl.DefaultBinarySolution;
+import org.uma.jmetal.solution.compositesolution.CompositeSolution;
+import org.uma.jmetal.solution.integersolution.IntegerSolution;
+import org.uma.jmetal.solution.integersolution.impl.DefaultIntegerSolution;
+import org.uma.jmetal.util.binarySet.BinarySet;
+import org.uma.jmetal.util.bounds.Bounds;
+
+import moeba.StaticUtils;
+import moeba.bicluster.Bicluster;
+import moeba.representationwrapper.impl.GenericRepresentationWrapper;
+
+/**
+ * Measures the heap allocated by the generic decoder once it is warmed up, which must not go
+ * over the size of the decoded biclusters themselves.
+ */
+public class GenericDecodeBenchmarkTest {
+
+    private static final int NUM_ROWS = 4000;
+    private static final int NUM_COLS = 300;
+    private static final int NUM_DECODES = 200;
+
+    @Test
+    public void testSteadyStateAllocationIsOnlyTheOutput() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("Per-thread allocation counters are not available");
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            throw new SkipException("Per-thread allocation counters are not available");
+        }
+
+        GenericRepresentationWrapper wrapper = new GenericRepresentationWrapper(NUM_ROWS, NUM_COLS, 0.05f, 0.2f, "Mean");
+        CompositeSolution solution = randomSolution(new Random(3));
+
+        // Warm up
+        List<Bicluster> biclusters = null;
+        for (int i = 0; i < NUM_DECODES; i++) {
+            biclusters = wrapper.decodeBiclusters(solution);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < NUM_DECODES; i++) {
+            biclusters = wrapper.decodeBiclusters(solution);
+        }
+        long bytesPerDecode = (threadBean.getThreadAllocatedBytes(threadId) - startBytes) / NUM_DECODES;
+
+        // Upper bound of the size of the output: list, bicluster objects and index arrays
+        long outputBytes = 64 + 8L * biclusters.size();
+        for (Bicluster bicluster : biclusters) {
+            outputBytes += 48 + arrayBytes(bicluster.getNumRows()) + arrayBytes(bicluster.getNumCols());
+        }
+        assert(bytesPerDecode <= outputBytes) : bytesPerDecode + " bytes allocated for an output of " + outputBytes + " bytes";
+        assertEquals(StaticUtils.biclustersToString(biclusters), StaticUtils.biclustersToString(wrapper.getBiclustersFromRepresentation(solution)));
+    }
+
+    private static long arrayBytes(int length) {
+        return (16 + 4L * length + 7) / 8 * 8;
+    }
+
+    private static CompositeSolution randomSolution(Random random) {
+        List<Bounds<Integer>> integerBounds = new ArrayList<>(NUM_ROWS);
+        List<Integer> permutation = new ArrayList<>(NUM_ROWS);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            integerBounds.add(Bounds.create(0, NUM_ROWS - 1));
+            permutation.add(i);
+        }
+        Collections.shuffle(permutation, random);
+        IntegerSolution integerSolution = new DefaultIntegerSolution(1, 0, integerBounds);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            integerSolution.variables().set(i, permutation.get(i));
+        }
+
+        Integer[] bitsPerVariable = new Integer[NUM_COLS + 1];
+        Arrays.fill(bitsPerVariable, NUM_ROWS);
+        BinarySolution binarySolution = new DefaultBinarySolution(Arrays.asList(bitsPerVariable), 1);
+        for (int v = 0; v <= NUM_COLS; v++) {
+            BinarySet bits = new BinarySet(NUM_ROWS);
+            for (int i = 0; i < NUM_ROWS; i++) {
+                // Few cuts, so biclusters have around 50 rows
+                bits.set(i, random.nextDouble() < (v == 0 ? 0.02 : 0.5));
+            }
+            binarySolution.variables().set(v, bits);
+        }
+        return new CompositeSolution(Arrays.asList(integerSolution, binarySolution));
+    }
+}
@@ -1,11 +1,15 @@
 package moeba.representationwrapper;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import moeba.StaticUtils;
+import moeba.bicluster.Bicluster;
 import moeba.representationwrapper.impl.GenericRepresentationWrapper;
 import org.testng.annotations.Test;
 import org.uma.jmetal.solution.binarysolution.BinarySolution;
@@ -75,6 +79,29 @@ public class RepresentationWrapperTest {
         assertEquals(expected[1], res.get(3)[1]);
     }
 
+    @Test
+    public void testDecodedBiclustersAreCachedUntilTheSolutionChanges() {
+        GenericRepresentationWrapper wrapper = new GenericRepresentationWrapper(8,8,0.05f,0.2f,"Mean");
+        List<Bounds<Integer>> integerBounds = new ArrayList<>(8);
+        for (int i = 0; i < 8; i++) {
+            integerBounds.add(Bounds.create(0, 7));
+        }
+        CompositeSolution solution = wrapper.buildComposition(new DefaultIntegerSolution(1, 0, integerBounds), new DefaultBinarySolution(Arrays.asList(8,8,8,8,8,8,8,8,8), 1));
+
+        List<Bicluster> biclusters = wrapper.getBiclusters(solution);
+        assertSame(biclusters, wrapper.getBiclusters(solution));
+        assertSame(biclusters, RepresentationWrapper.getCachedBiclusters(solution));
+
+        // Offspring that are not crossed keep the biclusters of their parents
+        List<CompositeSolution> offspring = wrapper.getCrossoverFromString("GroupedBasedCrossover;CellUniformCrossover", 0.0, 10).execute(Arrays.asList(solution, solution));
+        assertSame(biclusters, RepresentationWrapper.getCachedBiclusters(offspring.get(0)));
+
+        // Mutated solutions must be decoded again
+        wrapper.getMutationFromString("SwapMutation;BicUniformMutation;CellUniformMutation", "1.0", 10).execute(solution);
+        assertNull(RepresentationWrapper.getCachedBiclusters(solution));
+        assertEquals(StaticUtils.biclustersToString(wrapper.decodeBiclusters(solution)), StaticUtils.biclustersToString(wrapper.getBiclusters(solution)));
+    }
+
     /** 
     @Test
     public void testGetBiclustersFromGenericRepresentationWithMerge() {
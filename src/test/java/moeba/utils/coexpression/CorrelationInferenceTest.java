@@ -0,0 +1,63 @@
+package moeba.utils.coexpression;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import moeba.utils.dataset.DataMatrix;
+
+public class CorrelationInferenceTest {
+
+    @Test
+    public void testStrongestRegulatorsAreKept() {
+        Random random = new Random(31);
+        double[][] values = new double[6][20];
+        for (int j = 0; j < 20; j++) {
+            values[0][j] = random.nextGaussian();
+            values[1][j] = 2 * values[0][j] + 1;                        // Perfectly correlated with gene 0
+            values[2][j] = -values[0][j] + 0.1 * random.nextGaussian(); // Strongly anti-correlated with gene 0
+            values[3][j] = random.nextGaussian();
+            values[4][j] = random.nextGaussian();
+            values[5][j] = 3;                                           // Constant
+        }
+        DataMatrix data = DataMatrix.of(values);
+
+        GeneRegulatoryNetwork network = new CorrelationInference(2, 1).infer(data);
+        assertEquals(network.getNumNodes(), 6);
+        assertEquals(network.getConfidence(1, 0), 1f, 1e-6);
+        assert(network.getConfidence(2, 0) > 0.9f);
+        assertEquals(network.getConfidence(3, 0), 0f);
+        assertEquals(network.getConfidence(0, 0), 0f);
+        for (int gene = 0; gene < 6; gene++) {
+            assertEquals(network.getConfidence(5, gene), 0f);
+            assertEquals(network.getConfidence(gene, 5), 0f);
+        }
+        // Two regulators for each gene but the constant one
+        assertEquals(network.getFirstOutEdge(6), 10);
+
+        // The same network whatever the number of threads
+        GeneRegulatoryNetwork parallel = new CorrelationInference(2, 4).infer(data);
+        for (int source = 0; source < 6; source++) {
+            for (int target = 0; target < 6; target++) {
+                assertEquals(parallel.getConfidence(source, target), network.getConfidence(source, target));
+            }
+        }
+    }
+
+    @Test
+    public void testMoreRegulatorsThanGenesKeepsAllOthers() {
+        Random random = new Random(37);
+        double[][] values = new double[4][10];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 10; j++) {
+                values[i][j] = random.nextGaussian();
+            }
+        }
+
+        // Would not fit in an array if it were not bounded by the number of genes
+        GeneRegulatoryNetwork network = new CorrelationInference(Integer.MAX_VALUE, 1).infer(DataMatrix.of(values));
+        assertEquals(network.getFirstOutEdge(4), 12);
+    }
+}
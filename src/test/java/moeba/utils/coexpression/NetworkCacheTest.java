@@ -0,0 +1,83 @@
+package moeba.utils.coexpression;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+import moeba.utils.dataset.DataMatrix;
+
+public class NetworkCacheTest {
+
+    @Test
+    public void testNetworkIsInferredOnceAndReloaded() throws IOException {
+        Random random = new Random(29);
+        double[][] values = new double[50][4];
+        for (double[] row : values) {
+            for (int j = 0; j < row.length; j++) row[j] = random.nextDouble();
+        }
+        DataMatrix data = DataMatrix.of(values);
+
+        int numEdges = 400;
+        int[] sources = new int[numEdges];
+        int[] targets = new int[numEdges];
+        float[] confidences = new float[numEdges];
+        for (int e = 0; e < numEdges; e++) {
+            sources[e] = e % 50;
+            targets[e] = (e / 50 * 13 + e % 50) % 50;
+            confidences[e] = random.nextFloat();
+        }
+        GeneRegulatoryNetwork network = new GeneRegulatoryNetwork(50, sources, targets, confidences);
+
+        Path directory = Files.createTempDirectory("network-cache");
+        try {
+            NetworkCache cache = new NetworkCache(directory);
+            AtomicInteger inferences = new AtomicInteger();
+            NetworkInference inference = new NetworkInference() {
+                @Override
+                public String getName() {
+                    return "test";
+                }
+
+                @Override
+                public GeneRegulatoryNetwork infer(DataMatrix geneExpressionData) {
+                    inferences.incrementAndGet();
+                    return network;
+                }
+            };
+            GeneRegulatoryNetwork first = cache.getOrInfer(data, inference);
+            GeneRegulatoryNetwork second = cache.getOrInfer(data, inference);
+            assertEquals(inferences.get(), 1);
+            assertEquals(first, network);
+            assertEquals(second.getNumNodes(), 50);
+            assertEquals(second.getTotalWeight(), network.getTotalWeight());
+            for (int i = 0; i < 50; i++) {
+                assertEquals(second.getOutDegree(i), network.getOutDegree(i));
+                assertEquals(second.getInDegree(i), network.getInDegree(i));
+                for (int j = 0; j < 50; j++) {
+                    assertEquals(second.getConfidence(i, j), network.getConfidence(i, j));
+                }
+            }
+            for (int e = 0; e < numEdges; e++) {
+                assertEquals(second.getConfidence(sources[e], targets[e]), confidences[e]);
+            }
+
+            // Any change to the data addresses another entry
+            values[10][2] += 1e-9;
+            assertNotEquals(cache.getPath(DataMatrix.of(values), "test"), cache.getPath(data, "test"));
+            assertNotEquals(cache.getPath(data, "other"), cache.getPath(data, "test"));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
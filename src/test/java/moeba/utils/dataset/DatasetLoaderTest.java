@@ -0,0 +1,234 @@
+package moeba.utils.dataset;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import moeba.StaticUtils;
+
+public class DatasetLoaderTest {
+
+    private File writeTypes(String content) throws IOException {
+        File inputJsonFile = File.createTempFile("testDatasetLoaderTypes", ".json");
+        inputJsonFile.deleteOnExit();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(inputJsonFile));
+        bw.write(content);
+        bw.close();
+        return inputJsonFile;
+    }
+
+    @Test
+    public void testLoadMixedTypes() throws IOException {
+        File inputDataset = File.createTempFile("testLoadMixedTypes", ".csv");
+        inputDataset.deleteOnExit();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(inputDataset));
+        bw.write("num,flag,cat,int\r\n");
+        bw.write("0.25,Yes,b,3\r\n");
+        bw.write("-1.5e2,no,a,-7\r\n");
+        bw.write("3,YES,b,0\r\n");
+        bw.close();
+        File inputColumnTypes = writeTypes("{\"num\":\"double\",\"flag\":\"boolean\",\"cat\":\"string\",\"int\":\"int\"}");
+
+        Dataset dataset = DatasetLoader.load(inputDataset, inputColumnTypes, 2);
+        assertEquals(dataset.getNumRows(), 3);
+        assertEquals(dataset.getNumCols(), 4);
+        assertEquals(dataset.getData()[0], new double[] {0.25, 1.0, 0.0, 3.0});
+        assertEquals(dataset.getData()[1], new double[] {-150.0, 0.0, 1.0, -7.0});
+        assertEquals(dataset.getData()[2], new double[] {3.0, 1.0, 0.0, 0.0});
+        assertEquals(dataset.getDictionary(2), new String[] {"b", "a"});
+        assertEquals(DatasetLoader.readShape(inputDataset), new int[] {3, 4});
+        assertEquals(dataset.getStatistics(0).getMin(), -150.0);
+        assertEquals(dataset.getStatistics(0).getMax(), 3.0);
+        assertEquals(dataset.getStatistics(0).getCardinality(), 3);
+        assertEquals(dataset.getStatistics(1).getCardinality(), 2);
+        assertEquals(dataset.getStatistics(2).getCardinality(), 2);
+        assertEquals(dataset.getStatistics(3).getMax(), 3.0);
+    }
+
+    @Test
+    public void testConvertStringMatrix() {
+        String[][] data = new String[500][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new String[] {"v" + (i % 7), Integer.toString(i % 10), i % 3 == 0 ? "yes" : "no", "v" + (i % 5)};
+        }
+        Class<?>[] types = new Class<?>[] {String.class, Integer.class, Boolean.class, String.class};
+
+        Dataset dataset = DatasetLoader.convert(new String[] {"a", "b", "c", "d"}, data, types, 4, DataMatrix.Layout.COLUMN_MAJOR, false);
+        assertEquals(dataset.getDictionary(0), new String[] {"v0", "v1", "v2", "v3", "v4", "v5", "v6"});
+        assertEquals(dataset.getDictionary(3), new String[] {"v0", "v1", "v2", "v3", "v4"});
+        assertEquals(dataset.getStatistics(0).getCardinality(), 7);
+        assertEquals(dataset.getStatistics(1).getCardinality(), 10);
+        assertEquals(dataset.getStatistics(1).getMin(), 0.0);
+        assertEquals(dataset.getStatistics(1).getMax(), 9.0);
+        assertEquals(dataset.getStatistics(2).getCardinality(), 2);
+
+        // Every column is converted by the time the matrix is returned
+        double[][] numericData = StaticUtils.dataToNumericMatrix(data, types, 4);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(numericData[i], new double[] {i % 7, i % 10, i % 3 == 0 ? 1.0 : 0.0, i % 5});
+        }
+    }
+
+    @Test
+    public void testLoadMatchesStringConversion() throws IOException {
+        // Many small chunks to exercise the merge of categorical dictionaries
+        File inputDataset = File.createTempFile("testLoadMatchesStringConversion", ".csv");
+        inputDataset.deleteOnExit();
+        Random random = new Random(7);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(inputDataset));
+        bw.write("c0,c1,c2\n");
+        for (int i = 0; i < 2000; i++) {
+            bw.write(random.nextDouble() + "," + random.nextInt(1000) / 1000.0 + ",cat" + random.nextInt(50) + "\n");
+        }
+        bw.close();
+        File inputColumnTypes = writeTypes("{\"c0\":\"float\",\"c1\":\"double\",\"c2\":\"string\"}");
+
+        Dataset dataset = DatasetLoader.loadCsv(inputDataset, inputColumnTypes, 4, DataMatrix.Layout.ROW_MAJOR, false, 512);
+        String[][] expected = StaticUtils.csvToStringMatrix(inputDataset);
+        assertEquals(dataset.getNumRows(), expected.length);
+        int nextCode = 0;
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(dataset.getData()[i][0], Double.parseDouble(expected[i][0]));
+            assertEquals(dataset.getData()[i][1], Double.parseDouble(expected[i][1]));
+            int code = (int) dataset.getData()[i][2];
+            assertEquals(dataset.getDictionary(2)[code], expected[i][2]);
+            // Codes are assigned in order of first appearance
+            assert(code <= nextCode);
+            if (code == nextCode) nextCode++;
+        }
+    }
+
+    @Test
+    public void testLoadLayoutsAndFloatStorage() throws IOException {
+        File inputDataset = File.createTempFile("testLoadLayoutsAndFloatStorage", ".csv");
+        inputDataset.deleteOnExit();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(inputDataset));
+        bw.write("a,b,c\n");
+        bw.write("0.1,2,x\n");
+        bw.write("0.3,-4,y\n");
+        bw.close();
+        File inputColumnTypes = writeTypes("{\"a\":\"double\",\"b\":\"int\",\"c\":\"string\"}");
+
+        for (DataMatrix.Layout layout : DataMatrix.Layout.values()) {
+            for (boolean floatStorage : new boolean[] {false, true}) {
+                DataMatrix matrix = DatasetLoader.loadCsv(inputDataset, inputColumnTypes, 2, layout, floatStorage, 0).getMatrix();
+                assertEquals(matrix.getLayout(), layout);
+                assertEquals(matrix.isFloatStorage(), floatStorage);
+                assertEquals(matrix.getNumRows(), 2);
+                assertEquals(matrix.getNumCols(), 3);
+                assertEquals(matrix.get(0, 0), floatStorage ? (double) 0.1f : 0.1);
+                assertEquals(matrix.get(1, 0), floatStorage ? (double) 0.3f : 0.3);
+                assertEquals(matrix.get(1, 1), -4.0);
+                assertEquals(matrix.get(1, 2), 1.0);
+            }
+        }
+    }
+
+    @Test
+    public void testLoadFromBinaryFile() throws IOException {
+        File inputDataset = File.createTempFile("testLoadFromBinaryFile", ".csv");
+        inputDataset.deleteOnExit();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(inputDataset));
+        bw.write("num,cat\n");
+        bw.write("0.5,x\n");
+        bw.write("0.25,y\n");
+        bw.write("1.75,x\n");
+        bw.close();
+        File inputColumnTypes = writeTypes("{\"num\":\"double\",\"cat\":\"string\"}");
+        File binaryFile = DatasetBinaryFormat.getBinaryFile(inputDataset);
+        binaryFile.deleteOnExit();
+
+        for (boolean floatPayload : new boolean[] {false, true}) {
+            DatasetBinaryFormat.write(DatasetLoader.loadCsv(inputDataset, inputColumnTypes, 1), binaryFile, floatPayload);
+            binaryFile.setLastModified(inputDataset.lastModified() + 1000);
+            inputColumnTypes.setLastModified(inputDataset.lastModified());
+
+            Dataset dataset = DatasetLoader.load(inputDataset, inputColumnTypes, 1, DataMatrix.Layout.COLUMN_MAJOR, floatPayload);
+            assert(dataset.isMapped());
+            assertEquals(dataset.getColumnNames(), new String[] {"num", "cat"});
+            assertEquals(dataset.getTypes(), new Class<?>[] {Double.class, String.class});
+            assertEquals(dataset.getDictionary(1), new String[] {"x", "y"});
+            assertEquals(dataset.getData()[0], new double[] {0.5, 0.0});
+            assertEquals(dataset.getData()[1], new double[] {0.25, 1.0});
+            assertEquals(dataset.getData()[2], new double[] {1.75, 0.0});
+            assertEquals(dataset.getStatistics(0).getMin(), 0.25);
+            assertEquals(dataset.getStatistics(1).getCardinality(), 2);
+            assertEquals(DatasetLoader.readShape(inputDataset), new int[] {3, 2});
+
+            // Doubles are never served from a float payload, which has lost their precision
+            Dataset doubles = DatasetLoader.load(inputDataset, inputColumnTypes, 1);
+            assertEquals(doubles.isMapped(), !floatPayload);
+            assert(!doubles.getMatrix().isFloatStorage());
+        }
+
+        // A binary file older than the CSV is ignored
+        binaryFile.setLastModified(inputDataset.lastModified() - 1000);
+        assert(!DatasetLoader.load(inputDataset, inputColumnTypes, 1).isMapped());
+    }
+
+    @Test
+    public void testReadHeaderLargerThanAChunk() throws IOException {
+        // Dictionaries of long values spread the header over several chunks, one of them longer than a chunk
+        int numRows = 40;
+        String[] values = new String[numRows];
+        File inputDataset = File.createTempFile("testReadHeaderLargerThanAChunk", ".csv");
+        inputDataset.deleteOnExit();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(inputDataset));
+        bw.write("num,cat\n");
+        for (int i = 0; i < numRows; i++) {
+            values[i] = i + "-" + "v".repeat(i == numRows / 2 ? 100000 : 3000);
+            bw.write(i + "," + values[i] + "\n");
+        }
+        bw.close();
+        File inputColumnTypes = writeTypes("{\"num\":\"double\",\"cat\":\"string\"}");
+        File binaryFile = File.createTempFile("testReadHeaderLargerThanAChunk", DatasetBinaryFormat.EXTENSION);
+        binaryFile.deleteOnExit();
+
+        DatasetBinaryFormat.write(DatasetLoader.loadCsv(inputDataset, inputColumnTypes, 1), binaryFile, false);
+        Dataset dataset = DatasetBinaryFormat.read(binaryFile);
+        assertEquals(dataset.getDictionary(1).length, numRows);
+        for (int i = 0; i < numRows; i++) {
+            assertEquals(dataset.getMatrix().get(i, 0), (double) i);
+            assertEquals(dataset.getDictionary(1)[(int) dataset.getMatrix().get(i, 1)], values[i]);
+        }
+    }
+
+    @Test
+    public void testRegistrySharesDatasets() throws IOException {
+        File inputDataset = File.createTempFile("testRegistrySharesDatasets", ".csv");
+        inputDataset.deleteOnExit();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(inputDataset));
+        bw.write("a,b\n1,2\n3,4\n");
+        bw.close();
+        File inputColumnTypes = writeTypes("{\"a\":\"int\",\"b\":\"int\"}");
+        DatasetRegistry registry = DatasetRegistry.getInstance();
+        int initialSize = registry.size();
+
+        DatasetRegistry.Lease first = registry.acquire(inputDataset, inputColumnTypes, 1);
+        DatasetRegistry.Lease second = registry.acquire(inputDataset.getAbsoluteFile(), inputColumnTypes, 1);
+        assert(first.getDataset() == second.getDataset());
+        assertEquals(registry.size(), initialSize + 1);
+
+        // A change in the content is a different dataset
+        bw = new BufferedWriter(new FileWriter(inputDataset, true));
+        bw.write("5,6\n");
+        bw.close();
+        DatasetRegistry.Lease third = registry.acquire(inputDataset, inputColumnTypes, 1);
+        assert(third.getDataset() != first.getDataset());
+        assert(third.getContentHash() != first.getContentHash());
+        assertEquals(third.getDataset().getNumRows(), 3);
+
+        first.close();
+        first.close();
+        assertEquals(registry.size(), initialSize + 2);
+        second.close();
+        third.close();
+        assertEquals(registry.size(), initialSize);
+    }
+}
@@ -0,0 +1,85 @@
+package moeba.utils.observer;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+import org.uma.jmetal.operator.selection.impl.BinaryTournamentSelection;
+import org.uma.jmetal.util.comparator.RankingAndCrowdingDistanceComparator;
+
+import moeba.Representation;
+import moeba.StaticUtils;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.representationwrapper.RepresentationWrapper;
+import moeba.utils.dataset.DataMatrix;
+import moeba.utils.observer.ProblemObserver.ObserverInterface;
+import moeba.utils.observer.impl.NumEvaluationsObserver;
+import moeba.utils.storage.CacheStats;
+import moeba.utils.storage.impl.LocalCache;
+
+public class ProblemObserverTest {
+
+    @Test
+    public void testBatchEvaluatedRunNotifiesObservers() throws IOException {
+        double[][] values = randomValues(new Random(47));
+        Class<?>[] types = new Class<?>[8];
+        Arrays.fill(types, Float.class);
+        int populationSize = 10;
+        int maxEvaluations = 50;
+
+        RepresentationWrapper wrapper = StaticUtils.getRepresentationWrapperFromRepresentation(Representation.GENERIC, 30, 8, -1, 0.05f, 0.25f, "Mean");
+        NumEvaluationsObserver observer = new NumEvaluationsObserver(populationSize);
+        ProblemObserver problem = new ProblemObserver(DataMatrix.of(values), types, new String[] {"BiclusterSizeNormComp", "MeanSquaredResidueNorm"},
+            null, null, wrapper, new ObserverInterface[] {observer});
+
+        // NSGA-II evaluates its populations through the batch evaluator
+        StaticUtils.executeEvolutionaryAlgorithm(problem, populationSize, maxEvaluations, "NSGAII-SingleThread",
+            new BinaryTournamentSelection<>(new RankingAndCrowdingDistanceComparator<>()),
+            wrapper.getCrossoverFromString("GroupedBasedCrossover;CellUniformCrossover", 0.9, maxEvaluations),
+            wrapper.getMutationFromString("SwapMutation;BicUniformMutation;CellUniformMutation", "0.1", maxEvaluations), 1);
+
+        File output = File.createTempFile("NumEvaluationsObserver", ".csv");
+        output.deleteOnExit();
+        observer.writeToFile(output.getPath());
+        assertEquals(Files.readAllLines(output.toPath()).get(0), "10, 20, 30, 40, 50");
+    }
+
+    @Test
+    public void testBatchEvaluationRecordsCacheLoads() {
+        double[][] values = randomValues(new Random(53));
+        Class<?>[] types = new Class<?>[8];
+        Arrays.fill(types, Float.class);
+        int populationSize = 10;
+        int maxEvaluations = 50;
+
+        RepresentationWrapper wrapper = StaticUtils.getRepresentationWrapperFromRepresentation(Representation.GENERIC, 30, 8, -1, 0.05f, 0.25f, "Mean");
+        LocalCache<BiclusterFingerprint, Double[]> externalCache = new LocalCache<>();
+        ProblemObserver problem = new ProblemObserver(DataMatrix.of(values), types, new String[] {"BiclusterSizeNormComp", "MeanSquaredResidueNorm"},
+            externalCache, null, wrapper, new ObserverInterface[0]);
+        StaticUtils.executeEvolutionaryAlgorithm(problem, populationSize, maxEvaluations, "NSGAII-SingleThread",
+            new BinaryTournamentSelection<>(new RankingAndCrowdingDistanceComparator<>()),
+            wrapper.getCrossoverFromString("GroupedBasedCrossover;CellUniformCrossover", 0.9, maxEvaluations),
+            wrapper.getMutationFromString("SwapMutation;BicUniformMutation;CellUniformMutation", "0.1", maxEvaluations), 1);
+
+        // Every solution stored by the batch evaluator was a miss evaluated by it
+        CacheStats stats = externalCache.getStats();
+        assertEquals(stats.getLoadCount(), externalCache.size());
+        assert(stats.getLoadCount() <= stats.getMissCount());
+        assert(stats.getTotalLoadTime() > 0);
+    }
+
+    private static double[][] randomValues(Random random) {
+        double[][] values = new double[30][8];
+        for (double[] row : values) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = random.nextDouble();
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,91 @@
+package moeba.utils.storage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.testng.annotations.Test;
+
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.utils.storage.impl.LocalCache;
+import moeba.utils.storage.impl.PersistentCache;
+
+public class EvaluationStoreTest {
+
+    @Test
+    public void testEvaluationsOutliveTheStore() throws Exception {
+        Path file = Files.createTempDirectory("moeba-store-test").resolve("evaluations.store");
+        long namespace = EvaluationStore.namespace("dataset", EvaluationStore.canonicalObjective("MeanSquaredResidueNorm"));
+        long otherNamespace = EvaluationStore.namespace("other-dataset", EvaluationStore.canonicalObjective("MeanSquaredResidueNorm"));
+
+        EvaluationStore store = EvaluationStore.open(file, 1 << 20);
+        PersistentCache<Double> cache = PersistentCache.ofScores(new LocalCache<>(), store, namespace);
+        assertEquals(cache.computeIfAbsent(fingerprint(1), k -> 0.25), 0.25);
+        cache.put(fingerprint(2), 0.5);
+        store.put(otherNamespace, fingerprint(1), new double[] {0.75});
+        store.close();
+
+        // A new run finds the evaluations of the previous one, each in its own namespace
+        store = EvaluationStore.open(file, 1 << 20);
+        cache = PersistentCache.ofScores(new LocalCache<>(), store, namespace);
+        assert(cache.containsKey(fingerprint(2)));
+        assertEquals(cache.computeIfAbsent(fingerprint(1), k -> { throw new AssertionError("Evaluated again"); }), 0.25);
+        assertEquals(cache.get(fingerprint(2)), 0.5);
+        assertNull(cache.get(fingerprint(3)));
+        assertEquals(store.get(otherNamespace, fingerprint(1)), new double[] {0.75});
+        store.close();
+
+        // A record cut by an interrupted append is dropped, and the rest stay readable
+        Files.write(file, new byte[] {1, 0, 0, 0, 7, 7}, StandardOpenOption.APPEND);
+        store = EvaluationStore.open(file, 1 << 20);
+        assertEquals(store.size(), 3);
+        store.put(namespace, fingerprint(4), new double[] {1.0});
+        assertEquals(store.get(namespace, fingerprint(4)), new double[] {1.0});
+        assertEquals(store.get(namespace, fingerprint(2)), new double[] {0.5});
+
+        // Misses index the tail under a shared lock, which leaves the file to the next append
+        long size = Files.size(file);
+        Files.write(file, new byte[] {1, 0, 0, 0, 7, 7}, StandardOpenOption.APPEND);
+        assertNull(store.get(namespace, fingerprint(5)));
+        assertEquals(Files.size(file), size + 6);
+        store.put(namespace, fingerprint(5), new double[] {2.0});
+        assertEquals(store.get(namespace, fingerprint(5)), new double[] {2.0});
+        assertEquals(store.get(namespace, fingerprint(4)), new double[] {1.0});
+        store.close();
+    }
+
+    @Test
+    public void testCompactionKeepsTheNewestEvaluations() throws Exception {
+        Path file = Files.createTempDirectory("moeba-store-test").resolve("evaluations.store");
+        long maxBytes = 4096;
+        EvaluationStore store = EvaluationStore.open(file, maxBytes);
+        int numEvaluations = 500;
+        for (int i = 0; i < numEvaluations; i++) {
+            store.put(7, fingerprint(i), new double[] {i, -i});
+        }
+        assert(Files.size(file) <= maxBytes);
+        assertEquals(store.get(7, fingerprint(numEvaluations - 1)), new double[] {numEvaluations - 1, 1 - numEvaluations});
+        assertNull(store.get(7, fingerprint(0)));
+        int size = store.size();
+        store.close();
+
+        store = EvaluationStore.open(file, maxBytes);
+        assertEquals(store.size(), size);
+        store.close();
+    }
+
+    @Test
+    public void testCanonicalObjective() {
+        assertEquals(EvaluationStore.canonicalObjective("BiclusterSizeNormComp(coherenceWeight=0.5, sizeWeight=0.5)"),
+                     EvaluationStore.canonicalObjective("biclustersizenormcomp(sizeweight=0.5,coherenceweight=0.5)"));
+        assertEquals(EvaluationStore.canonicalObjective("A(y=1,x=2);B;C(b=1,a=2)"), "a(x=2,y=1);b;c(a=2,b=1)");
+    }
+
+    private static BiclusterFingerprint fingerprint(int i) {
+        return BiclusterFingerprint.of(Bicluster.wrap(new int[] {i}, new int[] {i + 1}));
+    }
+}
@@ -0,0 +1,103 @@
+package moeba.utils.storage.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.testng.annotations.Test;
+
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+import moeba.utils.storage.serializer.BiclusterFingerprintSerializer;
+import moeba.utils.storage.serializer.DoubleArraySerializer;
+
+public class HybridCacheTest {
+
+    @Test
+    public void testSerializersRoundTrip() {
+        BiclusterFingerprintSerializer keySerializer = new BiclusterFingerprintSerializer();
+        BiclusterFingerprint key = BiclusterFingerprint.exactOf(Bicluster.of(new int[] {1, 5}, new int[] {0, 2, 3}));
+        ByteBuffer binary = keySerializer.serialize(key);
+        assertEquals(binary.remaining(), 16);
+        assert(keySerializer.equals(key, binary.duplicate()));
+        assertEquals(keySerializer.read(binary), key);
+
+        DoubleArraySerializer valueSerializer = new DoubleArraySerializer();
+        Double[] value = {0.25, -1.0, Double.NaN};
+        binary = valueSerializer.serialize(value);
+        assert(valueSerializer.equals(value, binary.duplicate()));
+        assert(!valueSerializer.equals(new Double[] {0.25, -1.0}, binary.duplicate()));
+        assertEquals(valueSerializer.read(binary), value);
+    }
+
+    @Test
+    public void testEntriesEvictedFromTheHeapAreKeptInLowerTiers() throws Exception {
+        Path directory = Files.createTempDirectory("moeba-cache-test");
+        CacheManager cacheManager = CacheManagerBuilder.newCacheManagerBuilder()
+            .with(CacheManagerBuilder.persistence(directory.toFile())).build(true);
+        try {
+            HybridCache<BiclusterFingerprint, Double[]> cache = new HybridCache<>(cacheManager, "ExternalCache",
+                BiclusterFingerprint.class, Double[].class, new HybridCache.Tiers(100, 1, 4),
+                new BiclusterFingerprintSerializer(), new DoubleArraySerializer());
+            int numEntries = 5000;
+            for (int i = 0; i < numEntries; i++) {
+                cache.put(fingerprint(i), new Double[] {(double) i, -i / 2.0});
+            }
+
+            // Far more entries than fit in the heap tier survive in the off-heap and disk tiers
+            for (int i = 0; i < numEntries; i++) {
+                Double[] value = cache.get(fingerprint(i));
+                assertNotNull(value, "Entry " + i + " was evicted");
+                assertEquals(value, new Double[] {(double) i, -i / 2.0});
+            }
+            assertEquals(cache.getStats().getHitCount(), numEntries);
+            assertEquals(cache.getStats().getEvictionCount(), 0);
+        } finally {
+            cacheManager.close();
+            for (File file : directory.toFile().listFiles()) {
+                deleteRecursively(file);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testEntriesLeavingTheLastTierAreCountedAsEvictions() {
+        CacheManager cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true);
+        try {
+            HybridCache<BiclusterFingerprint, Double> cache = new HybridCache<>(cacheManager, "InternalCache",
+                BiclusterFingerprint.class, Double.class, 10);
+            for (int i = 0; i < 100; i++) {
+                cache.computeIfAbsent(fingerprint(i), key -> 1.0);
+            }
+            assertEquals(cache.getStats().getMissCount(), 100);
+            assertEquals(cache.getStats().getLoadCount(), 100);
+            assertEquals(cache.getStats().getEvictionCount(), 90);
+        } finally {
+            cacheManager.close();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDiskTierMustBeLargerThanOffheapTier() {
+        new HybridCache.Tiers(100, 8, 8);
+    }
+
+    private static BiclusterFingerprint fingerprint(int i) {
+        return BiclusterFingerprint.of(Bicluster.wrap(new int[] {i}, new int[] {i + 1, i + 2}));
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,135 @@
+package moeba.utils.storage.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import moeba.utils.storage.CacheStats;
+
+public class LocalCacheTest {
+
+    @Test
+    public void testStatisticsCountHitsMissesAndLoads() {
+        LocalCache<Integer, Double> cache = new LocalCache<>();
+        assertNull(cache.get(1));
+        assertEquals(cache.computeIfAbsent(1, key -> 0.5), 0.5);
+        assertEquals(cache.computeIfAbsent(1, key -> 0.0), 0.5);
+        assertEquals(cache.get(1), 0.5);
+
+        CacheStats stats = cache.getStats();
+        assertEquals(stats.getHitCount(), 2);
+        assertEquals(stats.getMissCount(), 2);
+        assertEquals(stats.getLoadCount(), 1);
+        assertEquals(stats.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void testBoundedCacheKeepsWithinItsMaximum() {
+        LocalCache<Integer, Double> cache = new LocalCache<>(100);
+        for (int i = 0; i < 10000; i++) {
+            cache.computeIfAbsent(i, key -> (double) key);
+            assertTrue(cache.size() <= 100);
+        }
+        assertEquals(cache.size(), 100);
+        assertEquals(cache.getStats().getEvictionCount(), 9900);
+    }
+
+    @Test
+    public void testBoundedCacheKeepsWithinItsMaximumWeight() {
+        LocalCache<Integer, Double[]> cache = new LocalCache<>(1000, (key, value) -> 10L * value.length);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, new Double[1 + i % 5]);
+            assertTrue(cache.getWeight() <= 1000);
+        }
+        cache.put(999, new Double[50]);
+        assertTrue(cache.getWeight() <= 1000);
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScans() {
+        LocalCache<Integer, Double> cache = new LocalCache<>(200);
+        int next = 1000;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                cache.computeIfAbsent(i, key -> (double) key);
+            }
+            // Keys used once do not push out those used every round, as they would under LRU
+            for (int i = 0; i < 1000; i++) {
+                cache.computeIfAbsent(next++, key -> (double) key);
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(cache.containsKey(i), "Frequent key " + i + " was evicted");
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersComputeAKeyOnce() throws Exception {
+        LocalCache<Integer, Double> cache = new LocalCache<>(100);
+        int numThreads = 8;
+        AtomicInteger numComputations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(numThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                results.add(executor.submit(() -> {
+                    started.countDown();
+                    started.await();
+                    return cache.computeIfAbsent(7, key -> {
+                        numComputations.incrementAndGet();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return 0.75;
+                    });
+                }));
+            }
+            for (Future<Double> result : results) {
+                assertEquals(result.get(10, TimeUnit.SECONDS), 0.75);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The callers that missed waited for the first one, whatever the interleaving
+        CacheStats stats = cache.getStats();
+        assertEquals(numComputations.get(), 1);
+        assertEquals(stats.getLoadCount(), 1);
+        assertEquals(stats.getHitCount() + stats.getWaitCount(), numThreads - 1);
+    }
+
+    @Test
+    public void testFailedComputationIsNotCached() {
+        LocalCache<Integer, Double> cache = new LocalCache<>();
+        try {
+            cache.computeIfAbsent(1, key -> {
+                throw new IllegalStateException("Evaluation failed");
+            });
+            fail("The failure of the computation was not propagated");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "Evaluation failed");
+        }
+        assertEquals(cache.computeIfAbsent(1, key -> 2.0), 2.0);
+        assertEquals(cache.getStats().getLoadCount(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMaximumMustBePositive() {
+        new LocalCache<Integer, Double>(0);
+    }
+}
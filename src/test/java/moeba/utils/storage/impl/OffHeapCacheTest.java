@@ -0,0 +1,124 @@
+package moeba.utils.storage.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import moeba.bicluster.Bicluster;
+import moeba.bicluster.BiclusterFingerprint;
+
+public class OffHeapCacheTest {
+
+    @Test
+    public void testObjectivesRoundTrip() {
+        OffHeapCache cache = new OffHeapCache(3, 1 << 20, 4);
+        BiclusterFingerprint key = fingerprint(1);
+        assertNull(cache.get(key));
+        cache.put(key, new Double[] {0.25, -1.0, Double.NaN});
+        assertEquals(cache.get(key), new Double[] {0.25, -1.0, Double.NaN});
+        cache.put(key, new Double[] {0.5, 0.5, 0.5});
+        assertEquals(cache.get(key), new Double[] {0.5, 0.5, 0.5});
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.getStats().getHitCount(), 2);
+        assertEquals(cache.getStats().getMissCount(), 1);
+    }
+
+    @Test
+    public void testEvictionKeepsTheTableWithinItsCapacity() {
+        OffHeapCache cache = new OffHeapCache(2, 40 * 1000, 1);
+        long capacity = cache.getCapacity();
+        for (int i = 0; i < 20000; i++) {
+            cache.put(fingerprint(i), value(i));
+            assertTrue(cache.size() <= capacity);
+        }
+        assertEquals(cache.size(), capacity);
+        assertEquals(cache.getStats().getEvictionCount(), 20000 - capacity);
+
+        // Entries shifted back after evictions are still found under their keys
+        int found = 0;
+        for (int i = 0; i < 20000; i++) {
+            Double[] objectives = cache.get(fingerprint(i));
+            if (objectives != null) {
+                assertEquals(objectives, value(i));
+                found++;
+            }
+        }
+        assertEquals(found, capacity);
+    }
+
+    @Test
+    public void testReadEntriesGetASecondChance() {
+        OffHeapCache cache = new OffHeapCache(2, 40 * 100, 1);
+        int next = 1000;
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.computeIfAbsent(fingerprint(i), key -> new Double[] {1.0, 2.0});
+            }
+            for (int i = 0; i < 10; i++) {
+                cache.put(fingerprint(next), value(next++));
+            }
+        }
+        assertTrue(cache.getStats().getEvictionCount() > 0);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(cache.get(fingerprint(i)), "Read entry " + i + " was evicted");
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersAndReaders() throws Exception {
+        OffHeapCache cache = new OffHeapCache(2, 1 << 16, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        int k = (i * 31 + seed * 7) % 5000;
+                        Double[] objectives = cache.computeIfAbsent(fingerprint(k), key -> value(k));
+                        assertEquals(objectives, value(k));
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(cache.size() <= cache.getCapacity());
+    }
+
+    @Test
+    public void testClosedCacheIsEmpty() {
+        OffHeapCache cache = new OffHeapCache(2, 1 << 20, 2);
+        cache.put(fingerprint(1), value(1));
+        cache.close();
+        assertNull(cache.get(fingerprint(1)));
+        assertEquals(cache.size(), 0);
+        cache.close();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testObjectivesMustHaveTheWidthOfTheTable() {
+        new OffHeapCache(2, 1 << 20, 1).put(fingerprint(1), new Double[] {1.0});
+    }
+
+    private static BiclusterFingerprint fingerprint(int i) {
+        return BiclusterFingerprint.of(Bicluster.wrap(new int[] {i}, new int[] {i + 1, i + 2}));
+    }
+
+    private static Double[] value(int i) {
+        return new Double[] {(double) i, -i / 2.0};
+    }
+}